@@ -0,0 +1,171 @@
+package com.horizon.backend.common;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Mergeable quantile sketch with relative-error guarantees (DDSketch). Values are mapped to
+ * logarithmic buckets so any quantile is returned within 1% of the true value, and two sketches
+ * merge by adding bucket counts.
+ */
+public class DDSketch {
+
+    private static final byte FORMAT_VERSION = 1;
+    private static final double RELATIVE_ACCURACY = 0.01;
+    private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+    private static final double MIN_INDEXABLE_VALUE = 1e-6;
+
+    private long[] counts = new long[0];
+    private int offset;
+    private long zeroCount;
+    private long count;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public void add(double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        count++;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+
+        if (value < MIN_INDEXABLE_VALUE) {
+            zeroCount++;
+            return;
+        }
+        int index = (int) Math.ceil(Math.log(value) / LOG_GAMMA);
+        ensureCapacity(index, index);
+        counts[index - offset]++;
+    }
+
+    public void merge(DDSketch other) {
+        if (other == null || other.count == 0) {
+            return;
+        }
+        if (other.counts.length > 0) {
+            ensureCapacity(other.offset, other.offset + other.counts.length - 1);
+            for (int i = 0; i < other.counts.length; i++) {
+                counts[other.offset + i - offset] += other.counts[i];
+            }
+        }
+        zeroCount += other.zeroCount;
+        count += other.count;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    public Double quantile(double q) {
+        if (count == 0) {
+            return null;
+        }
+        double rank = q * (count - 1);
+        if (rank < zeroCount) {
+            return Math.max(0, min);
+        }
+
+        long seen = zeroCount;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen > rank) {
+                double value = 2 * Math.pow(GAMMA, offset + i) / (GAMMA + 1);
+                return Math.max(min, Math.min(max, value));
+            }
+        }
+        return max;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public byte[] toBytes() {
+        try {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(32 + counts.length * 2);
+            DataOutputStream out = new DataOutputStream(buffer);
+            out.writeByte(FORMAT_VERSION);
+            writeVarLong(out, count);
+            writeVarLong(out, zeroCount);
+            out.writeDouble(min);
+            out.writeDouble(max);
+            writeVarLong(out, ((long) offset << 1) ^ (offset >> 31));
+            writeVarLong(out, counts.length);
+            for (long bucket : counts) {
+                writeVarLong(out, bucket);
+            }
+            return buffer.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static DDSketch fromBytes(byte[] bytes) {
+        DDSketch sketch = new DDSketch();
+        if (bytes == null || bytes.length == 0) {
+            return sketch;
+        }
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+            byte version = in.readByte();
+            if (version != FORMAT_VERSION) {
+                throw new IllegalArgumentException("Unsupported sketch format version: " + version);
+            }
+            sketch.count = readVarLong(in);
+            sketch.zeroCount = readVarLong(in);
+            sketch.min = in.readDouble();
+            sketch.max = in.readDouble();
+            long zigzag = readVarLong(in);
+            sketch.offset = (int) ((zigzag >>> 1) ^ -(zigzag & 1));
+            sketch.counts = new long[(int) readVarLong(in)];
+            for (int i = 0; i < sketch.counts.length; i++) {
+                sketch.counts[i] = readVarLong(in);
+            }
+            return sketch;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void ensureCapacity(int minIndex, int maxIndex) {
+        if (counts.length == 0) {
+            offset = minIndex;
+            counts = new long[maxIndex - minIndex + 1];
+            return;
+        }
+        int currentMax = offset + counts.length - 1;
+        if (minIndex >= offset && maxIndex <= currentMax) {
+            return;
+        }
+        int newOffset = Math.min(offset, minIndex);
+        int newMax = Math.max(currentMax, maxIndex);
+        long[] resized = new long[newMax - newOffset + 1];
+        System.arraycopy(counts, 0, resized, offset - newOffset, counts.length);
+        counts = resized;
+        offset = newOffset;
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
@@ -0,0 +1,33 @@
+package com.horizon.backend.common;
+
+import java.util.Objects;
+
+public final class ETags {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private ETags() {
+    }
+
+    public static String weak(Object... parts) {
+        return "W/\"" + Long.toHexString(hash(FNV_OFFSET, parts)) + "\"";
+    }
+
+    public static long hash(long seed, Object... parts) {
+        long hash = seed;
+        for (Object part : parts) {
+            hash ^= Objects.hashCode(part);
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    public static long seed() {
+        return FNV_OFFSET;
+    }
+
+    public static String weak(long hash) {
+        return "W/\"" + Long.toHexString(hash) + "\"";
+    }
+}
@@ -0,0 +1,44 @@
+package com.horizon.backend.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+public class StreamConfig {
+
+    private static final int VIRTUAL_THREADS_FEATURE_VERSION = 21;
+
+    @Bean
+    public ThreadPoolTaskExecutor sseDispatchExecutor(
+            @Value("${sse.dispatch-queue-capacity:10000}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("sse-dispatch-");
+        executor.initialize();
+        return executor;
+    }
+
+    @Bean
+    public TaskExecutor sseDeliveryExecutor(@Value("${sse.delivery-threads:8}") int threads,
+                                            @Value("${sse.delivery-queue-capacity:10000}") int queueCapacity) {
+        if (Runtime.version().feature() >= VIRTUAL_THREADS_FEATURE_VERSION) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("sse-delivery-");
+            executor.setVirtualThreads(true);
+            return executor;
+        }
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        // A rejected drain leaves its frames queued on the subscriber until the next send reschedules it
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("sse-delivery-");
+        executor.initialize();
+        return executor;
+    }
+}
@@ -2,7 +2,9 @@ package com.horizon.backend.controller;
 
 import com.horizon.backend.common.ApiResponse;
 import com.horizon.backend.dto.agent.AgentDto;
+import com.horizon.backend.dto.agent.AgentHeartbeatTimeoutRequest;
 import com.horizon.backend.service.AgentService;
+import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -28,6 +30,14 @@ public class AgentController {
         return ResponseEntity.ok(ApiResponse.success(agents, "Agents retrieved successfully"));
     }
 
+    @PutMapping("/{id}/heartbeat-timeout")
+    public ResponseEntity<ApiResponse<AgentDto>> updateHeartbeatTimeout(
+            @PathVariable Long id,
+            @Valid @RequestBody AgentHeartbeatTimeoutRequest request) {
+        AgentDto agent = agentService.updateHeartbeatTimeout(id, request.getTimeoutSeconds());
+        return ResponseEntity.ok(ApiResponse.success(agent, "Heartbeat timeout updated successfully"));
+    }
+
     @DeleteMapping("/{id}")
     public ResponseEntity<ApiResponse<Void>> deleteAgent(@PathVariable Long id) {
         agentService.deleteAgent(id);
@@ -0,0 +1,62 @@
+package com.horizon.backend.controller;
+
+import com.horizon.backend.common.ApiResponse;
+import com.horizon.backend.dto.alert.AlertEvent;
+import com.horizon.backend.dto.alert.AlertRuleDto;
+import com.horizon.backend.dto.alert.AlertRuleRequest;
+import com.horizon.backend.service.AlertRuleService;
+import com.horizon.backend.service.AuthService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/alerts")
+@RequiredArgsConstructor
+public class AlertController {
+
+    private final AlertRuleService alertRuleService;
+    private final AuthService authService;
+
+    @PostMapping("/rules")
+    public ResponseEntity<ApiResponse<AlertRuleDto>> createRule(@Valid @RequestBody AlertRuleRequest request) {
+        Long userId = authService.getCurrentUser().getId();
+        AlertRuleDto rule = alertRuleService.createRule(userId, request);
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .body(ApiResponse.success(rule, "Alert rule created successfully"));
+    }
+
+    @GetMapping("/rules")
+    public ResponseEntity<ApiResponse<List<AlertRuleDto>>> getRules() {
+        Long userId = authService.getCurrentUser().getId();
+        List<AlertRuleDto> rules = alertRuleService.getRules(userId);
+        return ResponseEntity.ok(ApiResponse.success(rules, "Alert rules retrieved successfully"));
+    }
+
+    @PutMapping("/rules/{ruleId}")
+    public ResponseEntity<ApiResponse<AlertRuleDto>> updateRule(
+            @PathVariable Long ruleId,
+            @Valid @RequestBody AlertRuleRequest request) {
+        Long userId = authService.getCurrentUser().getId();
+        AlertRuleDto rule = alertRuleService.updateRule(userId, ruleId, request);
+        return ResponseEntity.ok(ApiResponse.success(rule, "Alert rule updated successfully"));
+    }
+
+    @DeleteMapping("/rules/{ruleId}")
+    public ResponseEntity<ApiResponse<Void>> deleteRule(@PathVariable Long ruleId) {
+        Long userId = authService.getCurrentUser().getId();
+        alertRuleService.deleteRule(userId, ruleId);
+        return ResponseEntity.ok(ApiResponse.success("Alert rule deleted successfully"));
+    }
+
+    @GetMapping("/active")
+    public ResponseEntity<ApiResponse<List<AlertEvent>>> getActiveAlerts() {
+        Long userId = authService.getCurrentUser().getId();
+        List<AlertEvent> alerts = alertRuleService.getActiveAlerts(userId);
+        return ResponseEntity.ok(ApiResponse.success(alerts, "Active alerts retrieved successfully"));
+    }
+}
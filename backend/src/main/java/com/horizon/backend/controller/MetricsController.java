@@ -1,22 +1,54 @@
 package com.horizon.backend.controller;
 
 import com.horizon.backend.common.ApiResponse;
+import com.horizon.backend.common.CursorPage;
+import com.horizon.backend.common.ETags;
+import com.horizon.backend.dto.agent.AgentDto;
+import com.horizon.backend.dto.metrics.AgentForecast;
+import com.horizon.backend.dto.metrics.ColumnarMetrics;
+import com.horizon.backend.dto.metrics.DownsampleMode;
+import com.horizon.backend.dto.metrics.EncodedRealtimeMetrics;
+import com.horizon.backend.dto.metrics.ExportFormat;
+import com.horizon.backend.dto.metrics.FleetGroupBy;
+import com.horizon.backend.dto.metrics.FleetGroupStats;
+import com.horizon.backend.dto.metrics.LeaderboardEntry;
+import com.horizon.backend.dto.metrics.MetricType;
 import com.horizon.backend.dto.metrics.MetricsDto;
+import com.horizon.backend.dto.metrics.MetricsField;
+import com.horizon.backend.dto.metrics.MetricsOutlier;
 import com.horizon.backend.dto.metrics.MetricsRequest;
+import com.horizon.backend.dto.metrics.MetricsSeriesResponse;
+import com.horizon.backend.dto.metrics.PercentileResponse;
 import com.horizon.backend.dto.metrics.RealtimeMetrics;
+import com.horizon.backend.exception.BadRequestException;
+import com.horizon.backend.dto.metrics.StreamStats;
+import com.horizon.backend.dto.metrics.StreamSubscription;
+import com.horizon.backend.service.AgentService;
+import com.horizon.backend.service.AuthService;
+import com.horizon.backend.service.MetricsForecastService;
+import com.horizon.backend.service.MetricsRollupService;
 import com.horizon.backend.service.MetricsService;
 import com.horizon.backend.service.SseEmitterService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.WebAsyncUtils;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @RestController
@@ -26,6 +58,18 @@ public class MetricsController {
 
     private final MetricsService metricsService;
     private final SseEmitterService sseEmitterService;
+    private final AgentService agentService;
+    private final AuthService authService;
+    private final MetricsRollupService metricsRollupService;
+    private final MetricsForecastService metricsForecastService;
+
+    private static final long CLOSED_RANGE_GRACE_SECONDS = 10;
+    private static final String JSON_FORMAT = "json";
+    private static final long EXPORT_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    private static final CacheControl CLOSED_RANGE_CACHE = CacheControl.maxAge(1, TimeUnit.MINUTES).cachePrivate().mustRevalidate();
+    private static final double MAX_STREAM_RATE = 20;
+    private static final int MAX_STREAM_AGENTS = 1000;
+    private static final String LAST_EVENT_ID_HEADER = "Last-Event-ID";
 
     @PostMapping("/agents/{agentId}")
     public ResponseEntity<ApiResponse<MetricsDto>> receiveMetrics(
@@ -33,72 +77,306 @@ public class MetricsController {
             @Valid @RequestBody MetricsRequest request) {
         MetricsDto metrics = metricsService.saveMetrics(agentId, request);
 
-        RealtimeMetrics realtime = metricsService.getRealtimeMetrics(agentId);
-        sseEmitterService.sendToAll(realtime);
+        sseEmitterService.sendToAll(metricsService.getRealtimeMetrics(agentId));
 
         return ResponseEntity.ok(ApiResponse.success(metrics, "Metrics received successfully"));
     }
 
     @GetMapping("/realtime/{agentId}")
-    public ResponseEntity<ApiResponse<RealtimeMetrics>> getRealtimeMetrics(@PathVariable Long agentId) {
-        RealtimeMetrics metrics = metricsService.getRealtimeMetrics(agentId);
-        return ResponseEntity.ok(ApiResponse.success(metrics, "Realtime metrics retrieved successfully"));
+    public ResponseEntity<ApiResponse<EncodedRealtimeMetrics>> getRealtimeMetrics(@PathVariable Long agentId, WebRequest request) {
+        EncodedRealtimeMetrics metrics = metricsService.getRealtimeMetrics(agentId);
+        String etag = ETags.weak(metrics.getAgentId(), metrics.getSequence(), metrics.isOnline(), metrics.getOutliers());
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache())
+                .body(ApiResponse.success(metrics, "Realtime metrics retrieved successfully"));
     }
 
     @GetMapping("/realtime")
-    public ResponseEntity<ApiResponse<List<RealtimeMetrics>>> getAllRealtimeMetrics() {
-        List<RealtimeMetrics> metrics = metricsService.getAllRealtimeMetrics();
-        return ResponseEntity.ok(ApiResponse.success(metrics, "All realtime metrics retrieved successfully"));
+    public ResponseEntity<ApiResponse<List<EncodedRealtimeMetrics>>> getAllRealtimeMetrics(
+            @RequestParam(defaultValue = "true") boolean metadata,
+            WebRequest request) {
+        List<EncodedRealtimeMetrics> metrics = metricsService.getAllRealtimeMetrics(metadata);
+        long hash = ETags.hash(ETags.seed(), metadata);
+        for (EncodedRealtimeMetrics m : metrics) {
+            hash = ETags.hash(hash, m.getAgentId(), m.getSequence(), m.isOnline(), m.getOutliers());
+        }
+        String etag = ETags.weak(hash);
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache())
+                .body(ApiResponse.success(metrics, "All realtime metrics retrieved successfully"));
+    }
+
+    @GetMapping("/fleet")
+    public ResponseEntity<ApiResponse<List<FleetGroupStats>>> getFleetAggregates(
+            @RequestParam(required = false) String groupBy,
+            @RequestParam(required = false) List<String> above) {
+        List<FleetGroupStats> stats = metricsService.getFleetAggregates(
+                FleetGroupBy.from(groupBy), MetricType.parseThresholds(above));
+        return ResponseEntity.ok(ApiResponse.success(stats, "Fleet aggregates retrieved successfully"));
+    }
+
+    @GetMapping("/outliers")
+    public ResponseEntity<ApiResponse<List<MetricsOutlier>>> getOutliers(
+            @RequestParam(required = false) String groupBy,
+            @RequestParam(required = false) Double sigma) {
+        List<MetricsOutlier> outliers = metricsService.getOutliers(
+                groupBy != null ? FleetGroupBy.from(groupBy) : null, sigma);
+        return ResponseEntity.ok(ApiResponse.success(outliers, "Outliers retrieved successfully"));
+    }
+
+    @GetMapping("/top")
+    public ResponseEntity<ApiResponse<Map<String, List<LeaderboardEntry>>>> getTopAgents(
+            @RequestParam(required = false) String metric,
+            @RequestParam(defaultValue = "10") int limit) {
+        Map<String, List<LeaderboardEntry>> top = metric != null
+                ? Map.of(MetricType.from(metric).getKey(), metricsService.getTopAgents(MetricType.from(metric), limit))
+                : metricsService.getTopAgents(limit);
+        return ResponseEntity.ok(ApiResponse.success(top, "Top agents retrieved successfully"));
     }
 
     @GetMapping("/history/{agentId}")
-    public ResponseEntity<ApiResponse<List<MetricsDto>>> getMetricsHistory(
+    public ResponseEntity<ApiResponse<?>> getMetricsHistory(
             @PathVariable Long agentId,
-            @RequestParam(defaultValue = "100") int limit) {
+            @RequestParam(defaultValue = "100") int limit,
+            @RequestParam(required = false) String format,
+            @RequestParam(required = false) List<String> fields,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            WebRequest request) {
+        validateHistoryFormat(format);
         List<MetricsDto> history = metricsService.getMetricsHistory(agentId, limit);
-        return ResponseEntity.ok(ApiResponse.success(history, "Metrics history retrieved successfully"));
+        String etag = contentETag(history, agentId, limit, format, fields, accept);
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        return historyResponse(agentId, history, format, fields, accept, etag, CacheControl.noCache());
+    }
+
+    @GetMapping("/history/{agentId}/page")
+    public ResponseEntity<ApiResponse<CursorPage<MetricsDto>>> getMetricsHistoryPage(
+            @PathVariable Long agentId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "100") int limit) {
+        CursorPage<MetricsDto> page = metricsService.getMetricsHistoryPage(agentId, cursor, limit);
+        return ResponseEntity.ok(ApiResponse.success(page, "Metrics history retrieved successfully"));
     }
 
     @GetMapping("/history/{agentId}/range")
-    public ResponseEntity<ApiResponse<List<MetricsDto>>> getMetricsHistoryRange(
+    public ResponseEntity<ApiResponse<?>> getMetricsHistoryRange(
             @PathVariable Long agentId,
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTime,
-            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime) {
-        List<MetricsDto> history = metricsService.getMetricsHistory(agentId, startTime, endTime);
-        return ResponseEntity.ok(ApiResponse.success(history, "Metrics history retrieved successfully"));
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime,
+            @RequestParam(required = false) Long step,
+            @RequestParam(required = false) Integer maxPoints,
+            @RequestParam(required = false) String mode,
+            @RequestParam(required = false) String format,
+            @RequestParam(required = false) List<String> fields,
+            @RequestParam(required = false) String reference,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            WebRequest request) {
+        validateHistoryFormat(format);
+        DownsampleMode downsampleMode = DownsampleMode.from(mode);
+        MetricsField referenceField = referenceField(reference, fields);
+        boolean closed = endTime.isBefore(LocalDateTime.now().minusSeconds(CLOSED_RANGE_GRACE_SECONDS));
+
+        if (closed) {
+            String etag = ETags.weak(agentId, startTime, endTime, step, maxPoints, downsampleMode, referenceField,
+                    format, fields, accept, metricsService.getHistoryVersion(agentId, startTime, endTime));
+            if (request.checkNotModified(etag)) {
+                return null;
+            }
+            List<MetricsDto> history = metricsService.getMetricsHistory(
+                    agentId, startTime, endTime, step, maxPoints, downsampleMode, referenceField);
+            return historyResponse(agentId, history, format, fields, accept, etag, CLOSED_RANGE_CACHE);
+        }
+
+        List<MetricsDto> history = metricsService.getMetricsHistory(
+                agentId, startTime, endTime, step, maxPoints, downsampleMode, referenceField);
+        String etag = contentETag(history, agentId, startTime, endTime, step, maxPoints, downsampleMode,
+                referenceField, format, fields, accept);
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        return historyResponse(agentId, history, format, fields, accept, etag, CacheControl.noCache());
     }
 
-    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    public SseEmitter streamAllMetrics() {
-        SseEmitter emitter = sseEmitterService.createEmitter();
-        log.debug("New SSE connection for all agents metrics");
+    @GetMapping("/history/series")
+    public ResponseEntity<ApiResponse<MetricsSeriesResponse>> getMetricsSeries(
+            @RequestParam List<Long> agentIds,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTime,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime,
+            @RequestParam(required = false) Long step,
+            @RequestParam(required = false) Integer maxPoints,
+            @RequestParam(required = false) List<String> fields) {
+        MetricsSeriesResponse series = metricsService.getMetricsSeries(
+                agentIds, startTime, endTime, step, maxPoints, MetricsField.fromList(fields));
+        return ResponseEntity.ok(ApiResponse.success(series, "Metrics series retrieved successfully"));
+    }
+
+    @GetMapping("/history/{agentId}/rates")
+    public ResponseEntity<ApiResponse<MetricsSeriesResponse>> getCounterRates(
+            @PathVariable Long agentId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTime,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime,
+            @RequestParam(required = false) Long step,
+            @RequestParam(required = false) Integer maxPoints) {
+        MetricsSeriesResponse rates = metricsService.getCounterRates(agentId, startTime, endTime, step, maxPoints);
+        return ResponseEntity.ok(ApiResponse.success(rates, "Counter rates retrieved successfully"));
+    }
+
+    @GetMapping("/percentiles/{agentId}")
+    public ResponseEntity<ApiResponse<PercentileResponse>> getPercentiles(
+            @PathVariable Long agentId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTime,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime,
+            @RequestParam(required = false) List<Double> quantiles) {
+        PercentileResponse percentiles = metricsRollupService.getPercentiles(agentId, startTime, endTime, quantiles);
+        return ResponseEntity.ok(ApiResponse.success(percentiles, "Percentiles retrieved successfully"));
+    }
+
+    @GetMapping("/forecast")
+    public ResponseEntity<ApiResponse<List<AgentForecast>>> getForecasts() {
+        List<AgentForecast> forecasts = metricsForecastService.getForecasts();
+        return ResponseEntity.ok(ApiResponse.success(forecasts, "Forecasts retrieved successfully"));
+    }
+
+    @GetMapping("/forecast/{agentId}")
+    public ResponseEntity<ApiResponse<AgentForecast>> getForecast(@PathVariable Long agentId) {
+        AgentForecast forecast = metricsForecastService.getForecast(agentId);
+        return ResponseEntity.ok(ApiResponse.success(forecast, "Forecast retrieved successfully"));
+    }
+
+    @GetMapping("/history/{agentId}/export")
+    public ResponseEntity<StreamingResponseBody> exportMetricsHistory(
+            @PathVariable Long agentId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTime,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime,
+            @RequestParam(defaultValue = "ndjson") String format,
+            WebRequest request) {
+        ExportFormat exportFormat = ExportFormat.from(format);
+        AgentDto agent = agentService.getAgent(agentId);
 
-        try {
-            List<RealtimeMetrics> initialMetrics = metricsService.getAllRealtimeMetrics();
-            emitter.send(SseEmitter.event()
-                    .name("init")
-                    .data(initialMetrics));
-        } catch (Exception e) {
-            log.error("Failed to send initial metrics", e);
+        AsyncWebRequest asyncRequest = WebAsyncUtils.getAsyncManager(request).getAsyncWebRequest();
+        if (asyncRequest != null) {
+            asyncRequest.setTimeout(EXPORT_TIMEOUT_MILLIS);
         }
 
-        return emitter;
+        StreamingResponseBody body = outputStream ->
+                metricsService.exportMetricsHistory(agentId, startTime, endTime, exportFormat, outputStream);
+
+        String filename = "metrics-" + agent.getId() + "." + exportFormat.getExtension();
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
+                .body(body);
+    }
+
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamAllMetrics(@RequestParam(required = false) Double maxRate,
+                                       @RequestParam(defaultValue = "false") boolean delta,
+                                       @RequestParam(required = false) Set<Long> agentIds,
+                                       @RequestParam(required = false) String groupBy,
+                                       @RequestParam(required = false) String group,
+                                       @RequestParam(required = false) Set<String> fields,
+                                       @RequestHeader(value = LAST_EVENT_ID_HEADER, required = false) String lastEventId) {
+        log.debug("New SSE connection for all agents metrics");
+        if (agentIds != null && agentIds.size() > MAX_STREAM_AGENTS) {
+            throw new BadRequestException("stream agents", "agentIds", agentIds.size());
+        }
+        FleetGroupBy streamGroupBy = group != null ? FleetGroupBy.from(groupBy) : null;
+        if (streamGroupBy == FleetGroupBy.NONE) {
+            throw new BadRequestException("stream group", "groupBy", groupBy);
+        }
+        if (streamGroupBy == null && groupBy != null) {
+            throw new BadRequestException("stream group", "group", null);
+        }
+        StreamSubscription subscription = streamSubscription(maxRate, delta, fields, lastEventId)
+                .agentIds(agentIds != null && !agentIds.isEmpty() ? Set.copyOf(agentIds) : null)
+                .groupBy(streamGroupBy)
+                .group(group)
+                .build();
+        return sseEmitterService.createEmitter(subscription, metricsService::getAllRealtimeMetrics);
     }
 
     @GetMapping(value = "/stream/{agentId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    public SseEmitter streamAgentMetrics(@PathVariable Long agentId) {
-        SseEmitter emitter = sseEmitterService.createEmitterForAgent(agentId);
+    public SseEmitter streamAgentMetrics(@PathVariable Long agentId,
+                                         @RequestParam(required = false) Double maxRate,
+                                         @RequestParam(defaultValue = "false") boolean delta,
+                                         @RequestParam(required = false) Set<String> fields,
+                                         @RequestHeader(value = LAST_EVENT_ID_HEADER, required = false) String lastEventId) {
         log.debug("New SSE connection for agent: {}", agentId);
+        return sseEmitterService.createEmitterForAgent(agentId,
+                streamSubscription(maxRate, delta, fields, lastEventId).build(),
+                () -> metricsService.getRealtimeMetrics(agentId));
+    }
+
+    @GetMapping("/stream/stats")
+    public ResponseEntity<ApiResponse<StreamStats>> getStreamStats() {
+        return ResponseEntity.ok(ApiResponse.success(sseEmitterService.getStats(), "Stream statistics retrieved successfully"));
+    }
+
+    private StreamSubscription.StreamSubscriptionBuilder streamSubscription(Double maxRate, boolean delta,
+                                                                           Set<String> fields, String lastEventId) {
+        if (maxRate != null && (maxRate <= 0 || maxRate > MAX_STREAM_RATE)) {
+            throw new BadRequestException("stream rate", "maxRate", maxRate);
+        }
+        return StreamSubscription.builder()
+                .userId(authService.getCurrentUser().getId())
+                .maxRate(maxRate)
+                .delta(delta)
+                .fields(StreamSubscription.parseFields(fields))
+                .lastEventId(lastEventId);
+    }
+
+    private void validateHistoryFormat(String format) {
+        if (format != null && !JSON_FORMAT.equalsIgnoreCase(format) && !ColumnarMetrics.FORMAT.equalsIgnoreCase(format)) {
+            throw new BadRequestException("history format", "format", format);
+        }
+    }
+
+    private MetricsField referenceField(String reference, List<String> fields) {
+        if (reference != null) {
+            return MetricsField.from(reference);
+        }
+        return fields == null || fields.isEmpty() ? MetricsField.CPU_USAGE : MetricsField.from(fields.get(0));
+    }
+
+    private String contentETag(List<MetricsDto> history, Object... params) {
+        long hash = ETags.hash(ETags.seed(), params);
+        for (MetricsDto point : history) {
+            hash = ETags.hash(hash, point.getId(), point.getCreatedAt(), point.getCpuUsage(),
+                    point.getMemoryUsage(), point.getDiskUsage(), point.getNetworkRxBytes());
+        }
+        return ETags.weak(hash);
+    }
 
-        try {
-            RealtimeMetrics initialMetrics = metricsService.getRealtimeMetrics(agentId);
-            emitter.send(SseEmitter.event()
-                    .name("init")
-                    .data(initialMetrics));
-        } catch (Exception e) {
-            log.error("Failed to send initial metrics for agent: {}", agentId, e);
+    private ResponseEntity<ApiResponse<?>> historyResponse(Long agentId, List<MetricsDto> history,
+                                                           String format, List<String> fields, String accept,
+                                                           String etag, CacheControl cacheControl) {
+        boolean columnar = ColumnarMetrics.FORMAT.equalsIgnoreCase(format)
+                || (format == null && accept != null && accept.contains(ColumnarMetrics.MEDIA_TYPE));
+        if (!columnar) {
+            return ResponseEntity.ok()
+                    .eTag(etag)
+                    .cacheControl(cacheControl)
+                    .body(ApiResponse.success(history, "Metrics history retrieved successfully"));
         }
 
-        return emitter;
+        List<MetricsField> columns = fields == null || fields.isEmpty()
+                ? List.of(MetricsField.values())
+                : MetricsField.fromList(fields);
+        ColumnarMetrics metrics = ColumnarMetrics.of(agentId, history, columns);
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(cacheControl)
+                .contentType(MediaType.parseMediaType(ColumnarMetrics.MEDIA_TYPE))
+                .body(ApiResponse.success(metrics, "Metrics history retrieved successfully"));
     }
 }
@@ -24,6 +24,7 @@ public class AgentDto {
     private String platform;
     private boolean enabled;
     private LocalDateTime lastSeenAt;
+    private Integer heartbeatTimeoutSeconds;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
 
@@ -39,6 +40,7 @@ public class AgentDto {
                 .platform(agent.getPlatform())
                 .enabled(agent.isEnabled())
                 .lastSeenAt(agent.getLastSeenAt())
+                .heartbeatTimeoutSeconds(agent.getHeartbeatTimeoutSeconds())
                 .createdAt(agent.getCreatedAt())
                 .updatedAt(agent.getUpdatedAt())
                 .build();
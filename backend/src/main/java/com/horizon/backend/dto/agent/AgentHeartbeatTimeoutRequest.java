@@ -0,0 +1,19 @@
+package com.horizon.backend.dto.agent;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+@Getter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AgentHeartbeatTimeoutRequest {
+
+    @Min(value = 5, message = "Heartbeat timeout must be at least 5 seconds")
+    @Max(value = 86400, message = "Heartbeat timeout must be at most 86400 seconds")
+    private Integer timeoutSeconds;
+}
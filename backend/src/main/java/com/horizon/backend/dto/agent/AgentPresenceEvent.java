@@ -0,0 +1,23 @@
+package com.horizon.backend.dto.agent;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Getter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AgentPresenceEvent {
+
+    private Long agentId;
+    private Long userId;
+    private String agentName;
+    private String hostname;
+    private boolean online;
+    private LocalDateTime lastHeartbeat;
+    private LocalDateTime timestamp;
+}
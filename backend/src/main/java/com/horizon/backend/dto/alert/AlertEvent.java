@@ -0,0 +1,29 @@
+package com.horizon.backend.dto.alert;
+
+import com.horizon.backend.entity.AlertRuleType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Getter
+@Builder(toBuilder = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class AlertEvent {
+
+    private Long ruleId;
+    private String ruleName;
+    private AlertRuleType type;
+    private Long userId;
+    private Long agentId;
+    private String agentName;
+    private String metric;
+    private AlertState state;
+    private double value;
+    private double threshold;
+    private LocalDateTime firedAt;
+    private LocalDateTime timestamp;
+}
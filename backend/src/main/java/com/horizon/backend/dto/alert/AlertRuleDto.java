@@ -0,0 +1,50 @@
+package com.horizon.backend.dto.alert;
+
+import com.horizon.backend.entity.AlertOperator;
+import com.horizon.backend.entity.AlertRule;
+import com.horizon.backend.entity.AlertRuleType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Getter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AlertRuleDto {
+
+    private Long id;
+    private String name;
+    private Long agentId;
+    private String metric;
+    private AlertRuleType type;
+    private AlertOperator operator;
+    private double threshold;
+    private int forSeconds;
+    private Double ewmaAlpha;
+    private String webhookUrl;
+    private boolean enabled;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+
+    public static AlertRuleDto from(AlertRule rule) {
+        return AlertRuleDto.builder()
+                .id(rule.getId())
+                .name(rule.getName())
+                .agentId(rule.getAgentId())
+                .metric(rule.getMetric())
+                .type(rule.getType())
+                .operator(rule.getOperator())
+                .threshold(rule.getThreshold())
+                .forSeconds(rule.getForSeconds())
+                .ewmaAlpha(rule.getEwmaAlpha())
+                .webhookUrl(rule.getWebhookUrl())
+                .enabled(rule.isEnabled())
+                .createdAt(rule.getCreatedAt())
+                .updatedAt(rule.getUpdatedAt())
+                .build();
+    }
+}
@@ -0,0 +1,50 @@
+package com.horizon.backend.dto.alert;
+
+import com.horizon.backend.entity.AlertOperator;
+import com.horizon.backend.entity.AlertRuleType;
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+@Getter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AlertRuleRequest {
+
+    @NotBlank(message = "Name is required")
+    @Size(max = 100, message = "Name must be at most 100 characters")
+    private String name;
+
+    private Long agentId;
+
+    private String metric;
+
+    @NotNull(message = "Rule type is required")
+    private AlertRuleType type;
+
+    private AlertOperator operator;
+
+    private Double threshold;
+
+    @Min(value = 0, message = "For-duration must not be negative")
+    private Integer forSeconds;
+
+    @DecimalMin(value = "0.001", message = "EWMA alpha must be greater than 0")
+    @DecimalMax(value = "1.0", message = "EWMA alpha must be at most 1")
+    private Double ewmaAlpha;
+
+    @Size(max = 500, message = "Webhook URL must be at most 500 characters")
+    @Pattern(regexp = "^https?://.+", message = "Webhook URL must be an http(s) URL")
+    private String webhookUrl;
+
+    private Boolean enabled;
+}
@@ -0,0 +1,6 @@
+package com.horizon.backend.dto.alert;
+
+public enum AlertState {
+    FIRING,
+    RESOLVED
+}
@@ -0,0 +1,30 @@
+package com.horizon.backend.dto.metrics;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Getter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AgentForecast {
+
+    private Long agentId;
+    private String agentName;
+    private LocalDateTime computedAt;
+    private LocalDateTime lastBucket;
+    private List<ResourceForecast> forecasts;
+
+    public Double getHoursToFull() {
+        return forecasts.stream()
+                .map(ResourceForecast::getHoursToFull)
+                .filter(hours -> hours != null)
+                .min(Double::compare)
+                .orElse(null);
+    }
+}
@@ -0,0 +1,8 @@
+package com.horizon.backend.dto.metrics;
+
+public interface AgentLastSeenView {
+
+    Long getAgentId();
+
+    Long getEpochSecond();
+}
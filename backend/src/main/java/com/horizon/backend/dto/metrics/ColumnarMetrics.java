@@ -0,0 +1,51 @@
+package com.horizon.backend.dto.metrics;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Getter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ColumnarMetrics {
+
+    public static final String MEDIA_TYPE = "application/vnd.horizon.columnar+json";
+    public static final String FORMAT = "columnar";
+
+    private Long agentId;
+    private String agentName;
+    private List<LocalDateTime> timestamps;
+    private Map<String, Number[]> columns;
+
+    public static ColumnarMetrics of(Long agentId, List<MetricsDto> points, List<MetricsField> fields) {
+        int size = points.size();
+        List<LocalDateTime> timestamps = new ArrayList<>(size);
+        Map<String, Number[]> columns = new LinkedHashMap<>();
+        for (MetricsField field : fields) {
+            columns.put(field.getFieldName(), new Number[size]);
+        }
+
+        for (int i = 0; i < size; i++) {
+            MetricsDto point = points.get(i);
+            timestamps.add(point.getCreatedAt());
+            for (MetricsField field : fields) {
+                columns.get(field.getFieldName())[i] = field.extract(point);
+            }
+        }
+
+        return ColumnarMetrics.builder()
+                .agentId(agentId)
+                .agentName(size > 0 ? points.get(0).getAgentName() : null)
+                .timestamps(timestamps)
+                .columns(columns)
+                .build();
+    }
+}
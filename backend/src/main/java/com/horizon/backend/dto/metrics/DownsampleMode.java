@@ -0,0 +1,20 @@
+package com.horizon.backend.dto.metrics;
+
+import com.horizon.backend.exception.BadRequestException;
+
+public enum DownsampleMode {
+
+    AVG,
+    LTTB;
+
+    public static DownsampleMode from(String value) {
+        if (value == null || value.isBlank()) {
+            return AVG;
+        }
+        try {
+            return DownsampleMode.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("downsample mode", "mode", value);
+        }
+    }
+}
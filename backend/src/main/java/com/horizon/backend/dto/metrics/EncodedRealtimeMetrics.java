@@ -0,0 +1,175 @@
+package com.horizon.backend.dto.metrics;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * A realtime snapshot encoded once at ingest. The per-sample fields and the agent identity are
+ * kept as cached UTF-8 fragments; only {@code online} and {@code outliers}, which change without a
+ * new sample, are spliced in when the snapshot is written to a response or an SSE frame.
+ * <p>
+ * The state and identity trees the JSON was written from are kept alongside it, so per-subscriber
+ * projections and deltas never have to parse the bytes back. They are shared and must not be
+ * modified.
+ */
+public final class EncodedRealtimeMetrics extends JsonSerializable.Base {
+
+    private static final SerializedString ONLINE = new SerializedString(",\"online\":true");
+    private static final SerializedString OFFLINE = new SerializedString(",\"online\":false");
+    private static final SerializedString NO_IDENTITY = new SerializedString("");
+
+    private final RealtimeMetrics metrics;
+    private final String state;
+    private final SerializedString statePrefix;
+    private final SerializedString identity;
+    private final ObjectNode stateTree;
+    private final ObjectNode identityTree;
+    private final boolean online;
+    private final List<String> outliers;
+
+    private EncodedRealtimeMetrics(RealtimeMetrics metrics, String state, SerializedString statePrefix,
+                                   SerializedString identity, ObjectNode stateTree, ObjectNode identityTree,
+                                   boolean online, List<String> outliers) {
+        this.metrics = metrics;
+        this.state = state;
+        this.statePrefix = statePrefix;
+        this.identity = identity;
+        this.stateTree = stateTree;
+        this.identityTree = identityTree;
+        this.online = online;
+        this.outliers = outliers;
+    }
+
+    public static EncodedRealtimeMetrics of(RealtimeMetrics metrics, String state, ObjectNode stateTree,
+                                            SerializedString identity, ObjectNode identityTree) {
+        return new EncodedRealtimeMetrics(metrics, state, new SerializedString(state.substring(0, state.length() - 1)),
+                identity != null ? identity : NO_IDENTITY, stateTree, identityTree, metrics.isOnline(), null);
+    }
+
+    public static SerializedString identityFragment(String identityJson) {
+        if (identityJson.length() <= 2) {
+            return NO_IDENTITY;
+        }
+        return new SerializedString("," + identityJson.substring(1, identityJson.length() - 1));
+    }
+
+    public static byte[] toJsonArray(List<EncodedRealtimeMetrics> snapshots) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(snapshots.size() * 1024 + 2);
+        out.write('[');
+        for (int i = 0; i < snapshots.size(); i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            snapshots.get(i).writeTo(out);
+        }
+        out.write(']');
+        return out.toByteArray();
+    }
+
+    public EncodedRealtimeMetrics withStatus(boolean online, List<String> outliers) {
+        if (online == this.online && outliers == this.outliers) {
+            return this;
+        }
+        return new EncodedRealtimeMetrics(metrics, state, statePrefix, identity, stateTree, identityTree,
+                online, outliers);
+    }
+
+    public Long getAgentId() {
+        return metrics.getAgentId();
+    }
+
+    public Long getSequence() {
+        return metrics.getSequence();
+    }
+
+    public String getAgentName() {
+        return metrics.getAgentName();
+    }
+
+    public boolean isOnline() {
+        return online;
+    }
+
+    public List<String> getOutliers() {
+        return outliers;
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    public ObjectNode getStateTree() {
+        return stateTree;
+    }
+
+    public ObjectNode getIdentityTree() {
+        return identityTree;
+    }
+
+    public RealtimeMetrics getMetrics() {
+        return metrics;
+    }
+
+    public RealtimeMetrics toMetrics() {
+        RealtimeMetrics copy = metrics.toBuilder().build();
+        copy.setOnline(online);
+        copy.setOutliers(outliers);
+        return copy;
+    }
+
+    public byte[] toBytes() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(statePrefix.asUnquotedUTF8().length + 256);
+        writeTo(out);
+        return out.toByteArray();
+    }
+
+    @Override
+    public void serialize(JsonGenerator gen, SerializerProvider serializers) throws IOException {
+        gen.writeRawValue(statePrefix);
+        gen.writeRaw(identity);
+        gen.writeRaw(online ? ONLINE : OFFLINE);
+        if (outliers != null) {
+            gen.writeRaw(encodeOutliers());
+        }
+        gen.writeRaw('}');
+    }
+
+    @Override
+    public void serializeWithType(JsonGenerator gen, SerializerProvider serializers, TypeSerializer typeSer)
+            throws IOException {
+        serialize(gen, serializers);
+    }
+
+    private void writeTo(ByteArrayOutputStream out) {
+        out.writeBytes(statePrefix.asUnquotedUTF8());
+        out.writeBytes(identity.asUnquotedUTF8());
+        out.writeBytes((online ? ONLINE : OFFLINE).asUnquotedUTF8());
+        if (outliers != null) {
+            out.writeBytes(encodeOutliers().getBytes(StandardCharsets.UTF_8));
+        }
+        out.write('}');
+    }
+
+    private String encodeOutliers() {
+        StringBuilder json = new StringBuilder(",\"outliers\":[");
+        for (int i = 0; i < outliers.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append('"');
+            JsonStringEncoder.getInstance().quoteAsString(outliers.get(i), json);
+            json.append('"');
+        }
+        return json.append(']').toString();
+    }
+}
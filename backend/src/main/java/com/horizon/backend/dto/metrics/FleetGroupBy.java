@@ -0,0 +1,32 @@
+package com.horizon.backend.dto.metrics;
+
+import com.horizon.backend.exception.BadRequestException;
+
+public enum FleetGroupBy {
+
+    NONE,
+    OS,
+    PLATFORM,
+    USER;
+
+    public static FleetGroupBy from(String value) {
+        if (value == null || value.isBlank()) {
+            return NONE;
+        }
+        try {
+            return FleetGroupBy.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("group by", "groupBy", value);
+        }
+    }
+
+    public String keyOf(RealtimeMetrics metrics, Long userId) {
+        String key = switch (this) {
+            case NONE -> "all";
+            case OS -> metrics.getOs();
+            case PLATFORM -> metrics.getPlatform();
+            case USER -> userId != null ? String.valueOf(userId) : null;
+        };
+        return key != null && !key.isBlank() ? key : "unknown";
+    }
+}
@@ -0,0 +1,36 @@
+package com.horizon.backend.dto.metrics;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+@Getter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FleetGroupStats {
+
+    private String group;
+    private long agents;
+    private long online;
+    private Map<String, MetricSummary> metrics;
+
+    @Getter
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class MetricSummary {
+        private long count;
+        private Double avg;
+        private Double stddev;
+        private Double p50;
+        private Double p95;
+        private Double threshold;
+        private Long above;
+    }
+}
@@ -0,0 +1,18 @@
+package com.horizon.backend.dto.metrics;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+@Getter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LeaderboardEntry {
+
+    private Long agentId;
+    private String agentName;
+    private String hostname;
+    private double value;
+}
@@ -0,0 +1,90 @@
+package com.horizon.backend.dto.metrics;
+
+import com.horizon.backend.exception.BadRequestException;
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+@Getter
+public enum MetricType {
+
+    CPU("cpu", RealtimeMetrics::getCpuUsage, 1.0, 101),
+    MEMORY("memory", RealtimeMetrics::getMemoryUsage, 1.0, 101),
+    DISK("disk", RealtimeMetrics::getDiskUsage, 1.0, 101),
+    NETWORK_RX_RATE("networkRxRate", RealtimeMetrics::getNetworkRxRate, 0, 193),
+    NETWORK_TX_RATE("networkTxRate", RealtimeMetrics::getNetworkTxRate, 0, 193),
+    TEMPERATURE("temperature", RealtimeMetrics::getTemperature, 1.0, 151),
+    LOAD_1M("load1m", RealtimeMetrics::getLoadAverage1m, 0.1, 1001);
+
+    private static final int LOG_BINS_PER_OCTAVE = 4;
+
+    private final String key;
+    private final Function<RealtimeMetrics, Double> extractor;
+    private final double binWidth;
+    private final int bins;
+
+    MetricType(String key, Function<RealtimeMetrics, Double> extractor, double binWidth, int bins) {
+        this.key = key;
+        this.extractor = extractor;
+        this.binWidth = binWidth;
+        this.bins = bins;
+    }
+
+    public Double extract(RealtimeMetrics metrics) {
+        return extractor.apply(metrics);
+    }
+
+    public int bin(double value) {
+        int bin;
+        if (binWidth > 0) {
+            bin = (int) Math.floor(value / binWidth);
+        } else {
+            bin = value < 1 ? 0 : 1 + (int) Math.floor(Math.log(value) / Math.log(2) * LOG_BINS_PER_OCTAVE);
+        }
+        return Math.max(0, Math.min(bins - 1, bin));
+    }
+
+    public double lowerBound(int bin) {
+        if (binWidth > 0) {
+            return bin * binWidth;
+        }
+        return bin == 0 ? 0 : Math.pow(2, (double) (bin - 1) / LOG_BINS_PER_OCTAVE);
+    }
+
+    public double midpoint(int bin) {
+        if (binWidth > 0) {
+            return (bin + 0.5) * binWidth;
+        }
+        return bin == 0 ? 0.5 : Math.sqrt(lowerBound(bin) * lowerBound(bin + 1));
+    }
+
+    public static MetricType from(String value) {
+        return Arrays.stream(values())
+                .filter(type -> type.key.equalsIgnoreCase(value.trim()) || type.name().equalsIgnoreCase(value.trim()))
+                .findFirst()
+                .orElseThrow(() -> new BadRequestException("metric", "metric", value));
+    }
+
+    public static Map<MetricType, Double> parseThresholds(List<String> values) {
+        Map<MetricType, Double> thresholds = new EnumMap<>(MetricType.class);
+        if (values == null) {
+            return thresholds;
+        }
+        for (String value : values) {
+            int separator = value.indexOf(':');
+            if (separator < 0) {
+                throw new BadRequestException("threshold", "above", value);
+            }
+            try {
+                thresholds.put(from(value.substring(0, separator)), Double.parseDouble(value.substring(separator + 1)));
+            } catch (NumberFormatException e) {
+                throw new BadRequestException("threshold", "above", value);
+            }
+        }
+        return thresholds;
+    }
+}
@@ -0,0 +1,38 @@
+package com.horizon.backend.dto.metrics;
+
+public interface MetricsBucketView {
+
+    Long getAgentId();
+
+    Long getBucket();
+
+    Long getSampleCount();
+
+    Double getCpuUsage();
+
+    Long getMemoryTotal();
+
+    Long getMemoryUsed();
+
+    Double getMemoryUsage();
+
+    Long getDiskTotal();
+
+    Long getDiskUsed();
+
+    Double getDiskUsage();
+
+    Long getNetworkRxBytes();
+
+    Long getNetworkTxBytes();
+
+    Double getLoadAverage1m();
+
+    Double getLoadAverage5m();
+
+    Double getLoadAverage15m();
+
+    Integer getProcessCount();
+
+    Long getUptimeSeconds();
+}
@@ -0,0 +1,12 @@
+package com.horizon.backend.dto.metrics;
+
+public interface MetricsCounterView {
+
+    Long getEpochSecond();
+
+    Long getNetworkRxBytes();
+
+    Long getNetworkTxBytes();
+
+    Long getUptimeSeconds();
+}
@@ -7,9 +7,10 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 
 @Getter
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class MetricsDto {
@@ -55,4 +56,26 @@ public class MetricsDto {
                 .createdAt(metrics.getCreatedAt())
                 .build();
     }
+
+    public static MetricsDto from(MetricsBucketView bucket, String agentName, long stepSeconds) {
+        return MetricsDto.builder()
+                .agentId(bucket.getAgentId())
+                .agentName(agentName)
+                .cpuUsage(bucket.getCpuUsage())
+                .memoryTotal(bucket.getMemoryTotal())
+                .memoryUsed(bucket.getMemoryUsed())
+                .memoryUsage(bucket.getMemoryUsage())
+                .diskTotal(bucket.getDiskTotal())
+                .diskUsed(bucket.getDiskUsed())
+                .diskUsage(bucket.getDiskUsage())
+                .networkRxBytes(bucket.getNetworkRxBytes())
+                .networkTxBytes(bucket.getNetworkTxBytes())
+                .loadAverage1m(bucket.getLoadAverage1m())
+                .loadAverage5m(bucket.getLoadAverage5m())
+                .loadAverage15m(bucket.getLoadAverage15m())
+                .processCount(bucket.getProcessCount())
+                .uptimeSeconds(bucket.getUptimeSeconds())
+                .createdAt(LocalDateTime.ofEpochSecond(bucket.getBucket() * stepSeconds, 0, ZoneOffset.UTC))
+                .build();
+    }
 }
@@ -0,0 +1,55 @@
+package com.horizon.backend.dto.metrics;
+
+import com.horizon.backend.exception.BadRequestException;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+@Getter
+@RequiredArgsConstructor
+public enum MetricsField {
+
+    CPU_USAGE("cpuUsage", MetricsDto::getCpuUsage),
+    MEMORY_TOTAL("memoryTotal", MetricsDto::getMemoryTotal),
+    MEMORY_USED("memoryUsed", MetricsDto::getMemoryUsed),
+    MEMORY_USAGE("memoryUsage", MetricsDto::getMemoryUsage),
+    DISK_TOTAL("diskTotal", MetricsDto::getDiskTotal),
+    DISK_USED("diskUsed", MetricsDto::getDiskUsed),
+    DISK_USAGE("diskUsage", MetricsDto::getDiskUsage),
+    NETWORK_RX_BYTES("networkRxBytes", MetricsDto::getNetworkRxBytes),
+    NETWORK_TX_BYTES("networkTxBytes", MetricsDto::getNetworkTxBytes),
+    LOAD_AVERAGE_1M("loadAverage1m", MetricsDto::getLoadAverage1m),
+    LOAD_AVERAGE_5M("loadAverage5m", MetricsDto::getLoadAverage5m),
+    LOAD_AVERAGE_15M("loadAverage15m", MetricsDto::getLoadAverage15m),
+    PROCESS_COUNT("processCount", MetricsDto::getProcessCount),
+    UPTIME_SECONDS("uptimeSeconds", MetricsDto::getUptimeSeconds);
+
+    public static final List<MetricsField> DEFAULT_FIELDS = List.of(CPU_USAGE, MEMORY_USAGE, DISK_USAGE);
+
+    private final String fieldName;
+    private final Function<MetricsDto, Number> extractor;
+
+    public Number extract(MetricsDto metrics) {
+        return extractor.apply(metrics);
+    }
+
+    public static MetricsField from(String value) {
+        return Arrays.stream(values())
+                .filter(field -> field.fieldName.equalsIgnoreCase(value.trim()))
+                .findFirst()
+                .orElseThrow(() -> new BadRequestException("metrics field", "fields", value));
+    }
+
+    public static List<MetricsField> fromList(List<String> values) {
+        if (values == null || values.isEmpty()) {
+            return DEFAULT_FIELDS;
+        }
+        return values.stream()
+                .map(MetricsField::from)
+                .distinct()
+                .toList();
+    }
+}
@@ -0,0 +1,23 @@
+package com.horizon.backend.dto.metrics;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+@Getter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MetricsOutlier {
+
+    private Long agentId;
+    private String agentName;
+    private String hostname;
+    private String group;
+    private String metric;
+    private double value;
+    private double median;
+    private double stddev;
+    private double score;
+}
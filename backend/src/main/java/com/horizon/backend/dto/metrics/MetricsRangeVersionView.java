@@ -0,0 +1,10 @@
+package com.horizon.backend.dto.metrics;
+
+public interface MetricsRangeVersionView {
+
+    Long getSampleCount();
+
+    Long getMinId();
+
+    Long getMaxId();
+}
@@ -0,0 +1,31 @@
+package com.horizon.backend.dto.metrics;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+@Getter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MetricsSeriesResponse {
+
+    private long step;
+    private List<LocalDateTime> timestamps;
+    private List<AgentSeries> series;
+
+    @Getter
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class AgentSeries {
+        private Long agentId;
+        private String agentName;
+        private Map<String, Number[]> values;
+    }
+}
@@ -0,0 +1,22 @@
+package com.horizon.backend.dto.metrics;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+@Getter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PercentileResponse {
+
+    private Long agentId;
+    private LocalDateTime startTime;
+    private LocalDateTime endTime;
+    private long sampleCount;
+    private Map<String, Map<String, Double>> percentiles;
+}
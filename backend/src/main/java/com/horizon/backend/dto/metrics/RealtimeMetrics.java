@@ -1,5 +1,6 @@
 package com.horizon.backend.dto.metrics;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Getter;
@@ -12,12 +13,13 @@ import java.util.List;
 
 @Getter
 @Setter
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class RealtimeMetrics implements Serializable {
 
     private Long agentId;
+    private Long sequence;
     private String agentName;
     private String hostname;
     private boolean online;
@@ -50,6 +52,9 @@ public class RealtimeMetrics implements Serializable {
     private LocalDateTime timestamp;
     private LocalDateTime lastHeartbeat;
 
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<String> outliers;
+
     public static RealtimeMetrics offline(Long agentId, String agentName, String hostname) {
         return RealtimeMetrics.builder()
                 .agentId(agentId)
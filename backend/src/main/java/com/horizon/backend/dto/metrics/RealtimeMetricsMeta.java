@@ -0,0 +1,59 @@
+package com.horizon.backend.dto.metrics;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RealtimeMetricsMeta {
+
+    private String agentName;
+    private String hostname;
+    private String nodeId;
+    private String os;
+    private String platform;
+    private Map<String, List<String>> interfaceIps;
+
+    public static RealtimeMetricsMeta from(RealtimeMetrics metrics) {
+        Map<String, List<String>> interfaceIps = null;
+        if (metrics.getInterfaces() != null) {
+            interfaceIps = new LinkedHashMap<>();
+            for (RealtimeMetrics.NetworkInterfaceInfo info : metrics.getInterfaces()) {
+                if (info.getName() != null && info.getIps() != null) {
+                    interfaceIps.put(info.getName(), info.getIps());
+                }
+            }
+        }
+        return RealtimeMetricsMeta.builder()
+                .agentName(metrics.getAgentName())
+                .hostname(metrics.getHostname())
+                .nodeId(metrics.getNodeId())
+                .os(metrics.getOs())
+                .platform(metrics.getPlatform())
+                .interfaceIps(interfaceIps)
+                .build();
+    }
+
+    public void applyTo(RealtimeMetrics metrics) {
+        metrics.setAgentName(agentName);
+        metrics.setHostname(hostname);
+        metrics.setNodeId(nodeId);
+        metrics.setOs(os);
+        metrics.setPlatform(platform);
+        if (interfaceIps != null && metrics.getInterfaces() != null) {
+            for (RealtimeMetrics.NetworkInterfaceInfo info : metrics.getInterfaces()) {
+                info.setIps(interfaceIps.get(info.getName()));
+            }
+        }
+    }
+}
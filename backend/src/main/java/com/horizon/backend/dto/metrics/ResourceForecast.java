@@ -0,0 +1,26 @@
+package com.horizon.backend.dto.metrics;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Getter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ResourceForecast {
+
+    private String resource;
+    private String mountpoint;
+    private double currentUsage;
+    private double slopePerDay;
+    private boolean seasonal;
+    private int samples;
+    private Double hoursToFull;
+    private LocalDateTime estimatedFullAt;
+}
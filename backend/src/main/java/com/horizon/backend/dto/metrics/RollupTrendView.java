@@ -0,0 +1,20 @@
+package com.horizon.backend.dto.metrics;
+
+import java.time.LocalDateTime;
+
+public interface RollupTrendView {
+
+    Long getId();
+
+    Long getAgentId();
+
+    LocalDateTime getBucketStart();
+
+    long getSampleCount();
+
+    Double getMemoryUsageAvg();
+
+    Double getDiskUsageAvg();
+
+    String getMountUsage();
+}
@@ -0,0 +1,24 @@
+package com.horizon.backend.dto.metrics;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+@Getter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StreamStats {
+
+    private int subscribers;
+    private int queuedFrames;
+    private int maxQueueDepth;
+    private int queueCapacity;
+    private long deliveredFrames;
+    private long droppedFrames;
+    private long slowConsumerDisconnects;
+    private long replayedFrames;
+    private long resyncs;
+    private String lastEventId;
+}
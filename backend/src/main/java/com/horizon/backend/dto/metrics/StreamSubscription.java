@@ -0,0 +1,54 @@
+package com.horizon.backend.dto.metrics;
+
+import com.horizon.backend.exception.BadRequestException;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+@Getter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StreamSubscription {
+
+    private static final Set<String> PROJECTABLE_FIELDS = Arrays.stream(RealtimeMetrics.class.getDeclaredFields())
+            .filter(field -> !Modifier.isStatic(field.getModifiers()))
+            .map(Field::getName)
+            .collect(Collectors.toUnmodifiableSet());
+
+    private Long userId;
+    private Double maxRate;
+    private boolean delta;
+    private String lastEventId;
+    private Set<Long> agentIds;
+    private FleetGroupBy groupBy;
+    private String group;
+    private Set<String> fields;
+
+    public static StreamSubscription unlimited() {
+        return new StreamSubscription();
+    }
+
+    public boolean isConflated() {
+        return maxRate != null;
+    }
+
+    public static Set<String> parseFields(Set<String> values) {
+        if (values == null || values.isEmpty()) {
+            return null;
+        }
+        for (String value : values) {
+            if (!PROJECTABLE_FIELDS.contains(value)) {
+                throw new BadRequestException("stream field", "fields", value);
+            }
+        }
+        return Set.copyOf(values);
+    }
+}
@@ -54,6 +54,9 @@ public class Agent {
     @Column(name = "agent_port")
     private Integer agentPort;
 
+    @Column(name = "heartbeat_timeout_seconds")
+    private Integer heartbeatTimeoutSeconds;
+
     @CreationTimestamp
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
@@ -9,7 +9,8 @@ import java.time.LocalDateTime;
 @Entity
 @Table(name = "agent_metrics", indexes = {
         @Index(name = "idx_agent_metrics_agent_id", columnList = "agent_id"),
-        @Index(name = "idx_agent_metrics_created_at", columnList = "created_at")
+        @Index(name = "idx_agent_metrics_created_at", columnList = "created_at"),
+        @Index(name = "idx_agent_metrics_agent_created_id", columnList = "agent_id, created_at DESC, id DESC")
 })
 @Getter
 @Setter
@@ -0,0 +1,71 @@
+package com.horizon.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "agent_metrics_rollups",
+        uniqueConstraints = @UniqueConstraint(name = "uk_agent_metrics_rollups_agent_bucket",
+                columnNames = {"agent_id", "bucket_start"}),
+        indexes = @Index(name = "idx_agent_metrics_rollups_bucket_start", columnList = "bucket_start"))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AgentMetricsRollup {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "agent_id", nullable = false)
+    private Long agentId;
+
+    @Column(name = "bucket_start", nullable = false)
+    private LocalDateTime bucketStart;
+
+    @Column(name = "sample_count", nullable = false)
+    private long sampleCount;
+
+    @Column(name = "cpu_usage_avg")
+    private Double cpuUsageAvg;
+
+    @Column(name = "cpu_usage_max")
+    private Double cpuUsageMax;
+
+    @Column(name = "memory_sample_count", nullable = false, columnDefinition = "BIGINT NOT NULL DEFAULT 0")
+    private long memorySampleCount;
+
+    @Column(name = "disk_sample_count", nullable = false, columnDefinition = "BIGINT NOT NULL DEFAULT 0")
+    private long diskSampleCount;
+
+    @Column(name = "memory_usage_avg")
+    private Double memoryUsageAvg;
+
+    @Column(name = "memory_usage_max")
+    private Double memoryUsageMax;
+
+    @Column(name = "disk_usage_avg")
+    private Double diskUsageAvg;
+
+    @Column(name = "network_rx_rate_avg")
+    private Double networkRxRateAvg;
+
+    @Column(name = "network_tx_rate_avg")
+    private Double networkTxRateAvg;
+
+    @Column(name = "mount_usage", columnDefinition = "TEXT")
+    private String mountUsage;
+
+    @Column(name = "cpu_sketch")
+    private byte[] cpuSketch;
+
+    @Column(name = "network_rx_rate_sketch")
+    private byte[] networkRxRateSketch;
+
+    @Column(name = "network_tx_rate_sketch")
+    private byte[] networkTxRateSketch;
+}
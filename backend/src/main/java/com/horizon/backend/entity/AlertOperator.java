@@ -0,0 +1,10 @@
+package com.horizon.backend.entity;
+
+public enum AlertOperator {
+    ABOVE,
+    BELOW;
+
+    public boolean test(double value, double threshold) {
+        return this == ABOVE ? value > threshold : value < threshold;
+    }
+}
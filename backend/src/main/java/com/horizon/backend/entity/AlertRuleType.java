@@ -0,0 +1,8 @@
+package com.horizon.backend.entity;
+
+public enum AlertRuleType {
+    THRESHOLD,
+    RATE_OF_CHANGE,
+    EWMA_DEVIATION,
+    AGENT_OFFLINE
+}
@@ -1,21 +1,49 @@
 package com.horizon.backend.repository;
 
+import com.horizon.backend.dto.metrics.AgentLastSeenView;
+import com.horizon.backend.dto.metrics.MetricsBucketView;
+import com.horizon.backend.dto.metrics.MetricsRangeVersionView;
+import com.horizon.backend.dto.metrics.MetricsCounterView;
 import com.horizon.backend.entity.AgentMetrics;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface AgentMetricsRepository extends JpaRepository<AgentMetrics, Long> {
 
+    String BUCKET_SELECT = "SELECT m.agent_id AS agentId, " +
+            "CAST(FLOOR(EXTRACT(EPOCH FROM m.created_at) / :step) AS BIGINT) AS bucket, " +
+            "COUNT(*) AS sampleCount, " +
+            "AVG(m.cpu_usage) AS cpuUsage, " +
+            "CAST(AVG(m.memory_total) AS BIGINT) AS memoryTotal, " +
+            "CAST(AVG(m.memory_used) AS BIGINT) AS memoryUsed, " +
+            "AVG(m.memory_usage) AS memoryUsage, " +
+            "CAST(AVG(m.disk_total) AS BIGINT) AS diskTotal, " +
+            "CAST(AVG(m.disk_used) AS BIGINT) AS diskUsed, " +
+            "AVG(m.disk_usage) AS diskUsage, " +
+            "MAX(m.network_rx_bytes) AS networkRxBytes, " +
+            "MAX(m.network_tx_bytes) AS networkTxBytes, " +
+            "AVG(m.load_average_1m) AS loadAverage1m, " +
+            "AVG(m.load_average_5m) AS loadAverage5m, " +
+            "AVG(m.load_average_15m) AS loadAverage15m, " +
+            "CAST(ROUND(AVG(m.process_count)) AS INTEGER) AS processCount, " +
+            "MAX(m.uptime_seconds) AS uptimeSeconds " +
+            "FROM agent_metrics m ";
+
     List<AgentMetrics> findByAgentIdOrderByCreatedAtDesc(Long agentId);
 
     Page<AgentMetrics> findByAgentIdOrderByCreatedAtDesc(Long agentId, Pageable pageable);
@@ -28,6 +56,81 @@ public interface AgentMetricsRepository extends JpaRepository<AgentMetrics, Long
             LocalDateTime endTime
     );
 
+    long countByAgentIdAndCreatedAtBetween(Long agentId, LocalDateTime startTime, LocalDateTime endTime);
+
+    @Query("SELECT m FROM AgentMetrics m JOIN FETCH m.agent WHERE m.agent.id = :agentId " +
+            "ORDER BY m.createdAt DESC, m.id DESC")
+    List<AgentMetrics> findFirstPageByAgentId(@Param("agentId") Long agentId, Pageable pageable);
+
+    @Query("SELECT m FROM AgentMetrics m JOIN FETCH m.agent WHERE m.agent.id = :agentId " +
+            "AND (m.createdAt < :createdAt OR (m.createdAt = :createdAt AND m.id < :id)) " +
+            "ORDER BY m.createdAt DESC, m.id DESC")
+    List<AgentMetrics> findPageByAgentIdBefore(
+            @Param("agentId") Long agentId,
+            @Param("createdAt") LocalDateTime createdAt,
+            @Param("id") Long id,
+            Pageable pageable
+    );
+
+    @Query(value = "SELECT COUNT(*) AS sampleCount, MIN(m.id) AS minId, MAX(m.id) AS maxId " +
+            "FROM agent_metrics m WHERE m.agent_id = :agentId " +
+            "AND m.created_at BETWEEN :startTime AND :endTime", nativeQuery = true)
+    MetricsRangeVersionView findRangeVersion(
+            @Param("agentId") Long agentId,
+            @Param("startTime") LocalDateTime startTime,
+            @Param("endTime") LocalDateTime endTime
+    );
+
+    @Query(value = "SELECT m.agent_id AS agentId, " +
+            "CAST(EXTRACT(EPOCH FROM MAX(m.created_at)) AS BIGINT) AS epochSecond " +
+            "FROM agent_metrics m WHERE m.created_at >= :since " +
+            "GROUP BY m.agent_id", nativeQuery = true)
+    List<AgentLastSeenView> findLastSeenSince(@Param("since") LocalDateTime since);
+
+    @Query(value = "SELECT CAST(EXTRACT(EPOCH FROM m.created_at) AS BIGINT) AS epochSecond, " +
+            "m.network_rx_bytes AS networkRxBytes, m.network_tx_bytes AS networkTxBytes, " +
+            "m.uptime_seconds AS uptimeSeconds " +
+            "FROM agent_metrics m WHERE m.agent_id = :agentId " +
+            "AND m.created_at >= :startTime AND m.created_at < :endTime " +
+            "ORDER BY m.created_at ASC, m.id ASC", nativeQuery = true)
+    List<MetricsCounterView> findCountersByAgentId(
+            @Param("agentId") Long agentId,
+            @Param("startTime") LocalDateTime startTime,
+            @Param("endTime") LocalDateTime endTime
+    );
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT m FROM AgentMetrics m WHERE m.agent.id = :agentId " +
+            "AND m.createdAt BETWEEN :startTime AND :endTime ORDER BY m.createdAt ASC")
+    Stream<AgentMetrics> streamByAgentIdAndCreatedAtBetween(
+            @Param("agentId") Long agentId,
+            @Param("startTime") LocalDateTime startTime,
+            @Param("endTime") LocalDateTime endTime
+    );
+
+    @Query(value = BUCKET_SELECT +
+            "WHERE m.agent_id = :agentId AND m.created_at BETWEEN :startTime AND :endTime " +
+            "GROUP BY m.agent_id, bucket ORDER BY bucket", nativeQuery = true)
+    List<MetricsBucketView> findBucketedByAgentId(
+            @Param("agentId") Long agentId,
+            @Param("startTime") LocalDateTime startTime,
+            @Param("endTime") LocalDateTime endTime,
+            @Param("step") long stepSeconds
+    );
+
+    @Query(value = BUCKET_SELECT +
+            "WHERE m.agent_id IN (:agentIds) AND m.created_at BETWEEN :startTime AND :endTime " +
+            "GROUP BY m.agent_id, bucket ORDER BY m.agent_id, bucket", nativeQuery = true)
+    List<MetricsBucketView> findBucketedByAgentIds(
+            @Param("agentIds") Collection<Long> agentIds,
+            @Param("startTime") LocalDateTime startTime,
+            @Param("endTime") LocalDateTime endTime,
+            @Param("step") long stepSeconds
+    );
+
     @Query("SELECT m FROM AgentMetrics m WHERE m.agent.id = :agentId AND m.createdAt >= :since ORDER BY m.createdAt DESC")
     List<AgentMetrics> findRecentByAgentId(@Param("agentId") Long agentId, @Param("since") LocalDateTime since);
 
@@ -0,0 +1,48 @@
+package com.horizon.backend.repository;
+
+import com.horizon.backend.dto.metrics.RollupTrendView;
+import com.horizon.backend.entity.AgentMetricsRollup;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface AgentMetricsRollupRepository extends JpaRepository<AgentMetricsRollup, Long> {
+
+    @Modifying
+    @Query(value = "INSERT INTO agent_metrics_rollups (agent_id, bucket_start, sample_count) " +
+            "VALUES (:agentId, :bucketStart, 0) ON CONFLICT (agent_id, bucket_start) DO NOTHING", nativeQuery = true)
+    int insertIfAbsent(@Param("agentId") Long agentId, @Param("bucketStart") LocalDateTime bucketStart);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM AgentMetricsRollup r WHERE r.bucketStart = :bucketStart AND r.agentId IN :agentIds " +
+            "ORDER BY r.agentId")
+    List<AgentMetricsRollup> lockByBucketStartAndAgentIdIn(
+            @Param("bucketStart") LocalDateTime bucketStart,
+            @Param("agentIds") Collection<Long> agentIds
+    );
+
+    List<AgentMetricsRollup> findByAgentIdAndBucketStartGreaterThanEqualAndBucketStartLessThanOrderByBucketStartAsc(
+            Long agentId,
+            LocalDateTime from,
+            LocalDateTime to
+    );
+
+    List<RollupTrendView> findTrendByBucketStartGreaterThanEqualOrderByAgentIdAscBucketStartAsc(LocalDateTime from);
+
+    @Modifying
+    @Query("DELETE FROM AgentMetricsRollup r WHERE r.bucketStart < :before")
+    int deleteOlderThan(@Param("before") LocalDateTime before);
+
+    @Modifying
+    @Query("DELETE FROM AgentMetricsRollup r WHERE r.agentId = :agentId")
+    int deleteByAgentId(@Param("agentId") Long agentId);
+}
@@ -0,0 +1,18 @@
+package com.horizon.backend.repository;
+
+import com.horizon.backend.entity.AlertRule;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface AlertRuleRepository extends JpaRepository<AlertRule, Long> {
+
+    List<AlertRule> findByUserIdOrderByIdAsc(Long userId);
+
+    List<AlertRule> findByEnabledTrue();
+
+    Optional<AlertRule> findByIdAndUserId(Long id, Long userId);
+}
@@ -0,0 +1,28 @@
+package com.horizon.backend.scheduler;
+
+import com.horizon.backend.service.AlertRuleService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AlertRuleScheduler {
+
+    private final AlertRuleService alertRuleService;
+
+    /**
+     * Rule edits reload the engine of the instance that served them; the other instances pick them
+     * up here. Unchanged rules keep their evaluation state across reloads.
+     */
+    @Scheduled(fixedDelayString = "${alerts.rule-reload-interval-ms:30000}")
+    public void reloadRules() {
+        try {
+            alertRuleService.reloadRules();
+        } catch (Exception e) {
+            log.error("Failed to reload alert rules", e);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.horizon.backend.scheduler;
 
 import com.horizon.backend.repository.AgentMetricsRepository;
+import com.horizon.backend.service.MetricsTileCache;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -16,6 +17,7 @@ import java.time.LocalDateTime;
 public class MetricsCleanupScheduler {
 
     private final AgentMetricsRepository agentMetricsRepository;
+    private final MetricsTileCache metricsTileCache;
 
     @Value("${horizon.metrics.retention-days:7}")
     private int retentionDays;
@@ -30,6 +32,7 @@ public class MetricsCleanupScheduler {
         
         try {
             int deletedCount = agentMetricsRepository.deleteOlderThan(cutoffDate);
+            metricsTileCache.evictBefore(cutoffDate);
             log.info("Metrics cleanup completed. Deleted {} old metrics records", deletedCount);
         } catch (Exception e) {
             log.error("Failed to cleanup old metrics", e);
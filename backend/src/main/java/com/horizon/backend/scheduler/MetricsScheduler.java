@@ -1,7 +1,12 @@
 package com.horizon.backend.scheduler;
 
+import com.horizon.backend.service.AgentPresenceTracker;
+import com.horizon.backend.service.MetricsForecastService;
+import com.horizon.backend.service.MetricsLeaderboard;
+import com.horizon.backend.service.MetricsRollupService;
 import com.horizon.backend.service.MetricsService;
 import com.horizon.backend.service.SseEmitterService;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -15,10 +20,19 @@ public class MetricsScheduler {
 
     private final SseEmitterService sseEmitterService;
     private final MetricsService metricsService;
+    private final MetricsLeaderboard metricsLeaderboard;
+    private final MetricsRollupService metricsRollupService;
+    private final MetricsForecastService metricsForecastService;
+    private final AgentPresenceTracker agentPresenceTracker;
 
     @Value("${metrics.retention-days:7}")
     private int retentionDays;
 
+    @Value("${metrics.rollup-retention-days:90}")
+    private int rollupRetentionDays;
+
+    private long lastLeaderboardVersion = -1;
+
     @Scheduled(fixedRate = 30000)
     public void sendHeartbeat() {
         int connectionCount = sseEmitterService.getConnectionCount();
@@ -28,10 +42,63 @@ public class MetricsScheduler {
         }
     }
 
+    @Scheduled(fixedRate = 50)
+    public void flushConflatedStreams() {
+        sseEmitterService.flushConflated();
+    }
+
+    @Scheduled(fixedRate = 5000)
+    public void sendTopAgents() {
+        long version = metricsLeaderboard.getVersion();
+        if (version == lastLeaderboardVersion || sseEmitterService.getAllAgentsConnectionCount() == 0) {
+            return;
+        }
+        lastLeaderboardVersion = version;
+        sseEmitterService.sendTopAgents(metricsService.getTopAgents(MetricsLeaderboard.TOP_AGENTS_LIMIT));
+    }
+
+    @Scheduled(fixedRate = 5000)
+    public void refreshOutliers() {
+        metricsService.refreshOutliers();
+    }
+
+    @Scheduled(fixedRate = 1000)
+    public void advancePresence() {
+        agentPresenceTracker.advance();
+    }
+
+    @Scheduled(fixedRate = 60000)
+    public void flushRollups() {
+        try {
+            metricsRollupService.flush();
+        } catch (Exception e) {
+            log.error("Failed to flush metrics rollups", e);
+        }
+    }
+
+    @PreDestroy
+    public void flushRollupsOnShutdown() {
+        try {
+            metricsRollupService.flush();
+        } catch (Exception e) {
+            log.error("Failed to flush pending metrics rollups on shutdown", e);
+        }
+    }
+
+    @Scheduled(fixedRate = 900000, initialDelay = 120000)
+    public void refreshForecasts() {
+        try {
+            metricsForecastService.refreshForecasts();
+        } catch (Exception e) {
+            log.error("Failed to refresh resource forecasts", e);
+        }
+    }
+
     @Scheduled(cron = "0 0 3 * * ?")
     public void cleanupOldMetrics() {
         log.info("Starting scheduled cleanup of old metrics data (retention: {} days)", retentionDays);
         metricsService.deleteOldMetrics(retentionDays);
+        metricsRollupService.deleteOldRollups(rollupRetentionDays);
         log.info("Completed scheduled cleanup of old metrics data");
     }
 }
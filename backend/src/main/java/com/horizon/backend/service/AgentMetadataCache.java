@@ -0,0 +1,68 @@
+package com.horizon.backend.service;
+
+import com.horizon.backend.repository.AgentRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Component
+@RequiredArgsConstructor
+public class AgentMetadataCache {
+
+    private final AgentRepository agentRepository;
+
+    @Value("${metrics.agent-cache.ttl-seconds:30}")
+    private long ttlSeconds;
+
+    private volatile Snapshot snapshot;
+
+    public List<AgentSummary> getEnabledAgents() {
+        Snapshot current = snapshot;
+        if (current == null || current.isExpired()) {
+            current = reload();
+        }
+        return current.agents;
+    }
+
+    public AgentSummary find(Long agentId) {
+        Snapshot current = snapshot;
+        if (current == null || current.isExpired()) {
+            current = reload();
+        }
+        return current.byId.get(agentId);
+    }
+
+    public void invalidate() {
+        snapshot = null;
+    }
+
+    private synchronized Snapshot reload() {
+        Snapshot current = snapshot;
+        if (current != null && !current.isExpired()) {
+            return current;
+        }
+        List<AgentSummary> agents = agentRepository.findByEnabled(true).stream()
+                .map(agent -> new AgentSummary(agent.getId(), agent.getUserId(), agent.getName(), agent.getHostname(),
+                        agent.getHeartbeatTimeoutSeconds()))
+                .toList();
+        Map<Long, AgentSummary> byId = new HashMap<>();
+        agents.forEach(agent -> byId.put(agent.id(), agent));
+        current = new Snapshot(agents, byId, System.nanoTime() + ttlSeconds * 1_000_000_000L);
+        snapshot = current;
+        return current;
+    }
+
+    public record AgentSummary(Long id, Long userId, String name, String hostname, Integer heartbeatTimeoutSeconds) {
+    }
+
+    private record Snapshot(List<AgentSummary> agents, Map<Long, AgentSummary> byId, long expiresAtNanos) {
+
+        private boolean isExpired() {
+            return System.nanoTime() - expiresAtNanos > 0;
+        }
+    }
+}
@@ -0,0 +1,308 @@
+package com.horizon.backend.service;
+
+import com.horizon.backend.dto.agent.AgentPresenceEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Tracks agent liveness on a hashed timer wheel with one-second ticks. A heartbeat relinks the
+ * agent into the slot of its new deadline in constant time, and each tick only walks the slot it
+ * passes, so the cost of expiry does not grow with the number of healthy agents. Deadlines longer
+ * than one revolution stay in their slot until the tick that actually reaches them.
+ * <p>
+ * Transitions are published on a single presence thread, so neither ingestion nor the wheel tick
+ * waits on alerting or SSE fan-out. Ingest callers report heartbeats once their transaction has
+ * committed.
+ * <p>
+ * Heartbeats relayed from the instance that ingested the agent keep its node alive here too, so
+ * a dead remote agent still drops out of the local index and leaderboard. Such a node is not owned:
+ * its expiry is applied locally without alerts or presence events, which only the owning instance
+ * raises. A relayed heartbeat also takes over a stale node left from when this instance owned it.
+ */
+@Slf4j
+@Component
+public class AgentPresenceTracker {
+
+    private static final int WHEEL_SIZE = 512;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    private static final long TICK_NANOS = 1_000_000_000L;
+
+    private final AgentMetadataCache agentMetadataCache;
+    private final RealtimeSnapshotIndex realtimeSnapshotIndex;
+    private final MetricsLeaderboard metricsLeaderboard;
+    private final AlertEngine alertEngine;
+    private final SseEmitterService sseEmitterService;
+    private final ThreadPoolTaskExecutor presenceExecutor;
+    private final LongSupplier nanoClock;
+
+    @Value("${metrics.presence.timeout-seconds:60}")
+    private int defaultTimeoutSeconds;
+
+    private final Map<Long, Node> nodes = new ConcurrentHashMap<>();
+    private final Node[] wheel = new Node[WHEEL_SIZE];
+    private final long startNanos;
+    private long currentTick;
+
+    @Autowired
+    public AgentPresenceTracker(AgentMetadataCache agentMetadataCache,
+                                RealtimeSnapshotIndex realtimeSnapshotIndex,
+                                MetricsLeaderboard metricsLeaderboard,
+                                AlertEngine alertEngine,
+                                SseEmitterService sseEmitterService,
+                                @Qualifier("presenceExecutor") ThreadPoolTaskExecutor presenceExecutor) {
+        this(agentMetadataCache, realtimeSnapshotIndex, metricsLeaderboard, alertEngine, sseEmitterService,
+                presenceExecutor, System::nanoTime);
+    }
+
+    AgentPresenceTracker(AgentMetadataCache agentMetadataCache,
+                         RealtimeSnapshotIndex realtimeSnapshotIndex,
+                         MetricsLeaderboard metricsLeaderboard,
+                         AlertEngine alertEngine,
+                         SseEmitterService sseEmitterService,
+                         ThreadPoolTaskExecutor presenceExecutor,
+                         LongSupplier nanoClock) {
+        this.agentMetadataCache = agentMetadataCache;
+        this.realtimeSnapshotIndex = realtimeSnapshotIndex;
+        this.metricsLeaderboard = metricsLeaderboard;
+        this.alertEngine = alertEngine;
+        this.sseEmitterService = sseEmitterService;
+        this.presenceExecutor = presenceExecutor;
+        this.nanoClock = nanoClock;
+        this.startNanos = nanoClock.getAsLong();
+    }
+
+    public void heartbeat(Long agentId) {
+        beat(agentId, LocalDateTime.now(), true);
+    }
+
+    public void relayedHeartbeat(Long agentId, LocalDateTime lastHeartbeat) {
+        beat(agentId, lastHeartbeat != null ? lastHeartbeat : LocalDateTime.now(), false);
+    }
+
+    private void beat(Long agentId, LocalDateTime lastHeartbeat, boolean owned) {
+        Node node = nodes.get(agentId);
+        if (node == null) {
+            Node created = new Node(agentId, timeoutSeconds(agentId));
+            node = nodes.putIfAbsent(agentId, created);
+            if (node == null) {
+                node = created;
+            }
+        }
+
+        boolean cameOnline;
+        synchronized (this) {
+            if (nodes.get(agentId) != node) {
+                return;
+            }
+            unlink(node);
+            link(node, Math.max(nowTick(), currentTick) + node.timeoutSeconds);
+            node.lastHeartbeat = lastHeartbeat;
+            node.owned = owned;
+            cameOnline = !node.online;
+            node.online = true;
+        }
+        if (cameOnline && owned) {
+            publish(node.agentId, true, lastHeartbeat, lastHeartbeat, true);
+        }
+    }
+
+    public void advance() {
+        List<Node> expired = new ArrayList<>();
+        synchronized (this) {
+            long target = nowTick();
+            if (target - currentTick > WHEEL_SIZE) {
+                currentTick = target - WHEEL_SIZE;
+            }
+            while (currentTick < target) {
+                currentTick++;
+                Node node = wheel[(int) (currentTick & WHEEL_MASK)];
+                while (node != null) {
+                    Node next = node.next;
+                    if (node.deadline <= currentTick) {
+                        unlink(node);
+                        node.online = false;
+                        expired.add(node);
+                    }
+                    node = next;
+                }
+            }
+        }
+        if (expired.isEmpty()) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        expired.forEach(node -> publish(node.agentId, false, node.lastHeartbeat, now, node.owned));
+        log.debug("Marked {} agents offline", expired.size());
+    }
+
+    public void restore(Long agentId, LocalDateTime lastHeartbeat) {
+        Node node = new Node(agentId, timeoutSeconds(agentId));
+        long elapsed = lastHeartbeat != null
+                ? Math.max(0, Duration.between(lastHeartbeat, LocalDateTime.now()).getSeconds())
+                : Long.MAX_VALUE;
+        synchronized (this) {
+            if (nodes.putIfAbsent(agentId, node) != null) {
+                return;
+            }
+            node.lastHeartbeat = lastHeartbeat;
+            if (elapsed < node.timeoutSeconds) {
+                node.online = true;
+                link(node, Math.max(nowTick(), currentTick) + node.timeoutSeconds - elapsed);
+            }
+        }
+    }
+
+    /**
+     * Seeds an agent persisted as recently active but with no live snapshot, giving it one timeout
+     * to heartbeat before it is reported offline, so agents that died while this instance was down
+     * still get an OFFLINE transition.
+     */
+    public void seed(Long agentId, LocalDateTime lastHeartbeat) {
+        Node node = new Node(agentId, timeoutSeconds(agentId));
+        synchronized (this) {
+            if (nodes.putIfAbsent(agentId, node) != null) {
+                return;
+            }
+            node.lastHeartbeat = lastHeartbeat;
+            node.online = true;
+            link(node, Math.max(nowTick(), currentTick) + node.timeoutSeconds);
+        }
+    }
+
+    public void setTimeout(Long agentId, Integer timeoutSeconds) {
+        int timeout = timeoutSeconds != null ? timeoutSeconds : defaultTimeoutSeconds;
+        synchronized (this) {
+            Node node = nodes.get(agentId);
+            if (node == null) {
+                return;
+            }
+            long lastBeat = node.deadline - node.timeoutSeconds;
+            node.timeoutSeconds = timeout;
+            if (node.slot >= 0) {
+                unlink(node);
+                link(node, Math.max(lastBeat + timeout, currentTick + 1));
+            }
+        }
+    }
+
+    public Boolean isOnline(Long agentId) {
+        Node node = nodes.get(agentId);
+        return node != null ? node.online : null;
+    }
+
+    public synchronized void remove(Long agentId) {
+        Node node = nodes.remove(agentId);
+        if (node != null) {
+            unlink(node);
+        }
+    }
+
+    private void publish(Long agentId, boolean online, LocalDateTime lastHeartbeat, LocalDateTime now,
+                         boolean owned) {
+        try {
+            presenceExecutor.execute(() -> {
+                if (owned) {
+                    dispatch(agentId, online, lastHeartbeat, now);
+                } else if (!online) {
+                    realtimeSnapshotIndex.markOffline(agentId);
+                    metricsLeaderboard.remove(agentId);
+                    log.debug("Relayed agent {} stopped reporting", agentId);
+                }
+            });
+        } catch (TaskRejectedException e) {
+            log.warn("Presence queue is full, dropping {} transition for agent: {}",
+                    online ? "online" : "offline", agentId);
+        }
+    }
+
+    private void dispatch(Long agentId, boolean online, LocalDateTime lastHeartbeat, LocalDateTime now) {
+        AgentMetadataCache.AgentSummary agent = agentMetadataCache.find(agentId);
+        AgentPresenceEvent event = AgentPresenceEvent.builder()
+                .agentId(agentId)
+                .userId(agent != null ? agent.userId() : null)
+                .agentName(agent != null ? agent.name() : null)
+                .hostname(agent != null ? agent.hostname() : null)
+                .online(online)
+                .lastHeartbeat(lastHeartbeat)
+                .timestamp(now)
+                .build();
+
+        if (!online) {
+            realtimeSnapshotIndex.markOffline(agentId);
+            metricsLeaderboard.remove(agentId);
+        }
+        alertEngine.onPresenceChange(event);
+        sseEmitterService.sendPresence(event);
+        log.info("Agent {} is now {}", agentId, online ? "online" : "offline");
+    }
+
+    private int timeoutSeconds(Long agentId) {
+        AgentMetadataCache.AgentSummary agent = agentMetadataCache.find(agentId);
+        return agent != null && agent.heartbeatTimeoutSeconds() != null
+                ? agent.heartbeatTimeoutSeconds()
+                : defaultTimeoutSeconds;
+    }
+
+    private long nowTick() {
+        return (nanoClock.getAsLong() - startNanos) / TICK_NANOS;
+    }
+
+    private void link(Node node, long deadline) {
+        int slot = (int) (deadline & WHEEL_MASK);
+        node.deadline = deadline;
+        node.slot = slot;
+        node.prev = null;
+        node.next = wheel[slot];
+        if (node.next != null) {
+            node.next.prev = node;
+        }
+        wheel[slot] = node;
+    }
+
+    private void unlink(Node node) {
+        if (node.slot < 0) {
+            return;
+        }
+        if (node.prev != null) {
+            node.prev.next = node.next;
+        } else {
+            wheel[node.slot] = node.next;
+        }
+        if (node.next != null) {
+            node.next.prev = node.prev;
+        }
+        node.prev = null;
+        node.next = null;
+        node.slot = -1;
+    }
+
+    private static final class Node {
+        private final Long agentId;
+        private int timeoutSeconds;
+        private volatile boolean online;
+        private volatile boolean owned = true;
+        private LocalDateTime lastHeartbeat;
+        private long deadline;
+        private int slot = -1;
+        private Node prev;
+        private Node next;
+
+        private Node(Long agentId, int timeoutSeconds) {
+            this.agentId = agentId;
+            this.timeoutSeconds = timeoutSeconds;
+        }
+    }
+}
@@ -12,5 +12,7 @@ public interface AgentService {
 
     List<AgentDto> getAgentsByUserId(Long userId);
 
+    AgentDto updateHeartbeatTimeout(Long id, Integer timeoutSeconds);
+
     void deleteAgent(Long id);
 }
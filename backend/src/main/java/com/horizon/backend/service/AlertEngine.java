@@ -0,0 +1,408 @@
+package com.horizon.backend.service;
+
+import com.horizon.backend.common.AfterCommit;
+import com.horizon.backend.dto.agent.AgentPresenceEvent;
+import com.horizon.backend.dto.alert.AlertEvent;
+import com.horizon.backend.dto.alert.AlertState;
+import com.horizon.backend.dto.metrics.MetricType;
+import com.horizon.backend.dto.metrics.RealtimeMetrics;
+import com.horizon.backend.entity.AlertOperator;
+import com.horizon.backend.entity.AlertRule;
+import com.horizon.backend.entity.AlertRuleType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Evaluates alert rules against every ingested sample and agent presence change on a single dedicated thread, so per-rule
+ * state needs no locking and ingestion never waits on rule evaluation or notification delivery.
+ */
+@Slf4j
+@Component
+public class AlertEngine {
+
+    private static final double DEFAULT_EWMA_ALPHA = 0.1;
+    private static final int EWMA_WARMUP_SAMPLES = 10;
+    private static final double MIN_EWMA_STDDEV = 1e-6;
+
+    private final ThreadPoolTaskExecutor evaluationExecutor;
+    private final ThreadPoolTaskExecutor notificationExecutor;
+    private final SseEmitterService sseEmitterService;
+    private final RestTemplate restTemplate;
+    private final WebhookUrlValidator webhookUrlValidator;
+
+    private final Map<String, AlertEvent> activeAlerts = new ConcurrentHashMap<>();
+    private volatile RuleSet ruleSet = new RuleSet(List.of());
+
+    public AlertEngine(@Qualifier("alertEvaluationExecutor") ThreadPoolTaskExecutor evaluationExecutor,
+                       @Qualifier("alertNotificationExecutor") ThreadPoolTaskExecutor notificationExecutor,
+                       SseEmitterService sseEmitterService,
+                       RestTemplate restTemplate,
+                       WebhookUrlValidator webhookUrlValidator) {
+        this.evaluationExecutor = evaluationExecutor;
+        this.notificationExecutor = notificationExecutor;
+        this.sseEmitterService = sseEmitterService;
+        this.restTemplate = restTemplate;
+        this.webhookUrlValidator = webhookUrlValidator;
+    }
+
+    public void reload(List<AlertRule> rules) {
+        List<CompiledRule> compiled = rules.stream()
+                .filter(AlertRule::isEnabled)
+                .map(CompiledRule::new)
+                .toList();
+        AfterCommit.run(() -> {
+            try {
+                evaluationExecutor.execute(() -> swapRules(compiled));
+            } catch (TaskRejectedException e) {
+                log.error("Alert evaluation queue is full, failed to load {} alert rules", compiled.size());
+            }
+        });
+    }
+
+    public void submit(RealtimeMetrics metrics, Long userId) {
+        if (!ruleSet.hasRules(metrics.getAgentId(), userId)) {
+            return;
+        }
+        try {
+            evaluationExecutor.execute(() -> evaluate(metrics, userId));
+        } catch (TaskRejectedException e) {
+            log.warn("Alert evaluation queue is full, dropping sample for agent: {}", metrics.getAgentId());
+        }
+    }
+
+    public void onPresenceChange(AgentPresenceEvent presence) {
+        if (!ruleSet.hasRules(presence.getAgentId(), presence.getUserId())) {
+            return;
+        }
+        try {
+            evaluationExecutor.execute(() -> evaluatePresence(presence));
+        } catch (TaskRejectedException e) {
+            log.warn("Alert evaluation queue is full, dropping presence change for agent: {}", presence.getAgentId());
+        }
+    }
+
+    /**
+     * Callers run this once the agent's deletion has committed; it is not deferred again here because
+     * synchronizations registered from an after-commit callback never run.
+     */
+    public void removeAgent(Long agentId) {
+        try {
+            evaluationExecutor.execute(() -> dropAgent(agentId));
+        } catch (TaskRejectedException e) {
+            log.error("Alert evaluation queue is full, failed to drop alert state for agent: {}", agentId);
+        }
+    }
+
+    public List<AlertEvent> getActiveAlerts(Long userId) {
+        return activeAlerts.values().stream()
+                .filter(alert -> alert.getUserId().equals(userId))
+                .sorted(Comparator.comparing(AlertEvent::getFiredAt).reversed())
+                .toList();
+    }
+
+    private void dropAgent(Long agentId) {
+        Map<Long, String> webhookUrls = new HashMap<>();
+        for (CompiledRule rule : ruleSet.rules) {
+            rule.states.remove(agentId);
+            webhookUrls.put(rule.id, rule.webhookUrl);
+        }
+        if (ruleSet.byAgent.containsKey(agentId)) {
+            ruleSet = new RuleSet(ruleSet.rules.stream()
+                    .filter(rule -> !agentId.equals(rule.agentId))
+                    .toList());
+        }
+        activeAlerts.values().removeIf(alert -> {
+            if (!alert.getAgentId().equals(agentId)) {
+                return false;
+            }
+            resolve(alert, webhookUrls.get(alert.getRuleId()), "agent removal");
+            return true;
+        });
+    }
+
+    private void swapRules(List<CompiledRule> compiled) {
+        Map<Long, CompiledRule> previous = new HashMap<>();
+        for (CompiledRule rule : ruleSet.rules) {
+            previous.put(rule.id, rule);
+        }
+        Set<Long> retained = new HashSet<>();
+        for (CompiledRule rule : compiled) {
+            CompiledRule old = previous.get(rule.id);
+            if (old != null && old.sameDefinition(rule)) {
+                rule.states.putAll(old.states);
+                retained.add(rule.id);
+            }
+        }
+        activeAlerts.values().removeIf(alert -> {
+            if (retained.contains(alert.getRuleId())) {
+                return false;
+            }
+            CompiledRule old = previous.get(alert.getRuleId());
+            resolve(alert, old != null ? old.webhookUrl : null, "rule change");
+            return true;
+        });
+        ruleSet = new RuleSet(compiled);
+        log.info("Loaded {} alert rules", compiled.size());
+    }
+
+    private void evaluate(RealtimeMetrics metrics, Long userId) {
+        RuleSet rules = ruleSet;
+        long timestamp = toEpochMillis(metrics.getTimestamp());
+        evaluate(rules.byAgent.getOrDefault(metrics.getAgentId(), List.of()), metrics, userId, timestamp);
+        evaluate(rules.byUser.getOrDefault(userId, List.of()), metrics, userId, timestamp);
+    }
+
+    private void evaluate(List<CompiledRule> rules, RealtimeMetrics metrics, Long userId, long timestamp) {
+        for (CompiledRule rule : rules) {
+            if (rule.metric == null) {
+                continue;
+            }
+            Double value = rule.metric.extract(metrics);
+            if (value == null || Double.isNaN(value)) {
+                continue;
+            }
+            RuleState state = rule.states.computeIfAbsent(metrics.getAgentId(), id -> new RuleState());
+            boolean breached = rule.observe(state, value, timestamp);
+
+            if (breached) {
+                if (state.pendingSince == Long.MIN_VALUE) {
+                    state.pendingSince = timestamp;
+                }
+                if (!state.firing && timestamp - state.pendingSince >= rule.forMillis) {
+                    state.firing = true;
+                    state.firedAt = metrics.getTimestamp() != null ? metrics.getTimestamp() : LocalDateTime.now();
+                    publish(rule, metrics.getAgentId(), metrics.getAgentName(), userId, state, AlertState.FIRING,
+                            metrics.getTimestamp());
+                }
+            } else {
+                state.pendingSince = Long.MIN_VALUE;
+                if (state.firing) {
+                    state.firing = false;
+                    publish(rule, metrics.getAgentId(), metrics.getAgentName(), userId, state, AlertState.RESOLVED,
+                            metrics.getTimestamp());
+                }
+            }
+        }
+    }
+
+    private void evaluatePresence(AgentPresenceEvent presence) {
+        RuleSet rules = ruleSet;
+        evaluatePresence(rules.byAgent.getOrDefault(presence.getAgentId(), List.of()), presence);
+        evaluatePresence(rules.byUser.getOrDefault(presence.getUserId(), List.of()), presence);
+    }
+
+    private void evaluatePresence(List<CompiledRule> rules, AgentPresenceEvent presence) {
+        for (CompiledRule rule : rules) {
+            if (rule.type != AlertRuleType.AGENT_OFFLINE) {
+                continue;
+            }
+            RuleState state = rule.states.computeIfAbsent(presence.getAgentId(), id -> new RuleState());
+            state.observed = presence.isOnline() ? 1 : 0;
+            if (!presence.isOnline() && !state.firing) {
+                state.firing = true;
+                state.firedAt = presence.getTimestamp();
+                publish(rule, presence.getAgentId(), presence.getAgentName(), presence.getUserId(), state,
+                        AlertState.FIRING, presence.getTimestamp());
+            } else if (presence.isOnline() && state.firing) {
+                state.firing = false;
+                publish(rule, presence.getAgentId(), presence.getAgentName(), presence.getUserId(), state,
+                        AlertState.RESOLVED, presence.getTimestamp());
+            }
+        }
+    }
+
+    private void publish(CompiledRule rule, Long agentId, String agentName, Long userId, RuleState state,
+                         AlertState alertState, LocalDateTime timestamp) {
+        AlertEvent event = AlertEvent.builder()
+                .ruleId(rule.id)
+                .ruleName(rule.name)
+                .type(rule.type)
+                .userId(userId)
+                .agentId(agentId)
+                .agentName(agentName)
+                .metric(rule.metricKey)
+                .state(alertState)
+                .value(state.observed)
+                .threshold(rule.threshold)
+                .firedAt(state.firedAt)
+                .timestamp(timestamp)
+                .build();
+
+        String key = rule.id + ":" + agentId;
+        if (alertState == AlertState.FIRING) {
+            activeAlerts.put(key, event);
+        } else {
+            activeAlerts.remove(key);
+        }
+        log.info("Alert {} {} for agent {} ({}={})", rule.name, alertState, agentId, rule.metricKey, state.observed);
+
+        try {
+            notificationExecutor.execute(() -> notify(rule.webhookUrl, event));
+        } catch (TaskRejectedException e) {
+            log.warn("Alert notification queue is full, dropping {} event for rule: {}", alertState, rule.id);
+        }
+    }
+
+    private void resolve(AlertEvent alert, String webhookUrl, String reason) {
+        AlertEvent event = alert.toBuilder()
+                .state(AlertState.RESOLVED)
+                .timestamp(LocalDateTime.now())
+                .build();
+        log.info("Alert {} {} for agent {} after {}", alert.getRuleName(), AlertState.RESOLVED,
+                alert.getAgentId(), reason);
+        try {
+            notificationExecutor.execute(() -> notify(webhookUrl, event));
+        } catch (TaskRejectedException e) {
+            log.warn("Alert notification queue is full, dropping {} event for rule: {}", AlertState.RESOLVED,
+                    alert.getRuleId());
+        }
+    }
+
+    private void notify(String webhookUrl, AlertEvent event) {
+        sseEmitterService.sendAlert(event);
+        if (webhookUrl == null) {
+            return;
+        }
+        if (!webhookUrlValidator.isAllowed(webhookUrl)) {
+            log.warn("Skipping alert webhook for rule {}: URL is not allowed", event.getRuleId());
+            return;
+        }
+        try {
+            restTemplate.postForEntity(webhookUrl, event, Void.class);
+        } catch (Exception e) {
+            log.warn("Failed to deliver alert webhook for rule {}: {}", event.getRuleId(), e.getMessage());
+        }
+    }
+
+    private static long toEpochMillis(LocalDateTime timestamp) {
+        LocalDateTime value = timestamp != null ? timestamp : LocalDateTime.now();
+        return value.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    private static final class RuleSet {
+        private final List<CompiledRule> rules;
+        private final Map<Long, List<CompiledRule>> byAgent = new HashMap<>();
+        private final Map<Long, List<CompiledRule>> byUser = new HashMap<>();
+
+        private RuleSet(List<CompiledRule> rules) {
+            this.rules = rules;
+            for (CompiledRule rule : rules) {
+                if (rule.agentId != null) {
+                    byAgent.computeIfAbsent(rule.agentId, id -> new ArrayList<>()).add(rule);
+                } else {
+                    byUser.computeIfAbsent(rule.userId, id -> new ArrayList<>()).add(rule);
+                }
+            }
+            byAgent.replaceAll((id, list) -> Collections.unmodifiableList(list));
+            byUser.replaceAll((id, list) -> Collections.unmodifiableList(list));
+        }
+
+        private boolean hasRules(Long agentId, Long userId) {
+            return byAgent.containsKey(agentId) || byUser.containsKey(userId);
+        }
+    }
+
+    private static final class CompiledRule {
+        private final Long id;
+        private final Long userId;
+        private final Long agentId;
+        private final String name;
+        private final MetricType metric;
+        private final String metricKey;
+        private final AlertRuleType type;
+        private final AlertOperator operator;
+        private final double threshold;
+        private final long forMillis;
+        private final double alpha;
+        private final String webhookUrl;
+        private final LocalDateTime updatedAt;
+        private final Map<Long, RuleState> states = new HashMap<>();
+
+        private CompiledRule(AlertRule rule) {
+            this.id = rule.getId();
+            this.userId = rule.getUserId();
+            this.agentId = rule.getAgentId();
+            this.name = rule.getName();
+            this.metric = rule.getType() != AlertRuleType.AGENT_OFFLINE ? MetricType.from(rule.getMetric()) : null;
+            this.metricKey = metric != null ? metric.getKey() : rule.getMetric();
+            this.type = rule.getType();
+            this.operator = rule.getOperator();
+            this.threshold = rule.getThreshold();
+            this.forMillis = rule.getForSeconds() * 1000L;
+            this.alpha = rule.getEwmaAlpha() != null ? rule.getEwmaAlpha() : DEFAULT_EWMA_ALPHA;
+            this.webhookUrl = rule.getWebhookUrl();
+            this.updatedAt = rule.getUpdatedAt();
+        }
+
+        private boolean sameDefinition(CompiledRule other) {
+            return updatedAt != null && updatedAt.equals(other.updatedAt);
+        }
+
+        private boolean observe(RuleState state, double value, long timestamp) {
+            return switch (type) {
+                case THRESHOLD -> {
+                    state.observed = value;
+                    yield operator.test(value, threshold);
+                }
+                case RATE_OF_CHANGE -> {
+                    boolean breached = false;
+                    if (state.samples > 0 && timestamp > state.lastTimestamp) {
+                        state.observed = (value - state.lastValue) * 1000.0 / (timestamp - state.lastTimestamp);
+                        breached = operator.test(state.observed, threshold);
+                    }
+                    state.lastValue = value;
+                    state.lastTimestamp = timestamp;
+                    state.samples++;
+                    yield breached;
+                }
+                case EWMA_DEVIATION -> {
+                    boolean breached = false;
+                    if (state.samples == 0) {
+                        state.mean = value;
+                    } else {
+                        double diff = value - state.mean;
+                        if (state.samples >= EWMA_WARMUP_SAMPLES) {
+                            double score = diff / Math.max(Math.sqrt(state.variance), MIN_EWMA_STDDEV);
+                            state.observed = score;
+                            breached = operator == AlertOperator.ABOVE ? score > threshold : score < -threshold;
+                        }
+                        double increment = alpha * diff;
+                        state.mean += increment;
+                        state.variance = (1 - alpha) * (state.variance + diff * increment);
+                    }
+                    state.samples++;
+                    yield breached;
+                }
+                case AGENT_OFFLINE -> false;
+            };
+        }
+    }
+
+    private static final class RuleState {
+        private long pendingSince = Long.MIN_VALUE;
+        private boolean firing;
+        private LocalDateTime firedAt;
+        private double observed;
+        private long samples;
+        private double lastValue;
+        private long lastTimestamp;
+        private double mean;
+        private double variance;
+    }
+}
@@ -0,0 +1,22 @@
+package com.horizon.backend.service;
+
+import com.horizon.backend.dto.alert.AlertEvent;
+import com.horizon.backend.dto.alert.AlertRuleDto;
+import com.horizon.backend.dto.alert.AlertRuleRequest;
+
+import java.util.List;
+
+public interface AlertRuleService {
+
+    AlertRuleDto createRule(Long userId, AlertRuleRequest request);
+
+    List<AlertRuleDto> getRules(Long userId);
+
+    AlertRuleDto updateRule(Long userId, Long ruleId, AlertRuleRequest request);
+
+    void deleteRule(Long userId, Long ruleId);
+
+    List<AlertEvent> getActiveAlerts(Long userId);
+
+    void reloadRules();
+}
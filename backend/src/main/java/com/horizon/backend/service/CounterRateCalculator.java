@@ -0,0 +1,61 @@
+package com.horizon.backend.service;
+
+import org.springframework.stereotype.Component;
+
+@Component
+public class CounterRateCalculator {
+
+    public static final long MISSING = Long.MIN_VALUE;
+
+    /**
+     * Derives per-second rates of a monotonic counter over a fixed step grid in a single pass over
+     * primitive arrays. Each adjacent pair of samples contributes its increase and elapsed time to
+     * the bucket of the later sample; a bucket's rate is total increase over total covered time.
+     * A counter that goes backwards, or an uptime that drops, is treated as a reset: the increase
+     * is the new counter value, accumulated since boot, and the elapsed time is capped at uptime.
+     *
+     * @param times epoch seconds, ascending
+     * @param counters counter values, {@link #MISSING} when unknown
+     * @param uptimes agent uptime in seconds, {@link #MISSING} when unknown
+     * @return rates per bucket, NaN where no interval ended in the bucket
+     */
+    public double[] rates(long[] times, long[] counters, long[] uptimes, int size,
+                         long firstBucket, int buckets, long step) {
+        double[] increase = new double[buckets];
+        double[] covered = new double[buckets];
+
+        for (int i = 1; i < size; i++) {
+            long current = counters[i];
+            long previous = counters[i - 1];
+            long elapsed = times[i] - times[i - 1];
+            if (current == MISSING || previous == MISSING || elapsed <= 0) {
+                continue;
+            }
+            int bucket = (int) (Math.floorDiv(times[i], step) - firstBucket);
+            if (bucket < 0 || bucket >= buckets) {
+                continue;
+            }
+
+            long uptime = uptimes[i];
+            long previousUptime = uptimes[i - 1];
+            boolean restarted = uptime != MISSING
+                    && (previousUptime != MISSING && uptime < previousUptime || uptime < elapsed);
+            long delta = current - previous;
+            if (delta < 0 || restarted) {
+                delta = current;
+                if (uptime != MISSING) {
+                    elapsed = Math.max(1, Math.min(elapsed, uptime));
+                }
+            }
+
+            increase[bucket] += delta;
+            covered[bucket] += elapsed;
+        }
+
+        double[] rates = new double[buckets];
+        for (int b = 0; b < buckets; b++) {
+            rates[b] = covered[b] > 0 ? increase[b] / covered[b] : Double.NaN;
+        }
+        return rates;
+    }
+}
@@ -0,0 +1,76 @@
+package com.horizon.backend.service;
+
+import com.horizon.backend.dto.metrics.MetricsDto;
+import org.springframework.stereotype.Component;
+
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ToDoubleFunction;
+
+@Component
+public class MetricsDownsampler {
+
+    /**
+     * Largest-Triangle-Three-Buckets: keeps the first and last point and, for every bucket in
+     * between, the point forming the largest triangle with the previously selected point and
+     * the average of the next bucket. Preserves peaks and troughs of the reference series; gaps
+     * (NaN) in the reference series carry the previous value forward.
+     */
+    public List<MetricsDto> lttb(List<MetricsDto> points, int threshold, ToDoubleFunction<MetricsDto> value) {
+        int size = points.size();
+        if (threshold >= size || threshold < 3) {
+            return points;
+        }
+
+        double[] x = new double[size];
+        double[] y = new double[size];
+        for (int i = 0; i < size; i++) {
+            MetricsDto point = points.get(i);
+            x[i] = point.getCreatedAt().toEpochSecond(ZoneOffset.UTC);
+            double v = value.applyAsDouble(point);
+            y[i] = Double.isNaN(v) ? (i > 0 ? y[i - 1] : 0) : v;
+        }
+
+        List<MetricsDto> sampled = new ArrayList<>(threshold);
+        sampled.add(points.get(0));
+
+        double bucketSize = (double) (size - 2) / (threshold - 2);
+        int selected = 0;
+
+        for (int bucket = 0; bucket < threshold - 2; bucket++) {
+            int nextStart = (int) Math.floor((bucket + 1) * bucketSize) + 1;
+            int nextEnd = Math.min((int) Math.floor((bucket + 2) * bucketSize) + 1, size);
+
+            double avgX = 0;
+            double avgY = 0;
+            for (int i = nextStart; i < nextEnd; i++) {
+                avgX += x[i];
+                avgY += y[i];
+            }
+            int nextCount = nextEnd - nextStart;
+            avgX /= nextCount;
+            avgY /= nextCount;
+
+            int rangeStart = (int) Math.floor(bucket * bucketSize) + 1;
+            int rangeEnd = nextStart;
+
+            double maxArea = -1;
+            int maxIndex = rangeStart;
+            for (int i = rangeStart; i < rangeEnd; i++) {
+                double area = Math.abs((x[selected] - avgX) * (y[i] - y[selected])
+                        - (x[selected] - x[i]) * (avgY - y[selected]));
+                if (area > maxArea) {
+                    maxArea = area;
+                    maxIndex = i;
+                }
+            }
+
+            sampled.add(points.get(maxIndex));
+            selected = maxIndex;
+        }
+
+        sampled.add(points.get(size - 1));
+        return sampled;
+    }
+}
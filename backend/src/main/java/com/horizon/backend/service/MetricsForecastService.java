@@ -0,0 +1,14 @@
+package com.horizon.backend.service;
+
+import com.horizon.backend.dto.metrics.AgentForecast;
+
+import java.util.List;
+
+public interface MetricsForecastService {
+
+    void refreshForecasts();
+
+    AgentForecast getForecast(Long agentId);
+
+    List<AgentForecast> getForecasts();
+}
@@ -0,0 +1,191 @@
+package com.horizon.backend.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.horizon.backend.dto.metrics.EncodedRealtimeMetrics;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Encodes per-subscriber variants of a snapshot: a field projection, or the fields that changed
+ * between two snapshots of the same agent. Subscribers with the same projection usually need the
+ * same bytes for the same push, so the latest result per agent and projection is memoised and
+ * shared. Snapshot trees are assembled from the state and identity trees kept at encode time, held
+ * weakly, and disappear once no subscriber references that snapshot. Only called from the SSE
+ * dispatch thread.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MetricsFrameEncoder {
+
+    private static final String AGENT_ID_FIELD = "agentId";
+    private static final String ONLINE_FIELD = "online";
+    private static final String OUTLIERS_FIELD = "outliers";
+    private static final int MAX_MEMOISED = 10_000;
+
+    private final ObjectMapper objectMapper;
+
+    private final Map<EncodedRealtimeMetrics, ObjectNode> trees = new WeakHashMap<>();
+    private final Map<MemoKey, Memo> deltas = lru();
+    private final Map<MemoKey, Memo> projections = lru();
+
+    public byte[] project(EncodedRealtimeMetrics snapshot, Set<String> fields) {
+        if (fields == null) {
+            return snapshot.toBytes();
+        }
+        MemoKey key = new MemoKey(snapshot.getAgentId(), fields);
+        Memo cached = projections.get(key);
+        if (cached != null && cached.to == snapshot) {
+            return cached.bytes;
+        }
+
+        ObjectNode tree = tree(snapshot);
+        if (tree == null) {
+            return snapshot.toBytes();
+        }
+        ObjectNode projected = objectMapper.createObjectNode();
+        projected.set(AGENT_ID_FIELD, tree.get(AGENT_ID_FIELD));
+        for (String field : fields) {
+            JsonNode value = tree.get(field);
+            if (value != null) {
+                projected.set(field, value);
+            }
+        }
+        byte[] bytes = write(projected, snapshot);
+        if (bytes == null) {
+            return snapshot.toBytes();
+        }
+        projections.put(key, new Memo(null, snapshot, bytes));
+        return bytes;
+    }
+
+    public byte[] delta(EncodedRealtimeMetrics from, EncodedRealtimeMetrics to, Set<String> fields) {
+        MemoKey key = new MemoKey(to.getAgentId(), fields);
+        Memo cached = deltas.get(key);
+        if (cached != null && cached.from == from && cached.to == to) {
+            return cached.bytes;
+        }
+
+        ObjectNode previous = tree(from);
+        ObjectNode current = tree(to);
+        if (previous == null || current == null) {
+            return null;
+        }
+        ObjectNode changes = objectMapper.createObjectNode();
+        changes.set(AGENT_ID_FIELD, current.get(AGENT_ID_FIELD));
+        Iterator<Map.Entry<String, JsonNode>> entries = current.fields();
+        while (entries.hasNext()) {
+            Map.Entry<String, JsonNode> field = entries.next();
+            if (included(field.getKey(), fields) && !Objects.equals(previous.get(field.getKey()), field.getValue())) {
+                changes.set(field.getKey(), field.getValue());
+            }
+        }
+        Iterator<String> names = previous.fieldNames();
+        while (names.hasNext()) {
+            String name = names.next();
+            if (included(name, fields) && !current.has(name)) {
+                changes.putNull(name);
+            }
+        }
+
+        byte[] bytes = write(changes, to);
+        if (bytes != null) {
+            deltas.put(key, new Memo(from, to, bytes));
+        }
+        return bytes;
+    }
+
+    public static byte[] toJsonArray(List<byte[]> items) {
+        int size = 2;
+        for (byte[] item : items) {
+            size += item.length + 1;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(size);
+        out.write('[');
+        for (int i = 0; i < items.size(); i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            out.writeBytes(items.get(i));
+        }
+        out.write(']');
+        return out.toByteArray();
+    }
+
+    private static boolean included(String field, Set<String> fields) {
+        return fields == null || fields.contains(field);
+    }
+
+    private byte[] write(ObjectNode node, EncodedRealtimeMetrics snapshot) {
+        try {
+            return objectMapper.writeValueAsBytes(node);
+        } catch (IOException e) {
+            log.error("Failed to encode metrics frame for agent: {}", snapshot.getAgentId(), e);
+            return null;
+        }
+    }
+
+    private ObjectNode tree(EncodedRealtimeMetrics snapshot) {
+        ObjectNode tree = trees.get(snapshot);
+        if (tree == null) {
+            tree = snapshot.getStateTree() != null ? assemble(snapshot) : parse(snapshot);
+            if (tree == null) {
+                return null;
+            }
+            trees.put(snapshot, tree);
+        }
+        return tree;
+    }
+
+    private ObjectNode assemble(EncodedRealtimeMetrics snapshot) {
+        ObjectNode tree = objectMapper.createObjectNode();
+        tree.setAll(snapshot.getStateTree());
+        if (snapshot.getIdentityTree() != null) {
+            tree.setAll(snapshot.getIdentityTree());
+        }
+        tree.put(ONLINE_FIELD, snapshot.isOnline());
+        if (snapshot.getOutliers() != null) {
+            ArrayNode outliers = tree.putArray(OUTLIERS_FIELD);
+            snapshot.getOutliers().forEach(outliers::add);
+        }
+        return tree;
+    }
+
+    private ObjectNode parse(EncodedRealtimeMetrics snapshot) {
+        try {
+            return (ObjectNode) objectMapper.readTree(snapshot.toBytes());
+        } catch (IOException e) {
+            log.error("Failed to parse encoded snapshot for agent: {}", snapshot.getAgentId(), e);
+            return null;
+        }
+    }
+
+    private static Map<MemoKey, Memo> lru() {
+        return new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<MemoKey, Memo> eldest) {
+                return size() > MAX_MEMOISED;
+            }
+        };
+    }
+
+    private record MemoKey(Long agentId, Set<String> fields) {
+    }
+
+    private record Memo(EncodedRealtimeMetrics from, EncodedRealtimeMetrics to, byte[] bytes) {
+    }
+}
@@ -0,0 +1,128 @@
+package com.horizon.backend.service;
+
+import com.horizon.backend.dto.metrics.LeaderboardEntry;
+import com.horizon.backend.dto.metrics.MetricType;
+import com.horizon.backend.dto.metrics.RealtimeMetrics;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Component
+public class MetricsLeaderboard {
+
+    public static final int TOP_AGENTS_LIMIT = 10;
+
+    private static final Comparator<LeaderboardEntry> RANKING = Comparator
+            .comparingDouble(LeaderboardEntry::getValue).reversed()
+            .thenComparing(LeaderboardEntry::getAgentId);
+
+    private final Map<MetricType, Board> boards = new EnumMap<>(MetricType.class);
+    private final AtomicLong version = new AtomicLong();
+
+    public MetricsLeaderboard() {
+        for (MetricType type : MetricType.values()) {
+            boards.put(type, new Board());
+        }
+    }
+
+    public void update(RealtimeMetrics metrics) {
+        boolean changed = false;
+        for (Map.Entry<MetricType, Board> board : boards.entrySet()) {
+            Double value = board.getKey().extract(metrics);
+            if (value == null) {
+                changed |= board.getValue().remove(metrics.getAgentId());
+            } else {
+                changed |= board.getValue().put(LeaderboardEntry.builder()
+                        .agentId(metrics.getAgentId())
+                        .agentName(metrics.getAgentName())
+                        .hostname(metrics.getHostname())
+                        .value(value)
+                        .build());
+            }
+        }
+        if (changed) {
+            version.incrementAndGet();
+        }
+    }
+
+    public void remove(Long agentId) {
+        boolean changed = false;
+        for (Board board : boards.values()) {
+            changed |= board.remove(agentId);
+        }
+        if (changed) {
+            version.incrementAndGet();
+        }
+    }
+
+    public List<LeaderboardEntry> top(MetricType type, int limit) {
+        return boards.get(type).top(limit);
+    }
+
+    public Map<String, List<LeaderboardEntry>> topAll(int limit) {
+        Map<String, List<LeaderboardEntry>> result = new HashMap<>();
+        for (Map.Entry<MetricType, Board> board : boards.entrySet()) {
+            result.put(board.getKey().getKey(), board.getValue().top(limit));
+        }
+        return result;
+    }
+
+    /**
+     * Changes only when the membership or order of some board's top {@value #TOP_AGENTS_LIMIT}
+     * changes, not on every value update.
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    private static final class Board {
+        private final TreeSet<LeaderboardEntry> ranking = new TreeSet<>(RANKING);
+        private final Map<Long, LeaderboardEntry> current = new HashMap<>();
+
+        private synchronized boolean put(LeaderboardEntry entry) {
+            List<Long> before = topIds();
+            LeaderboardEntry previous = current.put(entry.getAgentId(), entry);
+            if (previous != null) {
+                ranking.remove(previous);
+            }
+            ranking.add(entry);
+            return !before.equals(topIds());
+        }
+
+        private synchronized boolean remove(Long agentId) {
+            List<Long> before = topIds();
+            LeaderboardEntry previous = current.remove(agentId);
+            if (previous == null) {
+                return false;
+            }
+            ranking.remove(previous);
+            return !before.equals(topIds());
+        }
+
+        private List<Long> topIds() {
+            List<Long> ids = new ArrayList<>(TOP_AGENTS_LIMIT);
+            Iterator<LeaderboardEntry> iterator = ranking.iterator();
+            while (iterator.hasNext() && ids.size() < TOP_AGENTS_LIMIT) {
+                ids.add(iterator.next().getAgentId());
+            }
+            return ids;
+        }
+
+        private synchronized List<LeaderboardEntry> top(int limit) {
+            List<LeaderboardEntry> top = new ArrayList<>(Math.min(limit, ranking.size()));
+            Iterator<LeaderboardEntry> iterator = ranking.iterator();
+            while (iterator.hasNext() && top.size() < limit) {
+                top.add(iterator.next());
+            }
+            return top;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.horizon.backend.service;
+
+import com.horizon.backend.dto.metrics.PercentileResponse;
+import com.horizon.backend.dto.metrics.RealtimeMetrics;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface MetricsRollupService {
+
+    void record(RealtimeMetrics metrics);
+
+    void flush();
+
+    PercentileResponse getPercentiles(Long agentId, LocalDateTime startTime, LocalDateTime endTime, List<Double> quantiles);
+
+    void deleteOldRollups(int retentionDays);
+
+    void deleteRollupsByAgentId(Long agentId);
+}
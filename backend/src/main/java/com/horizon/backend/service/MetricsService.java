@@ -1,24 +1,68 @@
 package com.horizon.backend.service;
 
+import com.horizon.backend.common.CursorPage;
+import com.horizon.backend.dto.metrics.DownsampleMode;
+import com.horizon.backend.dto.metrics.ExportFormat;
+import com.horizon.backend.dto.metrics.FleetGroupBy;
+import com.horizon.backend.dto.metrics.FleetGroupStats;
+import com.horizon.backend.dto.metrics.LeaderboardEntry;
+import com.horizon.backend.dto.metrics.MetricType;
 import com.horizon.backend.dto.metrics.MetricsDto;
+import com.horizon.backend.dto.metrics.MetricsField;
+import com.horizon.backend.dto.metrics.MetricsOutlier;
 import com.horizon.backend.dto.metrics.MetricsRequest;
-import com.horizon.backend.dto.metrics.RealtimeMetrics;
+import com.horizon.backend.dto.metrics.MetricsSeriesResponse;
+import com.horizon.backend.dto.metrics.EncodedRealtimeMetrics;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 public interface MetricsService {
 
     MetricsDto saveMetrics(Long agentId, MetricsRequest request);
 
-    RealtimeMetrics getRealtimeMetrics(Long agentId);
+    EncodedRealtimeMetrics getRealtimeMetrics(Long agentId);
 
-    List<RealtimeMetrics> getAllRealtimeMetrics();
+    void warmUpRealtimeMetrics();
+
+    List<EncodedRealtimeMetrics> getAllRealtimeMetrics();
+
+    List<EncodedRealtimeMetrics> getAllRealtimeMetrics(boolean includeMetadata);
+
+    List<FleetGroupStats> getFleetAggregates(FleetGroupBy groupBy, Map<MetricType, Double> thresholds);
+
+    List<LeaderboardEntry> getTopAgents(MetricType type, int limit);
+
+    Map<String, List<LeaderboardEntry>> getTopAgents(int limit);
+
+    List<MetricsOutlier> getOutliers(FleetGroupBy groupBy, Double sigma);
+
+    void refreshOutliers();
 
     List<MetricsDto> getMetricsHistory(Long agentId, int limit);
 
+    CursorPage<MetricsDto> getMetricsHistoryPage(Long agentId, String cursor, int limit);
+
     List<MetricsDto> getMetricsHistory(Long agentId, LocalDateTime startTime, LocalDateTime endTime);
 
+    List<MetricsDto> getMetricsHistory(Long agentId, LocalDateTime startTime, LocalDateTime endTime,
+                                       Long stepSeconds, Integer maxPoints, DownsampleMode mode,
+                                       MetricsField reference);
+
+    MetricsSeriesResponse getMetricsSeries(List<Long> agentIds, LocalDateTime startTime, LocalDateTime endTime,
+                                           Long stepSeconds, Integer maxPoints, List<MetricsField> fields);
+
+    MetricsSeriesResponse getCounterRates(Long agentId, LocalDateTime startTime, LocalDateTime endTime,
+                                          Long stepSeconds, Integer maxPoints);
+
+    String getHistoryVersion(Long agentId, LocalDateTime startTime, LocalDateTime endTime);
+
+    void exportMetricsHistory(Long agentId, LocalDateTime startTime, LocalDateTime endTime,
+                              ExportFormat format, OutputStream outputStream) throws IOException;
+
     void deleteOldMetrics(int retentionDays);
 
     void deleteMetricsByAgentId(Long agentId);
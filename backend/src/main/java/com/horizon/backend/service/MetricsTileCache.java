@@ -0,0 +1,209 @@
+package com.horizon.backend.service;
+
+import com.horizon.backend.dto.metrics.MetricsDto;
+import lombok.EqualsAndHashCode;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.Predicate;
+
+/**
+ * Closed history tiles keyed by agent, step and tile index. Entries are spread over independently
+ * locked LRU segments, each holding an equal share of the point budget, so concurrent readers of
+ * different agents don't contend on a single lock. Tiles carry no agent name; callers attach it.
+ */
+@Slf4j
+@Component
+public class MetricsTileCache {
+
+    public static final int TILE_BUCKETS = 256;
+    private static final long CLOSE_GRACE_SECONDS = 10;
+    private static final int SEGMENTS = 16;
+
+    private final Segment[] segments;
+
+    public MetricsTileCache(@Value("${metrics.tile-cache.max-points:200000}") long maxPoints) {
+        segments = new Segment[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(Math.max(1, maxPoints / SEGMENTS));
+        }
+    }
+
+    public static long tileIndex(long bucket) {
+        return Math.floorDiv(bucket, TILE_BUCKETS);
+    }
+
+    public static LocalDateTime tileStart(long tile, long stepSeconds) {
+        return LocalDateTime.ofEpochSecond(tile * TILE_BUCKETS * stepSeconds, 0, ZoneOffset.UTC);
+    }
+
+    public static LocalDateTime tileEnd(long tile, long stepSeconds) {
+        return tileStart(tile + 1, stepSeconds);
+    }
+
+    public boolean isClosed(long tile, long stepSeconds) {
+        return !tileEnd(tile, stepSeconds).isAfter(LocalDateTime.now().minusSeconds(CLOSE_GRACE_SECONDS));
+    }
+
+    /**
+     * Buckets of {@code stepSeconds} that overlap [startTime, endTime], oldest first. Edge buckets are
+     * returned whole, as aggregated over their full step. Closed tiles are served from the cache; each
+     * run of missing or still-open tiles is loaded with a single {@code loader} call covering the run,
+     * and the closed tiles of that run are cached.
+     */
+    public List<MetricsDto> read(Long agentId, long stepSeconds, LocalDateTime startTime, LocalDateTime endTime,
+                                 BiFunction<LocalDateTime, LocalDateTime, List<MetricsDto>> loader) {
+        long firstTile = tileIndex(Math.floorDiv(startTime.toEpochSecond(ZoneOffset.UTC), stepSeconds));
+        long lastTile = tileIndex(Math.floorDiv(endTime.toEpochSecond(ZoneOffset.UTC), stepSeconds));
+        int tileCount = (int) (lastTile - firstTile + 1);
+
+        List<List<MetricsDto>> tiles = new ArrayList<>(tileCount);
+        for (long tile = firstTile; tile <= lastTile; tile++) {
+            tiles.add(isClosed(tile, stepSeconds) ? get(agentId, stepSeconds, tile) : null);
+        }
+
+        int index = 0;
+        while (index < tileCount) {
+            if (tiles.get(index) != null) {
+                index++;
+                continue;
+            }
+            int runStart = index;
+            while (index < tileCount && tiles.get(index) == null) {
+                index++;
+            }
+
+            long fromTile = firstTile + runStart;
+            List<List<MetricsDto>> fetched = load(stepSeconds, fromTile, firstTile + index - 1, loader);
+            for (int i = 0; i < fetched.size(); i++) {
+                long tile = fromTile + i;
+                tiles.set(runStart + i, fetched.get(i));
+                if (isClosed(tile, stepSeconds)) {
+                    put(agentId, stepSeconds, tile, fetched.get(i));
+                }
+            }
+        }
+
+        return tiles.stream()
+                .flatMap(List::stream)
+                .filter(point -> point.getCreatedAt().plusSeconds(stepSeconds).isAfter(startTime)
+                        && !point.getCreatedAt().isAfter(endTime))
+                .toList();
+    }
+
+    public List<MetricsDto> get(Long agentId, long stepSeconds, long tile) {
+        TileKey key = new TileKey(agentId, stepSeconds, tile);
+        return segment(key).get(key);
+    }
+
+    public void put(Long agentId, long stepSeconds, long tile, List<MetricsDto> points) {
+        TileKey key = new TileKey(agentId, stepSeconds, tile);
+        segment(key).put(key, List.copyOf(points));
+    }
+
+    public void evictAgent(Long agentId) {
+        int evicted = evictIf(key -> key.agentId.equals(agentId));
+        log.debug("Evicted {} metrics tiles for agent: {}", evicted, agentId);
+    }
+
+    public void evictBefore(LocalDateTime cutoff) {
+        long cutoffEpoch = cutoff.toEpochSecond(ZoneOffset.UTC);
+        int evicted = evictIf(key -> key.tile * TILE_BUCKETS * key.stepSeconds < cutoffEpoch);
+        log.debug("Evicted {} metrics tiles starting before {}", evicted, cutoff);
+    }
+
+    private List<List<MetricsDto>> load(long stepSeconds, long fromTile, long toTile,
+                                        BiFunction<LocalDateTime, LocalDateTime, List<MetricsDto>> loader) {
+        List<List<MetricsDto>> tiles = new ArrayList<>();
+        for (long tile = fromTile; tile <= toTile; tile++) {
+            tiles.add(new ArrayList<>());
+        }
+
+        LocalDateTime from = tileStart(fromTile, stepSeconds);
+        LocalDateTime to = tileEnd(toTile, stepSeconds).minusNanos(1000);
+        for (MetricsDto bucket : loader.apply(from, to)) {
+            long tile = tileIndex(Math.floorDiv(bucket.getCreatedAt().toEpochSecond(ZoneOffset.UTC), stepSeconds));
+            if (tile >= fromTile && tile <= toTile) {
+                tiles.get((int) (tile - fromTile)).add(bucket);
+            }
+        }
+        return tiles;
+    }
+
+    private int evictIf(Predicate<TileKey> predicate) {
+        int evicted = 0;
+        for (Segment segment : segments) {
+            evicted += segment.evictIf(predicate);
+        }
+        return evicted;
+    }
+
+    private Segment segment(TileKey key) {
+        int hash = key.hashCode();
+        return segments[(hash ^ (hash >>> 16)) & (SEGMENTS - 1)];
+    }
+
+    private static final class Segment {
+
+        private final LinkedHashMap<TileKey, List<MetricsDto>> tiles = new LinkedHashMap<>(64, 0.75f, true);
+        private final long maxPoints;
+        private long cachedPoints;
+
+        private Segment(long maxPoints) {
+            this.maxPoints = maxPoints;
+        }
+
+        synchronized List<MetricsDto> get(TileKey key) {
+            return tiles.get(key);
+        }
+
+        synchronized void put(TileKey key, List<MetricsDto> points) {
+            if (points.size() > maxPoints) {
+                return;
+            }
+            List<MetricsDto> previous = tiles.put(key, points);
+            if (previous != null) {
+                cachedPoints -= previous.size();
+            }
+            cachedPoints += points.size();
+
+            Iterator<Map.Entry<TileKey, List<MetricsDto>>> eldest = tiles.entrySet().iterator();
+            while (cachedPoints > maxPoints && eldest.hasNext()) {
+                cachedPoints -= eldest.next().getValue().size();
+                eldest.remove();
+            }
+        }
+
+        synchronized int evictIf(Predicate<TileKey> predicate) {
+            int evicted = 0;
+            Iterator<Map.Entry<TileKey, List<MetricsDto>>> iterator = tiles.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<TileKey, List<MetricsDto>> entry = iterator.next();
+                if (predicate.test(entry.getKey())) {
+                    cachedPoints -= entry.getValue().size();
+                    iterator.remove();
+                    evicted++;
+                }
+            }
+            return evicted;
+        }
+    }
+
+    @EqualsAndHashCode
+    @RequiredArgsConstructor
+    private static final class TileKey {
+        private final Long agentId;
+        private final long stepSeconds;
+        private final long tile;
+    }
+}
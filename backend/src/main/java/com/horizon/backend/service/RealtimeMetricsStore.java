@@ -0,0 +1,447 @@
+package com.horizon.backend.service;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonIncludeProperties;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.horizon.backend.dto.metrics.EncodedRealtimeMetrics;
+import com.horizon.backend.dto.metrics.RealtimeMetrics;
+import com.horizon.backend.dto.metrics.RealtimeMetricsMeta;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Realtime snapshots live in an in-process map that serves all reads for agents ingested by this
+ * instance. Redis is an asynchronous replica: writes are coalesced per agent and flushed off the
+ * ingest thread, and it is only read for agents this instance has not seen (other instances,
+ * warm restart). Each agent is a Redis hash with a "meta" field (names, OS, interface addresses)
+ * rewritten only on change and a "state" field with the per-sample values.
+ * <p>
+ * Snapshots are encoded once on save and spliced with the agent's cached identity fragment for REST
+ * responses and SSE frames. Interface addresses stay in the meta field only; the replica's state
+ * JSON is written without them on the replication thread, and they are spliced back from meta when
+ * a replica read is encoded.
+ * <p>
+ * Local snapshots older than the Redis TTL are treated as absent, the same as an expired key, so a
+ * stale copy never shadows a newer one written by another instance. Deleted agents leave a
+ * tombstone for one TTL so an in-flight replication batch cannot recreate their key.
+ */
+@Slf4j
+@Component
+public class RealtimeMetricsStore {
+
+    public static final long TTL_SECONDS = 60;
+
+    private static final String KEY_PREFIX = "agent:realtime:";
+    private static final String META_FIELD = "meta";
+    private static final String STATE_FIELD = "state";
+    private static final List<Object> ALL_FIELDS = List.of(META_FIELD, STATE_FIELD);
+    private static final List<Object> STATE_ONLY = List.of(STATE_FIELD);
+    private static final long META_REFRESH_NANOS = TimeUnit.SECONDS.toNanos(TTL_SECONDS / 2);
+    private static final int PIPELINE_CHUNK_SIZE = 1000;
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final ThreadPoolTaskExecutor replicationExecutor;
+    private final ObjectWriter stateWriter;
+    private final ObjectMapper viewMapper;
+    private final ObjectMapper identityMapper;
+    private final ObjectWriter metaWriter;
+    private final ObjectReader stateReader;
+    private final ObjectReader metaReader;
+
+    private final Map<Long, EncodedRealtimeMetrics> snapshots = new ConcurrentHashMap<>();
+    private final Map<Long, EncodedRealtimeMetrics> pendingReplication = new ConcurrentHashMap<>();
+    private final Map<Long, Identity> identities = new ConcurrentHashMap<>();
+    private final AtomicBoolean replicationScheduled = new AtomicBoolean();
+    private final Map<Long, WrittenMeta> writtenMeta = new ConcurrentHashMap<>();
+    private final Map<Long, Long> tombstones = new ConcurrentHashMap<>();
+
+    @Value("${metrics.realtime.replica-reads:true}")
+    private boolean replicaReads;
+
+    public RealtimeMetricsStore(RedisTemplate<String, String> redisTemplate,
+                                @Qualifier("realtimeReplicationExecutor") ThreadPoolTaskExecutor replicationExecutor,
+                                ObjectMapper objectMapper) {
+        this.redisTemplate = redisTemplate;
+        this.replicationExecutor = replicationExecutor;
+        ObjectMapper stateMapper = objectMapper.copy()
+                .addMixIn(RealtimeMetrics.class, StateMixin.class)
+                .addMixIn(RealtimeMetrics.NetworkInterfaceInfo.class, InterfaceStateMixin.class);
+        this.viewMapper = objectMapper.copy()
+                .addMixIn(RealtimeMetrics.class, StateMixin.class);
+        this.identityMapper = objectMapper.copy()
+                .addMixIn(RealtimeMetrics.class, IdentityMixin.class);
+        this.stateWriter = stateMapper.writerFor(RealtimeMetrics.class);
+        this.stateReader = objectMapper.readerFor(RealtimeMetrics.class);
+        this.metaWriter = objectMapper.writerFor(RealtimeMetricsMeta.class);
+        this.metaReader = objectMapper.readerFor(RealtimeMetricsMeta.class);
+    }
+
+    public EncodedRealtimeMetrics save(RealtimeMetrics metrics) {
+        EncodedRealtimeMetrics encoded = encode(metrics);
+        if (encoded == null) {
+            return null;
+        }
+        tombstones.remove(metrics.getAgentId());
+        snapshots.put(metrics.getAgentId(), encoded);
+        pendingReplication.put(metrics.getAgentId(), encoded);
+        if (replicationScheduled.compareAndSet(false, true)) {
+            try {
+                replicationExecutor.execute(this::replicate);
+            } catch (TaskRejectedException e) {
+                replicationScheduled.set(false);
+                log.warn("Realtime replication executor rejected flush; will retry on next save");
+            }
+        }
+        return encoded;
+    }
+
+    public EncodedRealtimeMetrics get(Long agentId) {
+        EncodedRealtimeMetrics local = fresh(agentId, snapshots.get(agentId), staleBefore());
+        if (local != null || !replicaReads) {
+            return local;
+        }
+        List<Object> values = redisTemplate.opsForHash().multiGet(KEY_PREFIX + agentId, ALL_FIELDS);
+        Replica remote = parse(agentId, values, true);
+        return remote != null ? encode(remote) : null;
+    }
+
+    public List<EncodedRealtimeMetrics> getAll(List<Long> agentIds, boolean includeMeta) {
+        EncodedRealtimeMetrics[] result = new EncodedRealtimeMetrics[agentIds.size()];
+        List<Integer> missing = new ArrayList<>();
+        LocalDateTime staleBefore = staleBefore();
+        for (int i = 0; i < result.length; i++) {
+            EncodedRealtimeMetrics local = fresh(agentIds.get(i), snapshots.get(agentIds.get(i)), staleBefore);
+            if (local != null) {
+                result[i] = local;
+            } else {
+                missing.add(i);
+            }
+        }
+        if (!missing.isEmpty() && replicaReads) {
+            List<Replica> remote = readReplica(missing.stream().map(agentIds::get).toList(), includeMeta);
+            for (int i = 0; i < missing.size(); i++) {
+                Replica replica = remote.get(i);
+                result[missing.get(i)] = replica != null ? encode(replica) : null;
+            }
+        }
+        return Arrays.asList(result);
+    }
+
+    /**
+     * Attaches names to a snapshot read from the replica without its metadata field, re-encoding
+     * only the identity fragment; the state JSON is reused.
+     */
+    public EncodedRealtimeMetrics withNames(EncodedRealtimeMetrics encoded, String agentName, String hostname) {
+        RealtimeMetrics named = encoded.getMetrics().toBuilder()
+                .agentName(agentName)
+                .hostname(hostname)
+                .build();
+        EncodedRealtimeMetrics renamed = encode(named, encoded.getState(), encoded.getStateTree());
+        return renamed != null ? renamed : encoded;
+    }
+
+    /**
+     * Stores a snapshot ingested by another instance, reusing its encoded state as is. It is not
+     * replicated again, and is ignored if this instance already holds a newer sample.
+     */
+    public EncodedRealtimeMetrics saveRelayed(String meta, String state) {
+        RealtimeMetrics metrics;
+        ObjectNode tree;
+        try {
+            tree = (ObjectNode) stateReader.readTree(state);
+            metrics = stateReader.treeToValue(tree, RealtimeMetrics.class);
+            RealtimeMetricsMeta parsed = metaReader.readValue(meta);
+            parsed.applyTo(metrics);
+            metrics.setOnline(true);
+        } catch (JsonProcessingException | ClassCastException e) {
+            log.error("Failed to deserialize relayed realtime metrics", e);
+            return null;
+        }
+        if (tombstones.containsKey(metrics.getAgentId())) {
+            return null;
+        }
+        EncodedRealtimeMetrics current = snapshots.get(metrics.getAgentId());
+        if (current != null && current.getSequence() != null && metrics.getSequence() != null
+                && current.getSequence() >= metrics.getSequence()) {
+            return null;
+        }
+        EncodedRealtimeMetrics encoded = encode(metrics, state, tree);
+        if (encoded != null) {
+            snapshots.put(metrics.getAgentId(), encoded);
+        }
+        return encoded;
+    }
+
+    public String metaJson(EncodedRealtimeMetrics encoded) {
+        try {
+            return metaWriter.writeValueAsString(RealtimeMetricsMeta.from(encoded.getMetrics()));
+        } catch (JsonProcessingException e) {
+            log.error("Failed to serialize realtime metadata for agent: {}", encoded.getAgentId(), e);
+            return null;
+        }
+    }
+
+    public EncodedRealtimeMetrics encode(RealtimeMetrics metrics) {
+        try {
+            ObjectNode tree = viewMapper.valueToTree(metrics);
+            return encode(metrics, viewMapper.writeValueAsString(tree), tree);
+        } catch (JsonProcessingException e) {
+            log.error("Failed to encode realtime metrics for agent: {}", metrics.getAgentId(), e);
+            return null;
+        }
+    }
+
+    /**
+     * The stored state JSON is reused as is unless meta supplied interface addresses, which the
+     * replica state leaves out and which must be written back into the interfaces.
+     */
+    private EncodedRealtimeMetrics encode(Replica replica) {
+        return hasInterfaceIps(replica.metrics)
+                ? encode(replica.metrics)
+                : encode(replica.metrics, replica.state, replica.tree);
+    }
+
+    private EncodedRealtimeMetrics encode(RealtimeMetrics metrics, String state, ObjectNode tree) {
+        Long agentId = metrics.getAgentId();
+        try {
+            Identity identity = identities.get(agentId);
+            if (identity == null || !identity.matches(metrics)) {
+                ObjectNode identityTree = identityMapper.valueToTree(metrics);
+                identity = new Identity(metrics.getAgentName(), metrics.getHostname(), metrics.getNodeId(),
+                        metrics.getOs(), metrics.getPlatform(),
+                        EncodedRealtimeMetrics.identityFragment(identityMapper.writeValueAsString(identityTree)),
+                        identityTree);
+                identities.put(agentId, identity);
+            }
+            return EncodedRealtimeMetrics.of(metrics, state, tree, identity.fragment, identity.tree);
+        } catch (JsonProcessingException e) {
+            log.error("Failed to encode realtime metrics for agent: {}", agentId, e);
+            return null;
+        }
+    }
+
+    public List<RealtimeMetrics> warmUp(List<Long> agentIds) {
+        List<RealtimeMetrics> loaded = new ArrayList<>();
+        List<Replica> remote = readReplica(agentIds, true);
+        LocalDateTime staleBefore = staleBefore();
+        for (Replica replica : remote) {
+            RealtimeMetrics metrics = replica != null ? replica.metrics : null;
+            if (metrics == null || (metrics.getTimestamp() != null && metrics.getTimestamp().isBefore(staleBefore))) {
+                continue;
+            }
+            EncodedRealtimeMetrics encoded = encode(replica);
+            if (encoded != null && snapshots.putIfAbsent(metrics.getAgentId(), encoded) == null) {
+                loaded.add(metrics);
+            }
+        }
+        log.info("Warmed realtime snapshot store with {} agents from Redis", loaded.size());
+        return loaded;
+    }
+
+    public void delete(Long agentId) {
+        tombstones.put(agentId, System.nanoTime());
+        snapshots.remove(agentId);
+        pendingReplication.remove(agentId);
+        writtenMeta.remove(agentId);
+        identities.remove(agentId);
+        redisTemplate.delete(KEY_PREFIX + agentId);
+    }
+
+    private void replicate() {
+        replicationScheduled.set(false);
+        long now = System.nanoTime();
+        tombstones.values().removeIf(deletedAt -> now - deletedAt > TimeUnit.SECONDS.toNanos(TTL_SECONDS));
+        List<EncodedRealtimeMetrics> batch = new ArrayList<>(pendingReplication.size());
+        for (Long agentId : new ArrayList<>(pendingReplication.keySet())) {
+            EncodedRealtimeMetrics encoded = pendingReplication.remove(agentId);
+            if (encoded != null && !tombstones.containsKey(agentId)) {
+                batch.add(encoded);
+            }
+        }
+
+        for (int from = 0; from < batch.size(); from += PIPELINE_CHUNK_SIZE) {
+            List<EncodedRealtimeMetrics> chunk = batch.subList(from, Math.min(from + PIPELINE_CHUNK_SIZE, batch.size()));
+            Map<String, Map<String, String>> writes = new HashMap<>(chunk.size());
+            for (EncodedRealtimeMetrics encoded : chunk) {
+                Map<String, String> fields = replicaFields(encoded);
+                if (fields != null) {
+                    writes.put(KEY_PREFIX + encoded.getAgentId(), fields);
+                }
+            }
+            try {
+                redisTemplate.executePipelined(new SessionCallback<Object>() {
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    public <K, V> Object execute(RedisOperations<K, V> operations) {
+                        RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                        writes.forEach((key, fields) -> {
+                            ops.opsForHash().putAll(key, fields);
+                            ops.expire(key, TTL_SECONDS, TimeUnit.SECONDS);
+                        });
+                        return null;
+                    }
+                });
+            } catch (Exception e) {
+                log.error("Failed to replicate {} realtime snapshots to Redis", writes.size(), e);
+                chunk.forEach(encoded -> writtenMeta.remove(encoded.getAgentId()));
+            }
+            // An agent deleted while the pipeline was in flight may have been written after its DEL.
+            List<String> resurrected = chunk.stream()
+                    .filter(encoded -> tombstones.containsKey(encoded.getAgentId()))
+                    .map(encoded -> KEY_PREFIX + encoded.getAgentId())
+                    .toList();
+            if (!resurrected.isEmpty()) {
+                redisTemplate.delete(resurrected);
+            }
+        }
+    }
+
+    private EncodedRealtimeMetrics fresh(Long agentId, EncodedRealtimeMetrics local, LocalDateTime staleBefore) {
+        if (local == null || local.getMetrics().getTimestamp() == null
+                || !local.getMetrics().getTimestamp().isBefore(staleBefore)) {
+            return local;
+        }
+        snapshots.remove(agentId, local);
+        return null;
+    }
+
+    private static LocalDateTime staleBefore() {
+        return LocalDateTime.now().minusSeconds(TTL_SECONDS);
+    }
+
+    private Map<String, String> replicaFields(EncodedRealtimeMetrics encoded) {
+        Long agentId = encoded.getAgentId();
+        String meta = metaJson(encoded);
+        if (meta == null) {
+            return null;
+        }
+        Map<String, String> fields = new HashMap<>(2);
+        try {
+            fields.put(STATE_FIELD, stateWriter.writeValueAsString(encoded.getMetrics()));
+        } catch (JsonProcessingException e) {
+            log.error("Failed to serialize metrics to Redis for agent: {}", agentId, e);
+            return null;
+        }
+        long now = System.nanoTime();
+        WrittenMeta previous = writtenMeta.get(agentId);
+        if (previous == null || !previous.json.equals(meta) || now - previous.writtenAt > META_REFRESH_NANOS) {
+            fields.put(META_FIELD, meta);
+            writtenMeta.put(agentId, new WrittenMeta(meta, now));
+        }
+        return fields;
+    }
+
+    private List<Replica> readReplica(List<Long> agentIds, boolean includeMeta) {
+        List<Object> fields = includeMeta ? ALL_FIELDS : STATE_ONLY;
+        List<Object> results = new ArrayList<>(agentIds.size());
+        for (int from = 0; from < agentIds.size(); from += PIPELINE_CHUNK_SIZE) {
+            List<Long> chunk = agentIds.subList(from, Math.min(from + PIPELINE_CHUNK_SIZE, agentIds.size()));
+            results.addAll(redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) {
+                    RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                    for (Long agentId : chunk) {
+                        ops.opsForHash().multiGet(KEY_PREFIX + agentId, fields);
+                    }
+                    return null;
+                }
+            }));
+        }
+
+        List<Replica> parsed = new ArrayList<>(agentIds.size());
+        for (int i = 0; i < agentIds.size(); i++) {
+            parsed.add(parse(agentIds.get(i), (List<?>) results.get(i), includeMeta));
+        }
+        return parsed;
+    }
+
+    private Replica parse(Long agentId, List<?> values, boolean includeMeta) {
+        if (values == null) {
+            return null;
+        }
+        Object state = values.get(includeMeta ? 1 : 0);
+        if (state == null) {
+            return null;
+        }
+        try {
+            ObjectNode tree = (ObjectNode) stateReader.readTree((String) state);
+            RealtimeMetrics metrics = stateReader.treeToValue(tree, RealtimeMetrics.class);
+            metrics.setOnline(true);
+            Object meta = includeMeta ? values.get(0) : null;
+            if (meta != null) {
+                RealtimeMetricsMeta parsed = metaReader.readValue((String) meta);
+                parsed.applyTo(metrics);
+            }
+            return new Replica(metrics, (String) state, tree);
+        } catch (JsonProcessingException | ClassCastException e) {
+            log.error("Failed to deserialize metrics from Redis for agent: {}", agentId, e);
+            return null;
+        }
+    }
+
+    private static boolean hasInterfaceIps(RealtimeMetrics metrics) {
+        if (metrics.getInterfaces() == null) {
+            return false;
+        }
+        for (RealtimeMetrics.NetworkInterfaceInfo info : metrics.getInterfaces()) {
+            if (info.getIps() != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private record Replica(RealtimeMetrics metrics, String state, ObjectNode tree) {
+    }
+
+    private record WrittenMeta(String json, long writtenAt) {
+    }
+
+    private record Identity(String agentName, String hostname, String nodeId, String os, String platform,
+                            SerializedString fragment, ObjectNode tree) {
+
+        private boolean matches(RealtimeMetrics metrics) {
+            return Objects.equals(agentName, metrics.getAgentName())
+                    && Objects.equals(hostname, metrics.getHostname())
+                    && Objects.equals(nodeId, metrics.getNodeId())
+                    && Objects.equals(os, metrics.getOs())
+                    && Objects.equals(platform, metrics.getPlatform());
+        }
+    }
+
+    @JsonIgnoreProperties({"agentName", "hostname", "nodeId", "os", "platform", "online", "outliers"})
+    private abstract static class StateMixin {
+    }
+
+    @JsonIgnoreProperties({"ips"})
+    private abstract static class InterfaceStateMixin {
+    }
+
+    @JsonIncludeProperties({"agentName", "hostname", "nodeId", "os", "platform"})
+    private abstract static class IdentityMixin {
+    }
+}
@@ -0,0 +1,146 @@
+package com.horizon.backend.service;
+
+import com.horizon.backend.dto.metrics.EncodedRealtimeMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Shares SSE pushes between backend instances over a Redis channel, so a browser connected to one
+ * instance also sees agents ingested by another. Metrics updates are coalesced per agent and
+ * published in pipelined batches off the ingest thread. Each one carries the snapshot's
+ * already-encoded state JSON, which receivers store and stream without serializing it again.
+ * Messages are tagged with this instance's id so an instance skips its own.
+ * <p>
+ * Wire format: {@code <instance>|<type>\n<payload>}; a metrics payload is {@code <meta>\n<state>}.
+ * JSON never contains a raw newline, so the parts can be split without escaping.
+ */
+@Slf4j
+@Component
+public class RealtimeRelay {
+
+    public static final String METRICS_TYPE = "metrics";
+    public static final String ALERT_TYPE = "alert";
+
+    private static final int PIPELINE_CHUNK_SIZE = 1000;
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final ThreadPoolTaskExecutor relayExecutor;
+    private final RealtimeMetricsStore realtimeMetricsStore;
+    private final boolean enabled;
+    private final String channel;
+    private final String instanceId = UUID.randomUUID().toString();
+
+    private final Map<Long, EncodedRealtimeMetrics> pendingMetrics = new ConcurrentHashMap<>();
+    private final Queue<String> pendingMessages = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+    public RealtimeRelay(RedisTemplate<String, String> redisTemplate,
+                         @Qualifier("realtimeRelayExecutor") ThreadPoolTaskExecutor relayExecutor,
+                         RealtimeMetricsStore realtimeMetricsStore,
+                         @Value("${sse.relay.enabled:true}") boolean enabled,
+                         @Value("${sse.relay.channel:horizon:realtime}") String channel) {
+        this.redisTemplate = redisTemplate;
+        this.relayExecutor = relayExecutor;
+        this.realtimeMetricsStore = realtimeMetricsStore;
+        this.enabled = enabled;
+        this.channel = channel;
+    }
+
+    public void publishMetrics(EncodedRealtimeMetrics metrics) {
+        if (!enabled) {
+            return;
+        }
+        pendingMetrics.put(metrics.getAgentId(), metrics);
+        schedule();
+    }
+
+    public void publish(String type, byte[] payload) {
+        if (!enabled) {
+            return;
+        }
+        pendingMessages.add(envelope(type, new String(payload, StandardCharsets.UTF_8)));
+        schedule();
+    }
+
+    public RelayMessage decode(byte[] body) {
+        String message = new String(body, StandardCharsets.UTF_8);
+        int separator = message.indexOf('|');
+        int newline = message.indexOf('\n');
+        if (separator < 0 || newline < separator) {
+            log.warn("Ignoring malformed realtime relay message");
+            return null;
+        }
+        if (message.substring(0, separator).equals(instanceId)) {
+            return null;
+        }
+        return new RelayMessage(message.substring(separator + 1, newline), message.substring(newline + 1));
+    }
+
+    private void schedule() {
+        if (flushScheduled.compareAndSet(false, true)) {
+            try {
+                relayExecutor.execute(this::flush);
+            } catch (TaskRejectedException e) {
+                flushScheduled.set(false);
+                log.warn("Realtime relay executor rejected flush; will retry on next publish");
+            }
+        }
+    }
+
+    private void flush() {
+        flushScheduled.set(false);
+        List<String> messages = new ArrayList<>(pendingMessages.size() + pendingMetrics.size());
+        String message;
+        while ((message = pendingMessages.poll()) != null) {
+            messages.add(message);
+        }
+        for (Long agentId : new ArrayList<>(pendingMetrics.keySet())) {
+            EncodedRealtimeMetrics metrics = pendingMetrics.remove(agentId);
+            String meta = metrics != null ? realtimeMetricsStore.metaJson(metrics) : null;
+            if (meta != null) {
+                messages.add(envelope(METRICS_TYPE, meta + '\n' + metrics.getState()));
+            }
+        }
+
+        for (int from = 0; from < messages.size(); from += PIPELINE_CHUNK_SIZE) {
+            List<String> chunk = messages.subList(from, Math.min(from + PIPELINE_CHUNK_SIZE, messages.size()));
+            try {
+                redisTemplate.executePipelined(new SessionCallback<Object>() {
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    public <K, V> Object execute(RedisOperations<K, V> operations) {
+                        RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                        chunk.forEach(payload -> ops.convertAndSend(channel, payload));
+                        return null;
+                    }
+                });
+            } catch (Exception e) {
+                log.error("Failed to relay {} realtime messages to Redis", chunk.size(), e);
+            }
+        }
+    }
+
+    String envelope(String type, String payload) {
+        return instanceId + '|' + type + '\n' + payload;
+    }
+
+    public record RelayMessage(String type, String payload) {
+    }
+}
@@ -0,0 +1,74 @@
+package com.horizon.backend.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.horizon.backend.dto.alert.AlertEvent;
+import com.horizon.backend.dto.metrics.EncodedRealtimeMetrics;
+import com.horizon.backend.dto.metrics.RealtimeMetrics;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RealtimeRelayListener implements MessageListener {
+
+    private final RealtimeRelay realtimeRelay;
+    private final RealtimeMetricsStore realtimeMetricsStore;
+    private final RealtimeSnapshotIndex realtimeSnapshotIndex;
+    private final MetricsLeaderboard metricsLeaderboard;
+    private final AgentMetadataCache agentMetadataCache;
+    private final MetricsService metricsService;
+    private final SseEmitterService sseEmitterService;
+    private final AgentPresenceTracker agentPresenceTracker;
+    private final ObjectMapper objectMapper;
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        RealtimeRelay.RelayMessage relayed = realtimeRelay.decode(message.getBody());
+        if (relayed == null) {
+            return;
+        }
+        if (RealtimeRelay.ALERT_TYPE.equals(relayed.type())) {
+            onAlert(relayed.payload());
+            return;
+        }
+        if (!RealtimeRelay.METRICS_TYPE.equals(relayed.type())) {
+            sseEmitterService.sendRelayed(relayed.type(), relayed.payload().getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+
+        String payload = relayed.payload();
+        int newline = payload.indexOf('\n');
+        if (newline < 0) {
+            log.warn("Ignoring malformed relayed metrics");
+            return;
+        }
+        EncodedRealtimeMetrics encoded = realtimeMetricsStore.saveRelayed(
+                payload.substring(0, newline), payload.substring(newline + 1));
+        if (encoded == null) {
+            return;
+        }
+        RealtimeMetrics metrics = encoded.getMetrics();
+        agentPresenceTracker.relayedHeartbeat(metrics.getAgentId(), metrics.getLastHeartbeat());
+        AgentMetadataCache.AgentSummary agent = agentMetadataCache.find(metrics.getAgentId());
+        realtimeSnapshotIndex.update(metrics, agent != null ? agent.userId() : null);
+        metricsLeaderboard.update(metrics);
+        sseEmitterService.sendRelayed(metricsService.getRealtimeMetrics(metrics.getAgentId()));
+    }
+
+    private void onAlert(String payload) {
+        try {
+            AlertEvent alert = objectMapper.readValue(payload, AlertEvent.class);
+            sseEmitterService.sendRelayedAlert(alert.getUserId(), alert.getAgentId(),
+                    payload.getBytes(StandardCharsets.UTF_8));
+        } catch (JsonProcessingException e) {
+            log.warn("Ignoring malformed relayed alert: {}", e.getMessage());
+        }
+    }
+}
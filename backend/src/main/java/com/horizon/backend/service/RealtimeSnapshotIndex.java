@@ -0,0 +1,289 @@
+package com.horizon.backend.service;
+
+import com.horizon.backend.dto.metrics.FleetGroupBy;
+import com.horizon.backend.dto.metrics.FleetGroupStats;
+import com.horizon.backend.dto.metrics.MetricType;
+import com.horizon.backend.dto.metrics.MetricsOutlier;
+import com.horizon.backend.dto.metrics.RealtimeMetrics;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Incremental per-group aggregates over the latest snapshot of every agent. Sums are updated by
+ * adding and subtracting values, which accumulates floating-point error over time, so the group
+ * states are rebuilt from the current entries every {@value #REBUILD_INTERVAL} updates.
+ */
+@Component
+public class RealtimeSnapshotIndex {
+
+    private static final MetricType[] METRIC_TYPES = MetricType.values();
+    private static final FleetGroupBy[] GROUP_BYS = FleetGroupBy.values();
+    private static final MetricType[] OUTLIER_METRICS = {MetricType.CPU, MetricType.MEMORY};
+    private static final int REBUILD_INTERVAL = 100_000;
+
+    private final Map<Long, Entry> entries = new HashMap<>();
+    private final Map<FleetGroupBy, Map<String, GroupState>> groups = new EnumMap<>(FleetGroupBy.class);
+    private volatile Map<Long, List<String>> outlierFlags = Map.of();
+    private int updatesSinceRebuild;
+
+    public RealtimeSnapshotIndex() {
+        for (FleetGroupBy groupBy : GROUP_BYS) {
+            groups.put(groupBy, new HashMap<>());
+        }
+    }
+
+    public synchronized void update(RealtimeMetrics metrics, Long userId) {
+        Entry previous = entries.get(metrics.getAgentId());
+        if (previous != null) {
+            contribute(previous, -1);
+        }
+        Entry entry = new Entry(metrics, userId, metrics.isOnline());
+        entries.put(metrics.getAgentId(), entry);
+        contribute(entry, 1);
+        if (++updatesSinceRebuild >= REBUILD_INTERVAL) {
+            rebuild();
+        }
+    }
+
+    public synchronized void markOffline(Long agentId) {
+        Entry entry = entries.get(agentId);
+        if (entry == null || !entry.online) {
+            return;
+        }
+        contribute(entry, -1);
+        entry.online = false;
+        contribute(entry, 1);
+    }
+
+    public synchronized void remove(Long agentId) {
+        Entry entry = entries.remove(agentId);
+        if (entry != null) {
+            contribute(entry, -1);
+        }
+    }
+
+    public synchronized List<FleetGroupStats> aggregate(FleetGroupBy groupBy, Map<MetricType, Double> thresholds) {
+        List<FleetGroupStats> result = new ArrayList<>();
+        for (GroupState state : new TreeMap<>(groups.get(groupBy)).values()) {
+            Map<String, FleetGroupStats.MetricSummary> metrics = new LinkedHashMap<>();
+            for (MetricType type : METRIC_TYPES) {
+                MetricState metric = state.metrics[type.ordinal()];
+                if (metric.count == 0) {
+                    continue;
+                }
+                Double threshold = thresholds.get(type);
+                metrics.put(type.getKey(), FleetGroupStats.MetricSummary.builder()
+                        .count(metric.count)
+                        .avg(metric.mean())
+                        .stddev(metric.stddev())
+                        .p50(metric.quantile(type, 0.5))
+                        .p95(metric.quantile(type, 0.95))
+                        .threshold(threshold)
+                        .above(threshold != null ? metric.countAtOrAbove(type, threshold) : null)
+                        .build());
+            }
+
+            result.add(FleetGroupStats.builder()
+                    .group(state.key)
+                    .agents(state.agents)
+                    .online(state.online)
+                    .metrics(metrics)
+                    .build());
+        }
+        return result;
+    }
+
+    public synchronized List<MetricsOutlier> findOutliers(FleetGroupBy groupBy, double sigma, int minGroupSize) {
+        Map<String, GroupState> byKey = groups.get(groupBy);
+        Map<String, double[][]> groupStats = new HashMap<>();
+        List<MetricsOutlier> outliers = new ArrayList<>();
+
+        for (Entry entry : entries.values()) {
+            if (!entry.online) {
+                continue;
+            }
+            String key = entry.groupKeys[groupBy.ordinal()];
+            GroupState state = byKey.get(key);
+            if (state == null || state.online < minGroupSize) {
+                continue;
+            }
+            double[][] stats = groupStats.computeIfAbsent(key, k -> medianAndStddev(state));
+
+            for (MetricType type : OUTLIER_METRICS) {
+                double value = entry.values[type.ordinal()];
+                double median = stats[type.ordinal()][0];
+                double stddev = stats[type.ordinal()][1];
+                if (Double.isNaN(value) || stddev <= 0) {
+                    continue;
+                }
+                double score = (value - median) / stddev;
+                if (Math.abs(score) >= sigma) {
+                    outliers.add(MetricsOutlier.builder()
+                            .agentId(entry.metrics.getAgentId())
+                            .agentName(entry.metrics.getAgentName())
+                            .hostname(entry.metrics.getHostname())
+                            .group(key)
+                            .metric(type.getKey())
+                            .value(value)
+                            .median(median)
+                            .stddev(stddev)
+                            .score(score)
+                            .build());
+                }
+            }
+        }
+        outliers.sort((a, b) -> Double.compare(Math.abs(b.getScore()), Math.abs(a.getScore())));
+        return outliers;
+    }
+
+    public void refreshOutlierFlags(FleetGroupBy groupBy, double sigma, int minGroupSize) {
+        Map<Long, List<String>> flags = new HashMap<>();
+        for (MetricsOutlier outlier : findOutliers(groupBy, sigma, minGroupSize)) {
+            flags.computeIfAbsent(outlier.getAgentId(), id -> new ArrayList<>()).add(outlier.getMetric());
+        }
+        outlierFlags = flags;
+    }
+
+    public List<String> getOutlierFlags(Long agentId) {
+        return outlierFlags.get(agentId);
+    }
+
+    private void rebuild() {
+        updatesSinceRebuild = 0;
+        for (Map<String, GroupState> byKey : groups.values()) {
+            byKey.clear();
+        }
+        for (Entry entry : entries.values()) {
+            contribute(entry, 1);
+        }
+    }
+
+    private void contribute(Entry entry, int sign) {
+        for (FleetGroupBy groupBy : GROUP_BYS) {
+            Map<String, GroupState> byKey = groups.get(groupBy);
+            String key = entry.groupKeys[groupBy.ordinal()];
+            GroupState state = byKey.computeIfAbsent(key, GroupState::new);
+
+            state.agents += sign;
+            if (entry.online) {
+                state.online += sign;
+                for (MetricType type : METRIC_TYPES) {
+                    double value = entry.values[type.ordinal()];
+                    if (!Double.isNaN(value)) {
+                        state.metrics[type.ordinal()].add(type, value, sign);
+                    }
+                }
+            }
+
+            if (state.agents <= 0) {
+                byKey.remove(key);
+            }
+        }
+    }
+
+    private static double[][] medianAndStddev(GroupState state) {
+        double[][] stats = new double[METRIC_TYPES.length][];
+        for (MetricType type : METRIC_TYPES) {
+            MetricState metric = state.metrics[type.ordinal()];
+            stats[type.ordinal()] = metric.count > 0
+                    ? new double[]{metric.quantile(type, 0.5), metric.stddev()}
+                    : new double[]{Double.NaN, 0};
+        }
+        return stats;
+    }
+
+    private static final class Entry {
+        private final RealtimeMetrics metrics;
+        private final String[] groupKeys = new String[GROUP_BYS.length];
+        private final double[] values = new double[METRIC_TYPES.length];
+        private boolean online;
+
+        private Entry(RealtimeMetrics metrics, Long userId, boolean online) {
+            this.metrics = metrics;
+            this.online = online;
+            for (FleetGroupBy groupBy : GROUP_BYS) {
+                groupKeys[groupBy.ordinal()] = groupBy.keyOf(metrics, userId);
+            }
+            for (MetricType type : METRIC_TYPES) {
+                Double value = type.extract(metrics);
+                values[type.ordinal()] = value != null ? value : Double.NaN;
+            }
+        }
+    }
+
+    private static final class GroupState {
+        private final String key;
+        private final MetricState[] metrics = new MetricState[METRIC_TYPES.length];
+        private long agents;
+        private long online;
+
+        private GroupState(String key) {
+            this.key = key;
+            for (MetricType type : METRIC_TYPES) {
+                metrics[type.ordinal()] = new MetricState(type.getBins());
+            }
+        }
+    }
+
+    private static final class MetricState {
+        private final long[] histogram;
+        private long count;
+        private double sum;
+        private double sumOfSquares;
+
+        private MetricState(int bins) {
+            this.histogram = new long[bins];
+        }
+
+        private void add(MetricType type, double value, int sign) {
+            count += sign;
+            histogram[type.bin(value)] += sign;
+            if (count == 0) {
+                sum = 0;
+                sumOfSquares = 0;
+                return;
+            }
+            sum += sign * value;
+            sumOfSquares += sign * value * value;
+        }
+
+        private double mean() {
+            return count > 0 ? sum / count : 0;
+        }
+
+        private double stddev() {
+            if (count == 0) {
+                return 0;
+            }
+            double mean = mean();
+            return Math.sqrt(Math.max(0, sumOfSquares / count - mean * mean));
+        }
+
+        private double quantile(MetricType type, double q) {
+            long rank = Math.max(1, (long) Math.ceil(q * count));
+            long seen = 0;
+            for (int bin = 0; bin < histogram.length; bin++) {
+                seen += histogram[bin];
+                if (seen >= rank) {
+                    return type.midpoint(bin);
+                }
+            }
+            return type.midpoint(histogram.length - 1);
+        }
+
+        private long countAtOrAbove(MetricType type, double threshold) {
+            long above = 0;
+            for (int bin = type.bin(threshold); bin < histogram.length; bin++) {
+                above += histogram[bin];
+            }
+            return above;
+        }
+    }
+}
@@ -1,170 +1,1061 @@
 package com.horizon.backend.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.horizon.backend.dto.agent.AgentPresenceEvent;
+import com.horizon.backend.dto.alert.AlertEvent;
+import com.horizon.backend.dto.metrics.EncodedRealtimeMetrics;
+import com.horizon.backend.dto.metrics.FleetGroupBy;
+import com.horizon.backend.dto.metrics.LeaderboardEntry;
 import com.horizon.backend.dto.metrics.RealtimeMetrics;
+import com.horizon.backend.dto.metrics.StreamStats;
+import com.horizon.backend.dto.metrics.StreamSubscription;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
+/**
+ * Fans SSE frames out off the caller's thread. Broadcasts are handed to a single dispatch thread,
+ * which preserves per-subscriber ordering and only enqueues; every subscriber drains its own
+ * bounded queue on the delivery executor, so a slow connection only ever backs up its own queue.
+ * Rate-capped subscribers keep only the latest snapshot per agent and receive them as one
+ * "metrics-batch" event per interval. Delta subscribers get only the fields that changed since the
+ * snapshot they last received for an agent, with a full keyframe at a fixed interval or after any
+ * dropped frame.
+ *
+ * <p>Every metrics, alert and broadcast event gets an id of the form {@code <instanceId>-<sequence>}
+ * and is kept in a bounded replay ring. A reconnect carrying {@code Last-Event-ID} is replayed only
+ * what it missed, streamed in chunks as its queue drains; when the id is outside the ring or was
+ * issued by another instance it gets an "init" resync instead. Init frames are never evicted from a
+ * subscriber queue. The all-agents snapshot is built off the dispatch thread and shared between
+ * connections for as long as the events since it can still be replayed, so a reconnect storm builds
+ * it once rather than once per client.
+ *
+ * <p>Subscriptions may be narrowed to a set of agents or to one fleet group, and projected to a set
+ * of fields. Updates are routed through per-agent and per-group indexes, so an update only visits
+ * the subscribers interested in that agent.
+ *
+ * <p>Metrics, alert and presence pushes are also published through {@link RealtimeRelay}, and
+ * pushes relayed from other instances arrive through the {@code sendRelayed} methods, so every
+ * instance streams the whole fleet. Leaderboard pushes are computed per instance and stay local.
+ */
 @Slf4j
 @Service
 public class SseEmitterService {
 
     private static final long SSE_TIMEOUT = 60 * 60 * 1000L;
-    private final Map<Long, List<SseEmitter>> agentEmitters = new ConcurrentHashMap<>();
-    private final List<SseEmitter> allAgentsEmitters = new CopyOnWriteArrayList<>();
 
-    public SseEmitter createEmitter() {
-        SseEmitter emitter = new SseEmitter(SSE_TIMEOUT);
+    private final ThreadPoolTaskExecutor dispatchExecutor;
+    private final TaskExecutor deliveryExecutor;
+    private final ObjectMapper objectMapper;
+    private final MetricsFrameEncoder frameEncoder;
+    private final AgentMetadataCache agentMetadataCache;
+    private final RealtimeRelay realtimeRelay;
+    private final int queueCapacity;
+    private final SlowConsumerPolicy slowConsumerPolicy;
+    private final long keyframeIntervalNanos;
+    private final long writeTimeoutNanos;
+    private final ReplayBuffer replay;
 
-        allAgentsEmitters.add(emitter);
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final Map<Long, List<Subscriber>> agentSubscribers = new ConcurrentHashMap<>();
+    private final Map<FleetGroupBy, Map<String, List<Subscriber>>> groupSubscribers = new ConcurrentHashMap<>();
+    private final List<Subscriber> allAgentsSubscribers = new CopyOnWriteArrayList<>();
+    private final AtomicLong deliveredFrames = new AtomicLong();
+    private final AtomicLong droppedFrames = new AtomicLong();
+    private final AtomicLong slowConsumerDisconnects = new AtomicLong();
+    private final AtomicLong replayedFrames = new AtomicLong();
+    private final AtomicLong resyncs = new AtomicLong();
+    private final AtomicInteger conflatedSubscribers = new AtomicInteger();
+    private final Map<Long, Map<FleetGroupBy, String>> memberships = new ConcurrentHashMap<>();
+    private volatile Snapshot allAgentsSnapshot;
+
+    public SseEmitterService(@Qualifier("sseDispatchExecutor") ThreadPoolTaskExecutor dispatchExecutor,
+                             @Qualifier("sseDeliveryExecutor") TaskExecutor deliveryExecutor,
+                             ObjectMapper objectMapper,
+                             MetricsFrameEncoder frameEncoder,
+                             AgentMetadataCache agentMetadataCache,
+                             RealtimeRelay realtimeRelay,
+                             @Value("${sse.queue-capacity:256}") int queueCapacity,
+                             @Value("${sse.slow-consumer-policy:DROP_OLDEST}") SlowConsumerPolicy slowConsumerPolicy,
+                             @Value("${sse.delta.keyframe-interval-seconds:60}") long keyframeIntervalSeconds,
+                             @Value("${sse.replay-buffer-size:4096}") int replayBufferSize,
+                             @Value("${sse.write-timeout-seconds:30}") long writeTimeoutSeconds) {
+        this.dispatchExecutor = dispatchExecutor;
+        this.deliveryExecutor = deliveryExecutor;
+        this.objectMapper = objectMapper;
+        this.frameEncoder = frameEncoder;
+        this.agentMetadataCache = agentMetadataCache;
+        this.realtimeRelay = realtimeRelay;
+        this.queueCapacity = queueCapacity;
+        this.slowConsumerPolicy = slowConsumerPolicy;
+        this.keyframeIntervalNanos = TimeUnit.SECONDS.toNanos(keyframeIntervalSeconds);
+        this.writeTimeoutNanos = TimeUnit.SECONDS.toNanos(writeTimeoutSeconds);
+        this.replay = new ReplayBuffer(replayBufferSize, UUID.randomUUID().toString().substring(0, 8));
+    }
+
+    public SseEmitter createEmitter(StreamSubscription subscription,
+                                    Supplier<List<EncodedRealtimeMetrics>> fleetSnapshot) {
+        SseEmitter emitter = newEmitter();
+        Subscriber subscriber = new Subscriber(emitter, null, queueCapacity, subscription);
 
         emitter.onCompletion(() -> {
-            allAgentsEmitters.remove(emitter);
+            remove(subscriber);
             log.debug("SSE connection completed for all agents");
         });
 
         emitter.onTimeout(() -> {
-            allAgentsEmitters.remove(emitter);
+            remove(subscriber);
             log.debug("SSE connection timed out for all agents");
         });
 
         emitter.onError(e -> {
-            allAgentsEmitters.remove(emitter);
+            remove(subscriber);
             log.debug("SSE connection error for all agents: {}", e.getMessage());
         });
 
+        open(subscriber, fleetSnapshot);
         return emitter;
     }
 
-    public SseEmitter createEmitterForAgent(Long agentId) {
-        SseEmitter emitter = new SseEmitter(SSE_TIMEOUT);
-
-        agentEmitters.computeIfAbsent(agentId, k -> new CopyOnWriteArrayList<>()).add(emitter);
+    public SseEmitter createEmitterForAgent(Long agentId, StreamSubscription subscription,
+                                            Supplier<EncodedRealtimeMetrics> agentSnapshot) {
+        SseEmitter emitter = newEmitter();
+        Subscriber subscriber = new Subscriber(emitter, agentId, queueCapacity, subscription);
 
         emitter.onCompletion(() -> {
-            removeEmitter(agentId, emitter);
+            remove(subscriber);
             log.debug("SSE connection completed for agent: {}", agentId);
         });
 
         emitter.onTimeout(() -> {
-            removeEmitter(agentId, emitter);
+            remove(subscriber);
             log.debug("SSE connection timed out for agent: {}", agentId);
         });
 
         emitter.onError(e -> {
-            removeEmitter(agentId, emitter);
+            remove(subscriber);
             log.debug("SSE connection error for agent {}: {}", agentId, e.getMessage());
         });
 
+        open(subscriber, agentSnapshot != null ? () -> List.of(agentSnapshot.get()) : null);
         return emitter;
     }
 
-    public void sendToAgent(Long agentId, RealtimeMetrics metrics) {
-        List<SseEmitter> emitters = agentEmitters.get(agentId);
-        if (emitters != null) {
-            List<SseEmitter> deadEmitters = new CopyOnWriteArrayList<>();
+    public void sendToAll(EncodedRealtimeMetrics metrics) {
+        realtimeRelay.publishMetrics(metrics);
+        sendRelayed(metrics);
+    }
 
-            for (SseEmitter emitter : emitters) {
-                try {
-                    emitter.send(SseEmitter.event()
-                            .name("metrics")
-                            .data(metrics));
-                } catch (IOException e) {
-                    deadEmitters.add(emitter);
+    public void sendRelayed(EncodedRealtimeMetrics metrics) {
+        Long agentId = metrics.getAgentId();
+        byte[] data = metrics.toBytes();
+        // Resolved here rather than on the dispatch thread, since the metadata cache may reload from the database.
+        Long ownerId = ownerOf(agentId);
+        dispatch(() -> {
+            ReplayEntry entry = replay.append(metrics, ownerId, agentId, "metrics", data);
+            regroup(metrics, ownerId);
+            allAgentsSubscribers.forEach(subscriber -> deliver(subscriber, entry));
+            List<Subscriber> byAgent = agentSubscribers.get(agentId);
+            if (byAgent != null) {
+                byAgent.forEach(subscriber -> {
+                    if (inGroup(subscriber, metrics, ownerId)) {
+                        deliver(subscriber, entry);
+                    }
+                });
+            }
+            groupSubscribers.forEach((groupBy, byKey) -> {
+                List<Subscriber> byGroup = byKey.get(groupBy.keyOf(metrics.getMetrics(), ownerId));
+                if (byGroup != null) {
+                    byGroup.forEach(subscriber -> deliver(subscriber, entry));
+                }
+            });
+        });
+    }
+
+    public void flushConflated() {
+        if (conflatedSubscribers.get() == 0) {
+            return;
+        }
+        dispatch(() -> {
+            long now = System.nanoTime();
+            subscribers.forEach(subscriber -> {
+                if (subscriber.flushIntervalNanos == 0 || subscriber.pending.isEmpty()
+                        || now - subscriber.nextFlushAt < 0) {
+                    return;
+                }
+                // Room is made before diffing, so an eviction can only invalidate deltas not yet computed.
+                if (!reserve(subscriber, 2)) {
+                    return;
+                }
+                List<EncodedRealtimeMetrics> full = new ArrayList<>(subscriber.pending.size());
+                List<byte[]> deltas = new ArrayList<>();
+                for (EncodedRealtimeMetrics metrics : subscriber.pending.values()) {
+                    byte[] delta = subscriber.delta ? nextDelta(subscriber, metrics, now) : null;
+                    if (delta != null) {
+                        deltas.add(delta);
+                    } else {
+                        full.add(metrics);
+                    }
+                }
+                subscriber.pending.clear();
+                subscriber.nextFlushAt = now + subscriber.flushIntervalNanos;
+                if (!full.isEmpty()) {
+                    enqueue(subscriber, new QueuedFrame(frame("metrics-batch", replay.eventId(subscriber.pendingEventId),
+                            encodeAll(subscriber, full)), FrameKind.METRICS, null));
+                }
+                if (!deltas.isEmpty()) {
+                    enqueue(subscriber, new QueuedFrame(frame("metrics-delta-batch", replay.eventId(subscriber.pendingEventId),
+                            MetricsFrameEncoder.toJsonArray(deltas)), FrameKind.DELTA, null));
+                }
+            });
+        });
+    }
+
+    public void sendToAll(List<RealtimeMetrics> metricsList) {
+        broadcast("metrics-all", metricsList);
+    }
+
+    public void sendTopAgents(Map<String, List<LeaderboardEntry>> topAgents) {
+        broadcast("top", topAgents);
+    }
+
+    public void sendAlert(AlertEvent alert) {
+        byte[] bytes = encode(RealtimeRelay.ALERT_TYPE, alert);
+        if (bytes != null) {
+            realtimeRelay.publish(RealtimeRelay.ALERT_TYPE, bytes);
+            sendRelayedAlert(alert.getUserId(), alert.getAgentId(), bytes);
+        }
+    }
+
+    public void sendPresence(AgentPresenceEvent presence) {
+        relay("presence", presence);
+    }
+
+    public void sendRelayed(String name, byte[] data) {
+        dispatch(() -> {
+            ReplayEntry entry = replay.append(null, null, null, name, data);
+            allAgentsSubscribers.forEach(subscriber -> deliver(subscriber, entry));
+        });
+    }
+
+    /**
+     * Alerts only reach connections opened by the rule owner, narrowed by the same agent filter as
+     * metrics.
+     */
+    public void sendRelayedAlert(Long userId, Long agentId, byte[] data) {
+        dispatch(() -> {
+            ReplayEntry entry = replay.append(null, userId, agentId, RealtimeRelay.ALERT_TYPE, data);
+            subscribers.forEach(subscriber -> {
+                if (visible(subscriber, entry)) {
+                    deliver(subscriber, entry);
+                }
+            });
+        });
+    }
+
+    public int getAllAgentsConnectionCount() {
+        return allAgentsSubscribers.size();
+    }
+
+    public void sendHeartbeat() {
+        evictStalled();
+        Set<ResponseBodyEmitter.DataWithMediaType> frame = frame("heartbeat", null, "ping");
+        dispatch(() -> subscribers.forEach(subscriber -> enqueue(subscriber, frame)));
+    }
+
+    public int getConnectionCount() {
+        return subscribers.size();
+    }
+
+    public StreamStats getStats() {
+        int[] totals = new int[3];
+        subscribers.forEach(subscriber -> {
+            int depth = subscriber.queue.size();
+            totals[0]++;
+            totals[1] += depth;
+            totals[2] = Math.max(totals[2], depth);
+        });
+        return StreamStats.builder()
+                .subscribers(totals[0])
+                .queuedFrames(totals[1])
+                .maxQueueDepth(totals[2])
+                .queueCapacity(queueCapacity)
+                .deliveredFrames(deliveredFrames.get())
+                .droppedFrames(droppedFrames.get())
+                .slowConsumerDisconnects(slowConsumerDisconnects.get())
+                .replayedFrames(replayedFrames.get())
+                .resyncs(resyncs.get())
+                .lastEventId(replay.eventId(replay.head()))
+                .build();
+    }
+
+    SseEmitter newEmitter() {
+        return new SseEmitter(SSE_TIMEOUT);
+    }
+
+    /**
+     * Drops subscribers whose current write has been blocked longer than the write timeout, so a
+     * stalled socket stops receiving frames instead of pinning a delivery thread. Completing the
+     * emitter would wait on that same write, so it is left to whichever side sees the write return.
+     */
+    private void evictStalled() {
+        long now = System.nanoTime();
+        subscribers.forEach(subscriber -> {
+            long since = subscriber.sendingSince;
+            if (since != 0 && now - since > writeTimeoutNanos) {
+                slowConsumerDisconnects.incrementAndGet();
+                log.warn("Evicting SSE subscriber blocked on a write for over {}s",
+                        TimeUnit.NANOSECONDS.toSeconds(writeTimeoutNanos));
+                subscriber.evicted = true;
+                remove(subscriber);
+                if (subscriber.sendingSince == 0) {
+                    complete(subscriber);
                 }
             }
+        });
+    }
 
-            emitters.removeAll(deadEmitters);
+    private void broadcast(String name, Object data) {
+        byte[] bytes = encode(name, data);
+        if (bytes != null) {
+            sendRelayed(name, bytes);
         }
     }
 
-    public void sendToAll(RealtimeMetrics metrics) {
-        List<SseEmitter> deadEmitters = new CopyOnWriteArrayList<>();
+    private void relay(String name, Object data) {
+        byte[] bytes = encode(name, data);
+        if (bytes != null) {
+            realtimeRelay.publish(name, bytes);
+            sendRelayed(name, bytes);
+        }
+    }
 
-        for (SseEmitter emitter : allAgentsEmitters) {
-            try {
-                emitter.send(SseEmitter.event()
-                        .name("metrics")
-                        .data(metrics));
-            } catch (IOException e) {
-                deadEmitters.add(emitter);
+    private void dispatch(Runnable task) {
+        try {
+            dispatchExecutor.execute(task);
+        } catch (TaskRejectedException e) {
+            droppedFrames.incrementAndGet();
+            log.warn("SSE dispatch queue is full, dropping frame");
+        }
+    }
+
+    private void open(Subscriber subscriber, Supplier<List<EncodedRealtimeMetrics>> initialData) {
+        if (subscriber.flushIntervalNanos > 0) {
+            conflatedSubscribers.incrementAndGet();
+        }
+        subscriber.initialData = initialData;
+        subscriber.resumeFrom = replay.parse(subscriber.lastEventId);
+        Init init = null;
+        if (subscriber.resumeFrom == null || !replay.covers(subscriber.resumeFrom)) {
+            init = prepareInit(subscriber, initialData, true);
+            if (init == null) {
+                close(subscriber);
+                return;
             }
         }
+        submitAttach(subscriber, init, initialData, true);
+    }
+
+    private void submitAttach(Subscriber subscriber, Init init, Supplier<List<EncodedRealtimeMetrics>> initialData, boolean retry) {
+        try {
+            dispatchExecutor.execute(() -> attach(subscriber, init, initialData, retry));
+        } catch (TaskRejectedException e) {
+            log.warn("SSE dispatch queue is full, rejecting new connection");
+            close(subscriber);
+        }
+    }
 
-        allAgentsEmitters.removeAll(deadEmitters);
+    /**
+     * Runs on the dispatch thread, so no broadcast can slip between the replayed events and the
+     * first live one. The init snapshot is always built beforehand on another thread; if the events
+     * since it have already left the ring, a fresh one is built off this thread and attach retried.
+     */
+    private void attach(Subscriber subscriber, Init init, Supplier<List<EncodedRealtimeMetrics>> initialData, boolean retry) {
+        if (subscriber.closed.get()) {
+            return;
+        }
+        long from;
+        if (init != null && replay.covers(init.eventId)) {
+            from = init.eventId;
+        } else if (init == null && replay.covers(subscriber.resumeFrom)) {
+            from = subscriber.resumeFrom;
+        } else {
+            rebuild(subscriber, initialData, retry);
+            return;
+        }
 
-        sendToAgent(metrics.getAgentId(), metrics);
+        subscriber.replayCursor = from;
+        subscriber.replaying = true;
+        register(subscriber);
+        if (init != null) {
+            if (subscriber.lastEventId != null) {
+                resyncs.incrementAndGet();
+            }
+            seed(subscriber, init.metrics);
+            if (init.data != null && !subscriber.queue.offerLast(new QueuedFrame(
+                    frame("init", replay.eventId(init.eventId), init.data), FrameKind.INIT, null))) {
+                // Without its init frame the stream has no base state; make the client reconnect and resync.
+                log.warn("Could not queue init frame, closing SSE connection");
+                close(subscriber);
+                return;
+            }
+        }
+        subscriber.started = true;
+        pump(subscriber);
     }
 
-    public void sendToAll(List<RealtimeMetrics> metricsList) {
-        List<SseEmitter> deadEmitters = new CopyOnWriteArrayList<>();
+    private void rebuild(Subscriber subscriber, Supplier<List<EncodedRealtimeMetrics>> initialData, boolean retry) {
+        if (!retry) {
+            log.warn("Events outran the replay ring while attaching, closing SSE connection");
+            close(subscriber);
+            return;
+        }
+        try {
+            deliveryExecutor.execute(() -> {
+                Init init = prepareInit(subscriber, initialData, false);
+                if (init == null) {
+                    close(subscriber);
+                } else {
+                    submitAttach(subscriber, init, initialData, false);
+                }
+            });
+        } catch (TaskRejectedException e) {
+            close(subscriber);
+        }
+    }
 
-        for (SseEmitter emitter : allAgentsEmitters) {
-            try {
-                emitter.send(SseEmitter.event()
-                        .name("metrics-all")
-                        .data(metricsList));
-            } catch (IOException e) {
-                deadEmitters.add(emitter);
+    /**
+     * Replays the ring to a resuming subscriber a chunk at a time, on the dispatch thread. Live
+     * events are held back while it catches up, since they are in the ring too; the next chunk is
+     * queued once delivery has drained the previous one. A subscriber that falls out of the ring
+     * is closed so the client reconnects and resyncs.
+     */
+    private void pump(Subscriber subscriber) {
+        if (subscriber.closed.get() || !subscriber.replaying || subscriber.resyncing) {
+            return;
+        }
+        if (!replay.covers(subscriber.replayCursor)) {
+            resyncs.incrementAndGet();
+            log.warn("SSE subscriber fell out of the replay ring, closing connection");
+            close(subscriber);
+            return;
+        }
+        int limit = Math.max(1, queueCapacity / 2);
+        long head = replay.head();
+        long cursor = subscriber.replayCursor;
+        int replayed = 0;
+        while (cursor < head && subscriber.queue.size() < limit) {
+            ReplayEntry entry = replay.get(++cursor);
+            if (visible(subscriber, entry)) {
+                send(subscriber, entry);
+                replayed++;
             }
         }
+        subscriber.replayCursor = cursor;
+        replayedFrames.addAndGet(replayed);
+        if (cursor == head) {
+            subscriber.replaying = false;
+        }
+        schedule(subscriber);
+    }
 
-        allAgentsEmitters.removeAll(deadEmitters);
+    private Init prepareInit(Subscriber subscriber, Supplier<List<EncodedRealtimeMetrics>> initialData, boolean reuse) {
+        if (initialData == null) {
+            return new Init(replay.head(), List.of(), null);
+        }
+        Snapshot snapshot = snapshot(subscriber, initialData, reuse);
+        if (snapshot == null) {
+            return null;
+        }
+        List<EncodedRealtimeMetrics> initial = subscriber.filtered
+                ? snapshot.metrics.stream()
+                        .filter(metrics -> matches(subscriber, metrics, ownerOf(metrics.getAgentId())))
+                        .toList()
+                : snapshot.metrics;
+        return new Init(snapshot.eventId, initial, initData(subscriber, snapshot, initial));
     }
 
-    public void sendHeartbeat() {
-        List<SseEmitter> deadEmitters = new CopyOnWriteArrayList<>();
+    private Snapshot snapshot(Subscriber subscriber, Supplier<List<EncodedRealtimeMetrics>> initialData, boolean reuse) {
+        Snapshot cached = allAgentsSnapshot;
+        if (reuse && subscriber.fleet && cached != null && replay.covers(cached.eventId)) {
+            return cached;
+        }
+        try {
+            long eventId = replay.head();
+            List<EncodedRealtimeMetrics> metrics = initialData.get();
+            if (!subscriber.fleet) {
+                return new Snapshot(eventId, metrics, null);
+            }
+            Snapshot snapshot = new Snapshot(eventId, metrics, EncodedRealtimeMetrics.toJsonArray(metrics));
+            allAgentsSnapshot = snapshot;
+            return snapshot;
+        } catch (Exception e) {
+            log.error("Failed to send initial metrics", e);
+            return null;
+        }
+    }
 
-        for (SseEmitter emitter : allAgentsEmitters) {
-            try {
-                emitter.send(SseEmitter.event()
-                        .name("heartbeat")
-                        .data("ping"));
-            } catch (IOException e) {
-                deadEmitters.add(emitter);
+    private byte[] initData(Subscriber subscriber, Snapshot snapshot, List<EncodedRealtimeMetrics> initial) {
+        if (!subscriber.fleet) {
+            return initial.isEmpty() ? null : frameEncoder.project(initial.get(0), subscriber.fields);
+        }
+        if (!subscriber.filtered && subscriber.fields == null) {
+            return snapshot.data;
+        }
+        return encodeAll(subscriber, initial);
+    }
+
+    private byte[] encodeAll(Subscriber subscriber, List<EncodedRealtimeMetrics> snapshots) {
+        if (subscriber.fields == null) {
+            return EncodedRealtimeMetrics.toJsonArray(snapshots);
+        }
+        List<byte[]> projected = new ArrayList<>(snapshots.size());
+        for (EncodedRealtimeMetrics metrics : snapshots) {
+            projected.add(frameEncoder.project(metrics, subscriber.fields));
+        }
+        return MetricsFrameEncoder.toJsonArray(projected);
+    }
+
+    private static boolean matches(Subscriber subscriber, EncodedRealtimeMetrics metrics, Long ownerId) {
+        return (subscriber.agentIds == null || subscriber.agentIds.contains(metrics.getAgentId()))
+                && inGroup(subscriber, metrics, ownerId);
+    }
+
+    private static boolean inGroup(Subscriber subscriber, EncodedRealtimeMetrics metrics, Long ownerId) {
+        return subscriber.groupBy == null
+                || subscriber.group.equals(subscriber.groupBy.keyOf(metrics.getMetrics(), ownerId));
+    }
+
+    private Long ownerOf(Long agentId) {
+        AgentMetadataCache.AgentSummary agent = agentMetadataCache.find(agentId);
+        return agent != null ? agent.userId() : null;
+    }
+
+    /**
+     * Tracks each agent's OS, platform and owner. When one changes, group subscribers the agent
+     * has left are resynced so it disappears from their view, and those it has joined start from a
+     * keyframe. Runs on the dispatch thread.
+     */
+    private void regroup(EncodedRealtimeMetrics metrics, Long ownerId) {
+        Long agentId = metrics.getAgentId();
+        Map<FleetGroupBy, String> current = new EnumMap<>(FleetGroupBy.class);
+        for (FleetGroupBy groupBy : FleetGroupBy.values()) {
+            current.put(groupBy, groupBy.keyOf(metrics.getMetrics(), ownerId));
+        }
+        Map<FleetGroupBy, String> previous = memberships.put(agentId, current);
+        if (previous == null || previous.equals(current)) {
+            return;
+        }
+        List<Subscriber> affected = new ArrayList<>();
+        List<Subscriber> byAgent = agentSubscribers.get(agentId);
+        if (byAgent != null) {
+            byAgent.stream().filter(subscriber -> subscriber.groupBy != null).forEach(affected::add);
+        }
+        groupSubscribers.forEach((groupBy, byKey) -> {
+            String left = previous.get(groupBy);
+            String joined = current.get(groupBy);
+            if (!left.equals(joined)) {
+                affected.addAll(byKey.getOrDefault(left, List.of()));
+                affected.addAll(byKey.getOrDefault(joined, List.of()));
+            }
+        });
+        for (Subscriber subscriber : affected) {
+            boolean was = subscriber.group.equals(previous.get(subscriber.groupBy));
+            boolean is = subscriber.group.equals(current.get(subscriber.groupBy));
+            if (was && !is) {
+                resync(subscriber);
+            } else if (!was && is) {
+                subscriber.sent.remove(agentId);
             }
         }
+    }
 
-        allAgentsEmitters.removeAll(deadEmitters);
+    /**
+     * Replaces a live subscriber's view with a fresh init snapshot, built off the dispatch thread.
+     * Live events are held back meanwhile and replayed from the snapshot's id once it is queued.
+     */
+    private void resync(Subscriber subscriber) {
+        if (subscriber.initialData == null || subscriber.resyncing || subscriber.closed.get()) {
+            return;
+        }
+        subscriber.resyncing = true;
+        subscriber.replaying = true;
+        resyncs.incrementAndGet();
+        try {
+            deliveryExecutor.execute(() -> {
+                Init init = prepareInit(subscriber, subscriber.initialData, false);
+                try {
+                    dispatchExecutor.execute(() -> reinit(subscriber, init));
+                } catch (TaskRejectedException e) {
+                    close(subscriber);
+                }
+            });
+        } catch (TaskRejectedException e) {
+            close(subscriber);
+        }
+    }
 
-        for (Map.Entry<Long, List<SseEmitter>> entry : agentEmitters.entrySet()) {
-            List<SseEmitter> agentDeadEmitters = new CopyOnWriteArrayList<>();
+    private void reinit(Subscriber subscriber, Init init) {
+        subscriber.resyncing = false;
+        if (subscriber.closed.get()) {
+            return;
+        }
+        if (init == null || !replay.covers(init.eventId) || !reserve(subscriber, 1)) {
+            close(subscriber);
+            return;
+        }
+        subscriber.sent.clear();
+        subscriber.pending.clear();
+        seed(subscriber, init.metrics);
+        if (init.data != null) {
+            subscriber.queue.offerLast(new QueuedFrame(frame("init", replay.eventId(init.eventId), init.data),
+                    FrameKind.INIT, null));
+        }
+        subscriber.replayCursor = init.eventId;
+        pump(subscriber);
+    }
+
+    private void seed(Subscriber subscriber, List<EncodedRealtimeMetrics> snapshots) {
+        if (!subscriber.delta) {
+            return;
+        }
+        long now = System.nanoTime();
+        for (EncodedRealtimeMetrics snapshot : snapshots) {
+            subscriber.sent.put(snapshot.getAgentId(), new SentState(snapshot, now));
+        }
+    }
+
+    /**
+     * Metrics follow the subscription filter, alerts only reach the rule owner, and fleet-wide
+     * broadcasts only reach unfiltered streams.
+     */
+    private static boolean visible(Subscriber subscriber, ReplayEntry entry) {
+        if (entry.metrics != null) {
+            return matches(subscriber, entry.metrics, entry.userId);
+        }
+        if (entry.userId != null) {
+            return entry.userId.equals(subscriber.userId)
+                    && (subscriber.agentIds == null || subscriber.agentIds.contains(entry.agentId));
+        }
+        return !subscriber.filtered;
+    }
+
+    private void deliver(Subscriber subscriber, ReplayEntry entry) {
+        if (!subscriber.replaying) {
+            send(subscriber, entry);
+        }
+    }
+
+    private void send(Subscriber subscriber, ReplayEntry entry) {
+        EncodedRealtimeMetrics metrics = entry.metrics;
+        if (metrics == null) {
+            enqueue(subscriber, entry.frame);
+            return;
+        }
+        if (subscriber.flushIntervalNanos > 0) {
+            subscriber.pending.put(metrics.getAgentId(), metrics);
+            subscriber.pendingEventId = entry.id;
+            return;
+        }
+        if (!reserve(subscriber, 1)) {
+            return;
+        }
+        Long agentId = metrics.getAgentId();
+        byte[] delta = subscriber.delta ? nextDelta(subscriber, metrics, System.nanoTime()) : null;
+        if (delta != null) {
+            enqueue(subscriber, new QueuedFrame(frame("metrics-delta", replay.eventId(entry.id), delta),
+                    FrameKind.DELTA, agentId));
+        } else if (subscriber.fields != null) {
+            enqueue(subscriber, new QueuedFrame(frame("metrics", replay.eventId(entry.id),
+                    frameEncoder.project(metrics, subscriber.fields)), FrameKind.METRICS, agentId));
+        } else {
+            enqueue(subscriber, new QueuedFrame(entry.frame, FrameKind.METRICS, agentId));
+        }
+    }
+
+    private byte[] nextDelta(Subscriber subscriber, EncodedRealtimeMetrics metrics, long now) {
+        SentState sent = subscriber.sent.get(metrics.getAgentId());
+        if (sent == null || now - sent.keyframeAt >= keyframeIntervalNanos) {
+            subscriber.sent.put(metrics.getAgentId(), new SentState(metrics, now));
+            return null;
+        }
+        byte[] delta = frameEncoder.delta(sent.base, metrics, subscriber.fields);
+        if (delta == null) {
+            sent.keyframeAt = now;
+        }
+        sent.base = metrics;
+        return delta;
+    }
+
+    private void enqueue(Subscriber subscriber, Set<ResponseBodyEmitter.DataWithMediaType> frame) {
+        enqueue(subscriber, new QueuedFrame(frame, FrameKind.OTHER, null));
+    }
+
+    private void enqueue(Subscriber subscriber, QueuedFrame frame) {
+        if (!reserve(subscriber, 1)) {
+            return;
+        }
+        if (!subscriber.queue.offerLast(frame)) {
+            droppedFrames.incrementAndGet();
+        }
+        schedule(subscriber);
+    }
+
+    /**
+     * Makes room for the given number of frames, applying the slow-consumer policy. Returns false if
+     * the subscriber is closed. Only the dispatch thread adds to a queue, so the room stays free until
+     * the caller enqueues.
+     */
+    private boolean reserve(Subscriber subscriber, int frames) {
+        while (!subscriber.closed.get() && subscriber.queue.remainingCapacity() < frames) {
+            droppedFrames.incrementAndGet();
+            if (slowConsumerPolicy == SlowConsumerPolicy.DISCONNECT) {
+                slowConsumerDisconnects.incrementAndGet();
+                log.warn("Disconnecting slow SSE subscriber after {} queued frames", queueCapacity);
+                close(subscriber);
+                return false;
+            }
+            QueuedFrame evicted = evictOldest(subscriber);
+            if (evicted == null) {
+                log.warn("SSE subscriber queue holds only init frames, closing connection");
+                close(subscriber);
+                return false;
+            }
+            if ((evicted.kind == FrameKind.METRICS || evicted.kind == FrameKind.DELTA) && subscriber.delta) {
+                invalidate(subscriber, evicted.agentId);
+            }
+        }
+        return !subscriber.closed.get();
+    }
+
+    /**
+     * Removes the oldest frame that is not an init frame; those carry the base state every later
+     * frame builds on and are never evicted.
+     */
+    private static QueuedFrame evictOldest(Subscriber subscriber) {
+        Iterator<QueuedFrame> frames = subscriber.queue.iterator();
+        while (frames.hasNext()) {
+            QueuedFrame frame = frames.next();
+            if (frame.kind != FrameKind.INIT) {
+                frames.remove();
+                return frame;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Drops every queued delta that builds on an evicted metrics frame and forgets what was sent for
+     * those agents, so their next update goes out as a keyframe. A null agent stands for a batch.
+     */
+    private void invalidate(Subscriber subscriber, Long agentId) {
+        boolean all = agentId == null
+                || subscriber.queue.stream().anyMatch(frame -> frame.kind == FrameKind.DELTA && frame.agentId == null);
+        int before = subscriber.queue.size();
+        subscriber.queue.removeIf(frame -> frame.kind == FrameKind.DELTA && (all || agentId.equals(frame.agentId)));
+        droppedFrames.addAndGet(Math.max(0, before - subscriber.queue.size()));
+        if (all) {
+            subscriber.sent.clear();
+        } else {
+            subscriber.sent.remove(agentId);
+        }
+    }
 
-            for (SseEmitter emitter : entry.getValue()) {
+    private void schedule(Subscriber subscriber) {
+        if (!subscriber.started || !subscriber.draining.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            deliveryExecutor.execute(() -> drain(subscriber));
+        } catch (TaskRejectedException e) {
+            subscriber.draining.set(false);
+            log.warn("SSE delivery executor rejected drain; frames stay queued until the next send");
+        }
+    }
+
+    private void drain(Subscriber subscriber) {
+        do {
+            QueuedFrame frame;
+            while (!subscriber.closed.get() && (frame = subscriber.queue.pollFirst()) != null) {
+                subscriber.sendingSince = System.nanoTime() | 1;
                 try {
-                    emitter.send(SseEmitter.event()
-                            .name("heartbeat")
-                            .data("ping"));
-                } catch (IOException e) {
-                    agentDeadEmitters.add(emitter);
+                    subscriber.emitter.send(frame.data);
+                    deliveredFrames.incrementAndGet();
+                } catch (IOException | IllegalStateException e) {
+                    remove(subscriber);
+                    return;
+                } finally {
+                    subscriber.sendingSince = 0;
+                    if (subscriber.evicted) {
+                        complete(subscriber);
+                    }
                 }
             }
+            subscriber.draining.set(false);
+        } while (!subscriber.queue.isEmpty() && subscriber.draining.compareAndSet(false, true));
+        if (subscriber.replaying) {
+            dispatch(() -> pump(subscriber));
+        }
+    }
 
-            entry.getValue().removeAll(agentDeadEmitters);
+    private void close(Subscriber subscriber) {
+        remove(subscriber);
+        complete(subscriber);
+    }
+
+    private void complete(Subscriber subscriber) {
+        if (!subscriber.completed.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            subscriber.emitter.complete();
+        } catch (Exception e) {
+            log.debug("Failed to complete SSE connection: {}", e.getMessage());
         }
     }
 
-    public int getConnectionCount() {
-        int count = allAgentsEmitters.size();
-        for (List<SseEmitter> emitters : agentEmitters.values()) {
-            count += emitters.size();
+    private void register(Subscriber subscriber) {
+        subscribers.add(subscriber);
+        if (subscriber.agentIds != null) {
+            subscriber.agentIds.forEach(agentId -> route(agentSubscribers, agentId, subscriber));
+        } else if (subscriber.groupBy != null) {
+            route(groupSubscribers.computeIfAbsent(subscriber.groupBy, k -> new ConcurrentHashMap<>()),
+                    subscriber.group, subscriber);
+        } else {
+            allAgentsSubscribers.add(subscriber);
+        }
+        if (subscriber.closed.get()) {
+            unregister(subscriber);
         }
-        return count;
     }
 
-    private void removeEmitter(Long agentId, SseEmitter emitter) {
-        List<SseEmitter> emitters = agentEmitters.get(agentId);
-        if (emitters != null) {
-            emitters.remove(emitter);
-            if (emitters.isEmpty()) {
-                agentEmitters.remove(agentId);
+    private void remove(Subscriber subscriber) {
+        if (!subscriber.closed.compareAndSet(false, true)) {
+            return;
+        }
+        subscriber.queue.clear();
+        if (subscriber.flushIntervalNanos > 0) {
+            conflatedSubscribers.decrementAndGet();
+        }
+        unregister(subscriber);
+    }
+
+    private void unregister(Subscriber subscriber) {
+        subscribers.remove(subscriber);
+        if (subscriber.agentIds != null) {
+            subscriber.agentIds.forEach(agentId -> unroute(agentSubscribers, agentId, subscriber));
+        } else if (subscriber.groupBy != null) {
+            Map<String, List<Subscriber>> byKey = groupSubscribers.get(subscriber.groupBy);
+            if (byKey != null) {
+                unroute(byKey, subscriber.group, subscriber);
             }
+        } else {
+            allAgentsSubscribers.remove(subscriber);
+        }
+    }
+
+    private static <K> void route(Map<K, List<Subscriber>> routes, K key, Subscriber subscriber) {
+        routes.compute(key, (k, list) -> {
+            List<Subscriber> routed = list != null ? list : new CopyOnWriteArrayList<>();
+            routed.add(subscriber);
+            return routed;
+        });
+    }
+
+    private static <K> void unroute(Map<K, List<Subscriber>> routes, K key, Subscriber subscriber) {
+        routes.computeIfPresent(key, (k, list) -> {
+            list.remove(subscriber);
+            return list.isEmpty() ? null : list;
+        });
+    }
+
+    private static Set<ResponseBodyEmitter.DataWithMediaType> frame(String name, String eventId, Object data) {
+        SseEmitter.SseEventBuilder event = SseEmitter.event().name(name);
+        if (eventId != null) {
+            event.id(eventId);
+        }
+        if (data instanceof byte[] bytes) {
+            return event.data(bytes, MediaType.APPLICATION_JSON).build();
+        }
+        return event.data(data).build();
+    }
+
+    private byte[] encode(String name, Object data) {
+        try {
+            return objectMapper.writeValueAsBytes(data);
+        } catch (JsonProcessingException e) {
+            log.error("Failed to serialize SSE {} event", name, e);
+            return null;
+        }
+    }
+
+    public enum SlowConsumerPolicy {
+        DROP_OLDEST,
+        DISCONNECT
+    }
+
+    private static final class Subscriber {
+        private final SseEmitter emitter;
+        private final Long userId;
+        private final boolean fleet;
+        private final Set<Long> agentIds;
+        private final FleetGroupBy groupBy;
+        private final String group;
+        private final Set<String> fields;
+        private final boolean filtered;
+        private final LinkedBlockingDeque<QueuedFrame> queue;
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private final AtomicBoolean completed = new AtomicBoolean();
+        private final long flushIntervalNanos;
+        private final Map<Long, EncodedRealtimeMetrics> pending = new LinkedHashMap<>();
+        private final boolean delta;
+        private final Map<Long, SentState> sent = new ConcurrentHashMap<>();
+        private final String lastEventId;
+        private Long resumeFrom;
+        private long nextFlushAt = System.nanoTime();
+        private long pendingEventId;
+        private volatile boolean started;
+        private volatile boolean replaying;
+        private long replayCursor;
+        private boolean resyncing;
+        private volatile Supplier<List<EncodedRealtimeMetrics>> initialData;
+        private volatile boolean evicted;
+        private volatile long sendingSince;
+
+        private Subscriber(SseEmitter emitter, Long agentId, int capacity, StreamSubscription subscription) {
+            this.emitter = emitter;
+            this.userId = subscription.getUserId();
+            this.fleet = agentId == null;
+            this.agentIds = agentId != null ? Set.of(agentId) : subscription.getAgentIds();
+            this.groupBy = subscription.getGroupBy();
+            this.group = subscription.getGroup();
+            this.fields = subscription.getFields();
+            this.filtered = agentIds != null || groupBy != null;
+            this.queue = new LinkedBlockingDeque<>(capacity);
+            this.flushIntervalNanos = subscription.isConflated()
+                    ? (long) (TimeUnit.SECONDS.toNanos(1) / subscription.getMaxRate())
+                    : 0;
+            this.delta = subscription.isDelta();
+            this.lastEventId = subscription.getLastEventId();
+        }
+    }
+
+    private record Snapshot(long eventId, List<EncodedRealtimeMetrics> metrics, byte[] data) {
+    }
+
+    private record Init(long eventId, List<EncodedRealtimeMetrics> metrics, byte[] data) {
+    }
+
+    record ReplayEntry(long id, EncodedRealtimeMetrics metrics, Long userId, Long agentId,
+                       Set<ResponseBodyEmitter.DataWithMediaType> frame) {
+    }
+
+    /**
+     * Ring of the last events by sequence number. Only the dispatch thread appends or reads entries;
+     * other threads may only check whether a sequence is still replayable. Event ids sent to clients
+     * are {@code <instanceId>-<sequence>}, so an id issued by another instance or an earlier process
+     * never resolves to an entry here.
+     */
+    static final class ReplayBuffer {
+        private final ReplayEntry[] entries;
+        private final String instanceId;
+        private volatile long head;
+
+        ReplayBuffer(int capacity, String instanceId) {
+            this.entries = new ReplayEntry[capacity];
+            this.instanceId = instanceId;
+        }
+
+        long head() {
+            return head;
+        }
+
+        ReplayEntry append(EncodedRealtimeMetrics metrics, Long userId, Long agentId, String name, byte[] data) {
+            long id = head + 1;
+            ReplayEntry entry = new ReplayEntry(id, metrics, userId, agentId, frame(name, eventId(id), data));
+            entries[(int) (id % entries.length)] = entry;
+            head = id;
+            return entry;
+        }
+
+        boolean covers(long sequence) {
+            long current = head;
+            return sequence >= 0 && sequence <= current && current - sequence <= entries.length;
+        }
+
+        ReplayEntry get(long sequence) {
+            return entries[(int) (sequence % entries.length)];
+        }
+
+        String eventId(long sequence) {
+            return instanceId + '-' + sequence;
+        }
+
+        /**
+         * Returns the sequence a {@code Last-Event-ID} points at, or null if it was issued by another
+         * instance or cannot be read, in which case the client is resynced.
+         */
+        Long parse(String eventId) {
+            if (eventId == null) {
+                return null;
+            }
+            int separator = instanceId.length();
+            if (!eventId.startsWith(instanceId) || eventId.length() <= separator + 1
+                    || eventId.charAt(separator) != '-') {
+                return null;
+            }
+            try {
+                return Long.parseLong(eventId.substring(separator + 1));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+
+    private enum FrameKind {
+        INIT,
+        METRICS,
+        DELTA,
+        OTHER
+    }
+
+    private record QueuedFrame(Set<ResponseBodyEmitter.DataWithMediaType> data, FrameKind kind, Long agentId) {
+    }
+
+    private static final class SentState {
+        private EncodedRealtimeMetrics base;
+        private long keyframeAt;
+
+        private SentState(EncodedRealtimeMetrics base, long keyframeAt) {
+            this.base = base;
+            this.keyframeAt = keyframeAt;
         }
     }
 }
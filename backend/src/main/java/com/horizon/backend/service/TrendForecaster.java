@@ -0,0 +1,129 @@
+package com.horizon.backend.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+@Component
+public class TrendForecaster {
+
+    private static final int MIN_POINTS = 6;
+    private static final int HOURS_PER_DAY = 24;
+    private static final int MIN_SEASONAL_SPAN_HOURS = 2 * HOURS_PER_DAY;
+
+    /**
+     * Fits a Theil-Sen trend (median of pairwise slopes) to hourly points, which tolerates spikes
+     * and log rotations far better than least squares. With two or more days of data the median
+     * residual per hour-of-day is removed first, so daily cycles do not bend the slope; the
+     * returned peak offset is the highest hour-of-day bump above the trend.
+     *
+     * @param hours epoch hours of each point, ascending
+     * @return the fitted trend, or null when there are too few points
+     */
+    public Trend fit(long[] hours, double[] values) {
+        int size = hours.length;
+        if (size < MIN_POINTS) {
+            return null;
+        }
+        long origin = hours[size - 1];
+        double[] x = new double[size];
+        for (int i = 0; i < size; i++) {
+            x[i] = hours[i] - origin;
+        }
+
+        double[] line = theilSen(x, values);
+        double[] seasonal = null;
+        if (origin - hours[0] >= MIN_SEASONAL_SPAN_HOURS) {
+            seasonal = hourOfDayOffsets(hours, x, values, line);
+            double[] adjusted = new double[size];
+            for (int i = 0; i < size; i++) {
+                adjusted[i] = values[i] - seasonal[(int) Math.floorMod(hours[i], (long) HOURS_PER_DAY)];
+            }
+            line = theilSen(x, adjusted);
+        }
+
+        double peak = 0;
+        if (seasonal != null) {
+            for (double offset : seasonal) {
+                peak = Math.max(peak, offset);
+            }
+        }
+        return new Trend(origin, line[0], line[1], peak, seasonal != null, size);
+    }
+
+    private static double[] hourOfDayOffsets(long[] hours, double[] x, double[] values, double[] line) {
+        List<List<Double>> residuals = new ArrayList<>(HOURS_PER_DAY);
+        for (int h = 0; h < HOURS_PER_DAY; h++) {
+            residuals.add(new ArrayList<>());
+        }
+        for (int i = 0; i < x.length; i++) {
+            double residual = values[i] - (line[0] + line[1] * x[i]);
+            residuals.get((int) Math.floorMod(hours[i], (long) HOURS_PER_DAY)).add(residual);
+        }
+
+        double[] offsets = new double[HOURS_PER_DAY];
+        for (int h = 0; h < HOURS_PER_DAY; h++) {
+            List<Double> bucket = residuals.get(h);
+            offsets[h] = bucket.isEmpty() ? 0 : median(bucket.stream().mapToDouble(Double::doubleValue).toArray());
+        }
+        double center = median(offsets.clone());
+        for (int h = 0; h < HOURS_PER_DAY; h++) {
+            offsets[h] -= center;
+        }
+        return offsets;
+    }
+
+    private static double[] theilSen(double[] x, double[] y) {
+        int size = x.length;
+        double[] slopes = new double[size * (size - 1) / 2];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            for (int j = i + 1; j < size; j++) {
+                double dx = x[j] - x[i];
+                if (dx != 0) {
+                    slopes[count++] = (y[j] - y[i]) / dx;
+                }
+            }
+        }
+        double slope = count > 0 ? median(Arrays.copyOf(slopes, count)) : 0;
+
+        double[] intercepts = new double[size];
+        for (int i = 0; i < size; i++) {
+            intercepts[i] = y[i] - slope * x[i];
+        }
+        return new double[]{median(intercepts), slope};
+    }
+
+    private static double median(double[] values) {
+        Arrays.sort(values);
+        int middle = values.length / 2;
+        return values.length % 2 == 1 ? values[middle] : (values[middle - 1] + values[middle]) / 2;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Trend {
+        private final long originHour;
+        private final double level;
+        private final double slopePerHour;
+        private final double seasonalPeak;
+        private final boolean seasonal;
+        private final int samples;
+
+        public double valueAt(double epochHour) {
+            return level + slopePerHour * (epochHour - originHour);
+        }
+
+        public Double hoursUntil(double limit, double nowEpochHour) {
+            if (slopePerHour <= 1e-6) {
+                return null;
+            }
+            double remaining = (limit - seasonalPeak - valueAt(nowEpochHour)) / slopePerHour;
+            return Math.max(0, remaining);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.horizon.backend.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.UnknownHostException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps alert webhooks from reaching internal services. A URL must be http(s) with a host, and
+ * unless the host is explicitly allowlisted, every address it resolves to must be public: loopback,
+ * link-local, private, carrier-grade NAT, unique-local and multicast ranges are rejected. Checked
+ * when a rule is saved and again before each delivery, since DNS answers can change in between.
+ */
+@Slf4j
+@Component
+public class WebhookUrlValidator {
+
+    private final Set<String> allowedHosts;
+
+    public WebhookUrlValidator(@Value("${alerts.webhook.allowed-hosts:}") List<String> allowedHosts) {
+        this.allowedHosts = allowedHosts.stream()
+                .map(String::trim)
+                .filter(host -> !host.isEmpty())
+                .map(host -> host.toLowerCase(Locale.ROOT))
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    public boolean isAllowed(String url) {
+        URI uri;
+        try {
+            uri = new URI(url);
+        } catch (URISyntaxException e) {
+            return false;
+        }
+        String scheme = uri.getScheme();
+        String host = uri.getHost();
+        if (scheme == null || host == null || uri.getUserInfo() != null
+                || !(scheme.equalsIgnoreCase("http") || scheme.equalsIgnoreCase("https"))) {
+            return false;
+        }
+        if (allowedHosts.contains(host.toLowerCase(Locale.ROOT))) {
+            return true;
+        }
+        try {
+            for (InetAddress address : InetAddress.getAllByName(host)) {
+                if (!isPublic(address)) {
+                    log.debug("Webhook host {} resolves to non-public address {}", host, address.getHostAddress());
+                    return false;
+                }
+            }
+            return true;
+        } catch (UnknownHostException e) {
+            return false;
+        }
+    }
+
+    private static boolean isPublic(InetAddress address) {
+        if (address.isLoopbackAddress() || address.isAnyLocalAddress() || address.isLinkLocalAddress()
+                || address.isSiteLocalAddress() || address.isMulticastAddress()) {
+            return false;
+        }
+        byte[] bytes = address.getAddress();
+        if (bytes.length == 4) {
+            int first = bytes[0] & 0xff;
+            int second = bytes[1] & 0xff;
+            return first != 0 && !(first == 100 && second >= 64 && second < 128);
+        }
+        return (bytes[0] & 0xfe) != 0xfc;
+    }
+}
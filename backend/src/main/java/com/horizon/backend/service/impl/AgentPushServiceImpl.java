@@ -1,15 +1,16 @@
 package com.horizon.backend.service.impl;
 
+import com.horizon.backend.common.AfterCommit;
 import com.horizon.backend.dto.agent.AgentMetricsPayload;
 import com.horizon.backend.dto.agent.AgentPushRequest;
 import com.horizon.backend.dto.agent.AgentRegisterRequest;
 import com.horizon.backend.dto.agent.AgentRegisterResponse;
 import com.horizon.backend.dto.metrics.MetricsRequest;
-import com.horizon.backend.dto.metrics.RealtimeMetrics;
 import com.horizon.backend.entity.Agent;
 import com.horizon.backend.entity.ClientKey;
 import com.horizon.backend.exception.BadRequestException;
 import com.horizon.backend.repository.AgentRepository;
+import com.horizon.backend.service.AgentMetadataCache;
 import com.horizon.backend.service.ClientKeyService;
 import com.horizon.backend.service.AgentPushService;
 import com.horizon.backend.service.MetricsService;
@@ -32,6 +33,7 @@ public class AgentPushServiceImpl implements AgentPushService {
     private final ClientKeyService clientKeyService;
     private final MetricsService metricsService;
     private final SseEmitterService sseEmitterService;
+    private final AgentMetadataCache agentMetadataCache;
 
     @Override
     @Transactional
@@ -91,6 +93,7 @@ public class AgentPushServiceImpl implements AgentPushService {
             log.info("New agent registered: {} (nodeId: {}, userId: {})",
                     agent.getName(), request.getNodeId(), clientKey.getUserId());
         }
+        AfterCommit.run(agentMetadataCache::invalidate);
 
         return AgentRegisterResponse.builder()
                 .id(agent.getId())
@@ -129,8 +132,7 @@ public class AgentPushServiceImpl implements AgentPushService {
 
         metricsService.saveMetrics(agent.getId(), metricsRequest);
 
-        RealtimeMetrics realtimeMetrics = metricsService.getRealtimeMetrics(agent.getId());
-        sseEmitterService.sendToAll(realtimeMetrics);
+        sseEmitterService.sendToAll(metricsService.getRealtimeMetrics(agent.getId()));
     }
 
     @Override
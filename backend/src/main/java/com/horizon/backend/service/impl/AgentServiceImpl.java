@@ -1,10 +1,16 @@
 package com.horizon.backend.service.impl;
 
+import com.horizon.backend.common.AfterCommit;
 import com.horizon.backend.dto.agent.AgentDto;
 import com.horizon.backend.entity.Agent;
 import com.horizon.backend.exception.ResourceNotFoundException;
 import com.horizon.backend.repository.AgentRepository;
+import com.horizon.backend.service.AgentMetadataCache;
+import com.horizon.backend.service.AgentPresenceTracker;
 import com.horizon.backend.service.AgentService;
+import com.horizon.backend.service.AlertEngine;
+import com.horizon.backend.service.MetricsLeaderboard;
+import com.horizon.backend.service.RealtimeSnapshotIndex;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -18,6 +24,11 @@ import java.util.List;
 public class AgentServiceImpl implements AgentService {
 
     private final AgentRepository agentRepository;
+    private final RealtimeSnapshotIndex realtimeSnapshotIndex;
+    private final MetricsLeaderboard metricsLeaderboard;
+    private final AlertEngine alertEngine;
+    private final AgentMetadataCache agentMetadataCache;
+    private final AgentPresenceTracker agentPresenceTracker;
 
     @Override
     @Transactional(readOnly = true)
@@ -43,6 +54,22 @@ public class AgentServiceImpl implements AgentService {
                 .toList();
     }
 
+    @Override
+    @Transactional
+    public AgentDto updateHeartbeatTimeout(Long id, Integer timeoutSeconds) {
+        Agent agent = agentRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Agent", "id", id));
+
+        agent.setHeartbeatTimeoutSeconds(timeoutSeconds);
+        Agent savedAgent = agentRepository.save(agent);
+        AfterCommit.run(() -> {
+            agentMetadataCache.invalidate();
+            agentPresenceTracker.setTimeout(id, timeoutSeconds);
+        });
+        log.info("Heartbeat timeout for agent {} set to {}", agent.getName(), timeoutSeconds);
+        return AgentDto.from(savedAgent);
+    }
+
     @Override
     @Transactional
     public void deleteAgent(Long id) {
@@ -50,6 +77,13 @@ public class AgentServiceImpl implements AgentService {
                 .orElseThrow(() -> new ResourceNotFoundException("Agent", "id", id));
 
         agentRepository.delete(agent);
+        AfterCommit.run(() -> {
+            realtimeSnapshotIndex.remove(id);
+            metricsLeaderboard.remove(id);
+            alertEngine.removeAgent(id);
+            agentMetadataCache.invalidate();
+            agentPresenceTracker.remove(id);
+        });
         log.info("Agent deleted successfully: {}", agent.getName());
     }
 }
@@ -0,0 +1,141 @@
+package com.horizon.backend.service.impl;
+
+import com.horizon.backend.dto.alert.AlertEvent;
+import com.horizon.backend.dto.alert.AlertRuleDto;
+import com.horizon.backend.dto.alert.AlertRuleRequest;
+import com.horizon.backend.dto.metrics.MetricType;
+import com.horizon.backend.entity.AlertOperator;
+import com.horizon.backend.entity.AlertRule;
+import com.horizon.backend.entity.AlertRuleType;
+import com.horizon.backend.exception.BadRequestException;
+import com.horizon.backend.exception.ResourceNotFoundException;
+import com.horizon.backend.repository.AgentRepository;
+import com.horizon.backend.repository.AlertRuleRepository;
+import com.horizon.backend.service.AlertEngine;
+import com.horizon.backend.service.AlertRuleService;
+import com.horizon.backend.service.WebhookUrlValidator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AlertRuleServiceImpl implements AlertRuleService {
+
+    private static final String PRESENCE_METRIC = "status";
+
+    private final AlertRuleRepository alertRuleRepository;
+    private final AgentRepository agentRepository;
+    private final AlertEngine alertEngine;
+    private final WebhookUrlValidator webhookUrlValidator;
+
+    @Override
+    @Transactional
+    public AlertRuleDto createRule(Long userId, AlertRuleRequest request) {
+        AlertRule rule = AlertRule.builder()
+                .userId(userId)
+                .build();
+        apply(userId, rule, request);
+
+        AlertRule savedRule = alertRuleRepository.save(rule);
+        log.info("Created alert rule {} for user: {}", savedRule.getId(), userId);
+        reloadRules();
+        return AlertRuleDto.from(savedRule);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<AlertRuleDto> getRules(Long userId) {
+        return alertRuleRepository.findByUserIdOrderByIdAsc(userId).stream()
+                .map(AlertRuleDto::from)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    @Transactional
+    public AlertRuleDto updateRule(Long userId, Long ruleId, AlertRuleRequest request) {
+        AlertRule rule = alertRuleRepository.findByIdAndUserId(ruleId, userId)
+                .orElseThrow(() -> new ResourceNotFoundException("AlertRule", "id", ruleId));
+        apply(userId, rule, request);
+
+        AlertRule savedRule = alertRuleRepository.saveAndFlush(rule);
+        log.info("Updated alert rule {} for user: {}", ruleId, userId);
+        reloadRules();
+        return AlertRuleDto.from(savedRule);
+    }
+
+    @Override
+    @Transactional
+    public void deleteRule(Long userId, Long ruleId) {
+        AlertRule rule = alertRuleRepository.findByIdAndUserId(ruleId, userId)
+                .orElseThrow(() -> new ResourceNotFoundException("AlertRule", "id", ruleId));
+        alertRuleRepository.delete(rule);
+        log.info("Deleted alert rule {} for user: {}", ruleId, userId);
+        reloadRules();
+    }
+
+    @Override
+    public List<AlertEvent> getActiveAlerts(Long userId) {
+        return alertEngine.getActiveAlerts(userId);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    @EventListener(ApplicationReadyEvent.class)
+    public void reloadRules() {
+        alertEngine.reload(alertRuleRepository.findByEnabledTrue());
+    }
+
+    private void apply(Long userId, AlertRule rule, AlertRuleRequest request) {
+        if (request.getAgentId() != null) {
+            agentRepository.findById(request.getAgentId())
+                    .filter(agent -> userId.equals(agent.getUserId()))
+                    .orElseThrow(() -> new ResourceNotFoundException("Agent", "id", request.getAgentId()));
+        }
+        if (request.getWebhookUrl() != null && !webhookUrlValidator.isAllowed(request.getWebhookUrl())) {
+            throw new BadRequestException("alert rule", "webhookUrl", request.getWebhookUrl());
+        }
+        if (request.getType() != AlertRuleType.EWMA_DEVIATION && request.getEwmaAlpha() != null) {
+            throw new BadRequestException("alert rule", "ewmaAlpha", request.getEwmaAlpha());
+        }
+
+        rule.setName(request.getName());
+        rule.setAgentId(request.getAgentId());
+        rule.setType(request.getType());
+        if (request.getType() == AlertRuleType.AGENT_OFFLINE) {
+            if (request.getForSeconds() != null && request.getForSeconds() > 0) {
+                throw new BadRequestException("alert rule", "forSeconds", request.getForSeconds());
+            }
+            rule.setMetric(PRESENCE_METRIC);
+            rule.setOperator(AlertOperator.BELOW);
+            rule.setThreshold(1.0);
+        } else {
+            if (request.getMetric() == null || request.getMetric().isBlank()) {
+                throw new BadRequestException("Metric is required");
+            }
+            if (request.getOperator() == null) {
+                throw new BadRequestException("Operator is required");
+            }
+            if (request.getThreshold() == null) {
+                throw new BadRequestException("Threshold is required");
+            }
+            if (request.getType() == AlertRuleType.EWMA_DEVIATION && request.getThreshold() <= 0) {
+                throw new BadRequestException("alert rule", "threshold", request.getThreshold());
+            }
+            rule.setMetric(MetricType.from(request.getMetric()).getKey());
+            rule.setOperator(request.getOperator());
+            rule.setThreshold(request.getThreshold());
+        }
+        rule.setForSeconds(request.getForSeconds() != null ? request.getForSeconds() : 0);
+        rule.setEwmaAlpha(request.getEwmaAlpha());
+        rule.setWebhookUrl(request.getWebhookUrl());
+        rule.setEnabled(request.getEnabled() == null || request.getEnabled());
+    }
+}
@@ -0,0 +1,251 @@
+package com.horizon.backend.service.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.horizon.backend.dto.metrics.AgentForecast;
+import com.horizon.backend.dto.metrics.ResourceForecast;
+import com.horizon.backend.dto.metrics.RollupTrendView;
+import com.horizon.backend.entity.Agent;
+import com.horizon.backend.exception.ResourceNotFoundException;
+import com.horizon.backend.repository.AgentMetricsRollupRepository;
+import com.horizon.backend.repository.AgentRepository;
+import com.horizon.backend.service.MetricsForecastService;
+import com.horizon.backend.service.TrendForecaster;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class MetricsForecastServiceImpl implements MetricsForecastService {
+
+    private static final double FULL_USAGE = 100.0;
+    private static final int AGENTS_PER_TASK = 8;
+    private static final TypeReference<Map<String, double[]>> MOUNT_USAGE_TYPE = new TypeReference<>() {
+    };
+
+    private final AgentMetricsRollupRepository rollupRepository;
+    private final AgentRepository agentRepository;
+    private final TrendForecaster trendForecaster;
+    private final ObjectMapper objectMapper;
+
+    private final Map<Long, CachedForecast> forecasts = new ConcurrentHashMap<>();
+
+    @Value("${metrics.forecast.lookback-days:14}")
+    private int lookbackDays;
+
+    @Override
+    @Transactional(readOnly = true)
+    public void refreshForecasts() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime from = now.minusDays(lookbackDays).truncatedTo(ChronoUnit.HOURS);
+        Map<Long, List<RollupTrendView>> byAgent = rollupRepository
+                .findTrendByBucketStartGreaterThanEqualOrderByAgentIdAscBucketStartAsc(from)
+                .stream()
+                .collect(Collectors.groupingBy(RollupTrendView::getAgentId, LinkedHashMap::new, Collectors.toList()));
+
+        forecasts.keySet().retainAll(byAgent.keySet());
+
+        List<AgentRollups> changed = new ArrayList<>();
+        byAgent.forEach((agentId, rollups) -> {
+            String fingerprint = fingerprint(rollups);
+            CachedForecast cached = forecasts.get(agentId);
+            if (cached == null || !cached.fingerprint.equals(fingerprint)) {
+                changed.add(new AgentRollups(agentId, fingerprint, rollups));
+            }
+        });
+        if (changed.isEmpty()) {
+            return;
+        }
+
+        Map<Long, String> agentNames = agentRepository.findAllById(
+                        changed.stream().map(AgentRollups::agentId).toList())
+                .stream()
+                .collect(Collectors.toMap(Agent::getId, Agent::getName));
+
+        List<CachedForecast> computed = ForkJoinPool.commonPool()
+                .invoke(new ForecastTask(changed, 0, changed.size(), agentNames, now));
+        computed.forEach(forecast -> forecasts.put(forecast.forecast.getAgentId(), forecast));
+        log.debug("Recomputed forecasts for {} of {} agents", computed.size(), byAgent.size());
+    }
+
+    @Override
+    public AgentForecast getForecast(Long agentId) {
+        CachedForecast cached = forecasts.get(agentId);
+        if (cached != null) {
+            return cached.forecast;
+        }
+        Agent agent = agentRepository.findById(agentId)
+                .orElseThrow(() -> new ResourceNotFoundException("Agent", "id", agentId));
+        return AgentForecast.builder()
+                .agentId(agent.getId())
+                .agentName(agent.getName())
+                .forecasts(List.of())
+                .build();
+    }
+
+    @Override
+    public List<AgentForecast> getForecasts() {
+        return forecasts.values().stream()
+                .map(cached -> cached.forecast)
+                .sorted(Comparator.comparing(AgentForecast::getHoursToFull,
+                        Comparator.nullsLast(Comparator.naturalOrder())))
+                .toList();
+    }
+
+    private AgentForecast forecast(AgentRollups agent, String agentName, LocalDateTime now) {
+        List<RollupTrendView> rollups = agent.rollups();
+        double nowHour = now.toEpochSecond(ZoneOffset.UTC) / 3600.0;
+
+        List<ResourceForecast> results = new ArrayList<>();
+        addForecast(results, "memory", null, rollups, RollupTrendView::getMemoryUsageAvg, nowHour, now);
+        addForecast(results, "disk", null, rollups, RollupTrendView::getDiskUsageAvg, nowHour, now);
+
+        Map<String, List<double[]>> mounts = new TreeMap<>();
+        for (RollupTrendView rollup : rollups) {
+            Map<String, double[]> usage = readMountUsage(rollup);
+            long hour = epochHour(rollup.getBucketStart());
+            usage.forEach((mountpoint, values) ->
+                    mounts.computeIfAbsent(mountpoint, m -> new ArrayList<>()).add(new double[]{hour, values[0]}));
+        }
+        mounts.forEach((mountpoint, points) -> {
+            long[] hours = new long[points.size()];
+            double[] values = new double[points.size()];
+            for (int i = 0; i < points.size(); i++) {
+                hours[i] = (long) points.get(i)[0];
+                values[i] = points.get(i)[1];
+            }
+            addForecast(results, "disk", mountpoint, trendForecaster.fit(hours, values), nowHour, now);
+        });
+
+        return AgentForecast.builder()
+                .agentId(agent.agentId())
+                .agentName(agentName)
+                .computedAt(now)
+                .lastBucket(rollups.get(rollups.size() - 1).getBucketStart())
+                .forecasts(results)
+                .build();
+    }
+
+    private void addForecast(List<ResourceForecast> results, String resource, String mountpoint,
+                             List<RollupTrendView> rollups, Function<RollupTrendView, Double> extractor,
+                             double nowHour, LocalDateTime now) {
+        List<RollupTrendView> present = rollups.stream()
+                .filter(rollup -> extractor.apply(rollup) != null)
+                .toList();
+        long[] hours = new long[present.size()];
+        double[] values = new double[present.size()];
+        for (int i = 0; i < present.size(); i++) {
+            hours[i] = epochHour(present.get(i).getBucketStart());
+            values[i] = extractor.apply(present.get(i));
+        }
+        addForecast(results, resource, mountpoint, trendForecaster.fit(hours, values), nowHour, now);
+    }
+
+    private void addForecast(List<ResourceForecast> results, String resource, String mountpoint,
+                             TrendForecaster.Trend trend, double nowHour, LocalDateTime now) {
+        if (trend == null) {
+            return;
+        }
+        Double hoursToFull = trend.hoursUntil(FULL_USAGE, nowHour);
+        results.add(ResourceForecast.builder()
+                .resource(resource)
+                .mountpoint(mountpoint)
+                .currentUsage(Math.max(0, Math.min(FULL_USAGE, trend.valueAt(nowHour))))
+                .slopePerDay(trend.getSlopePerHour() * 24)
+                .seasonal(trend.isSeasonal())
+                .samples(trend.getSamples())
+                .hoursToFull(hoursToFull)
+                .estimatedFullAt(hoursToFull != null ? now.plusSeconds((long) (hoursToFull * 3600)) : null)
+                .build());
+    }
+
+    private Map<String, double[]> readMountUsage(RollupTrendView rollup) {
+        if (rollup.getMountUsage() == null) {
+            return Map.of();
+        }
+        try {
+            return objectMapper.readValue(rollup.getMountUsage(), MOUNT_USAGE_TYPE);
+        } catch (JsonProcessingException e) {
+            log.warn("Skipping unreadable mount usage rollup {}: {}", rollup.getId(), e.getMessage());
+            return Map.of();
+        }
+    }
+
+    private static String fingerprint(List<RollupTrendView> rollups) {
+        RollupTrendView first = rollups.get(0);
+        RollupTrendView last = rollups.get(rollups.size() - 1);
+        return rollups.size() + ":" + first.getBucketStart() + ":" + last.getBucketStart() + ":" + last.getSampleCount();
+    }
+
+    private static long epochHour(LocalDateTime bucketStart) {
+        return Math.floorDiv(bucketStart.toEpochSecond(ZoneOffset.UTC), 3600);
+    }
+
+    private record AgentRollups(Long agentId, String fingerprint, List<RollupTrendView> rollups) {
+    }
+
+    private record CachedForecast(String fingerprint, AgentForecast forecast) {
+    }
+
+    private class ForecastTask extends RecursiveTask<List<CachedForecast>> {
+        private static final long serialVersionUID = 1L;
+
+        private final List<AgentRollups> agents;
+        private final int from;
+        private final int to;
+        private final Map<Long, String> agentNames;
+        private final LocalDateTime now;
+
+        private ForecastTask(List<AgentRollups> agents, int from, int to, Map<Long, String> agentNames,
+                             LocalDateTime now) {
+            this.agents = agents;
+            this.from = from;
+            this.to = to;
+            this.agentNames = agentNames;
+            this.now = now;
+        }
+
+        @Override
+        protected List<CachedForecast> compute() {
+            if (to - from <= AGENTS_PER_TASK) {
+                List<CachedForecast> results = new ArrayList<>(to - from);
+                for (int i = from; i < to; i++) {
+                    AgentRollups agent = agents.get(i);
+                    try {
+                        results.add(new CachedForecast(agent.fingerprint(),
+                                forecast(agent, agentNames.get(agent.agentId()), now)));
+                    } catch (RuntimeException e) {
+                        log.warn("Failed to forecast agent {}: {}", agent.agentId(), e.getMessage());
+                    }
+                }
+                return results;
+            }
+            int middle = (from + to) >>> 1;
+            ForecastTask left = new ForecastTask(agents, from, middle, agentNames, now);
+            left.fork();
+            List<CachedForecast> results = new ArrayList<>(new ForecastTask(agents, middle, to, agentNames, now).compute());
+            results.addAll(0, left.join());
+            return results;
+        }
+    }
+}
@@ -0,0 +1,360 @@
+package com.horizon.backend.service.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.horizon.backend.common.DDSketch;
+import com.horizon.backend.dto.metrics.MetricType;
+import com.horizon.backend.dto.metrics.PercentileResponse;
+import com.horizon.backend.dto.metrics.RealtimeMetrics;
+import com.horizon.backend.entity.AgentMetricsRollup;
+import com.horizon.backend.exception.BadRequestException;
+import com.horizon.backend.exception.ResourceNotFoundException;
+import com.horizon.backend.repository.AgentMetricsRollupRepository;
+import com.horizon.backend.repository.AgentRepository;
+import com.horizon.backend.service.MetricsRollupService;
+import lombok.EqualsAndHashCode;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class MetricsRollupServiceImpl implements MetricsRollupService {
+
+    private static final List<Double> DEFAULT_QUANTILES = List.of(0.5, 0.95, 0.99);
+    private static final int MAX_QUANTILES = 20;
+    private static final TypeReference<Map<String, double[]>> MOUNT_USAGE_TYPE = new TypeReference<>() {
+    };
+
+    private final AgentMetricsRollupRepository rollupRepository;
+    private final AgentRepository agentRepository;
+    private final ObjectMapper objectMapper;
+
+    private final Map<PendingKey, PendingRollup> pending = new ConcurrentHashMap<>();
+
+    @Override
+    public void record(RealtimeMetrics metrics) {
+        LocalDateTime timestamp = metrics.getTimestamp() != null ? metrics.getTimestamp() : LocalDateTime.now();
+        PendingKey key = new PendingKey(metrics.getAgentId(), bucketStart(timestamp));
+        pending.compute(key, (k, rollup) -> {
+            PendingRollup target = rollup != null ? rollup : new PendingRollup();
+            target.add(metrics);
+            return target;
+        });
+    }
+
+    /**
+     * Merges pending rollups into their rows. Every instance flushes independently, so each row is
+     * created with an insert that ignores conflicts and then read under a row lock before merging;
+     * rows are visited in (bucket, agent) order so concurrent flushes lock them in the same order.
+     */
+    @Override
+    @Transactional
+    public void flush() {
+        Map<LocalDateTime, Map<Long, PendingRollup>> drained = new TreeMap<>();
+        for (PendingKey key : new ArrayList<>(pending.keySet())) {
+            PendingRollup rollup = pending.remove(key);
+            if (rollup != null) {
+                drained.computeIfAbsent(key.bucketStart, b -> new TreeMap<>()).put(key.agentId, rollup);
+            }
+        }
+        if (drained.isEmpty()) {
+            return;
+        }
+
+        try {
+            List<AgentMetricsRollup> toSave = new ArrayList<>();
+            for (Map.Entry<LocalDateTime, Map<Long, PendingRollup>> bucket : drained.entrySet()) {
+                for (Long agentId : bucket.getValue().keySet()) {
+                    rollupRepository.insertIfAbsent(agentId, bucket.getKey());
+                }
+                for (AgentMetricsRollup row : rollupRepository
+                        .lockByBucketStartAndAgentIdIn(bucket.getKey(), bucket.getValue().keySet())) {
+                    PendingRollup rollup = bucket.getValue().get(row.getAgentId());
+                    rollup.applyTo(row);
+                    row.setMountUsage(mergeMountUsage(row.getMountUsage(), rollup.mounts));
+                    toSave.add(row);
+                }
+            }
+            rollupRepository.saveAllAndFlush(toSave);
+            log.debug("Flushed {} metrics rollups", toSave.size());
+        } catch (RuntimeException e) {
+            drained.forEach((bucketStart, byAgent) -> byAgent.forEach((agentId, rollup) ->
+                    pending.merge(new PendingKey(agentId, bucketStart), rollup, PendingRollup::merge)));
+            throw e;
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public PercentileResponse getPercentiles(Long agentId, LocalDateTime startTime, LocalDateTime endTime,
+                                             List<Double> quantiles) {
+        if (!agentRepository.existsById(agentId)) {
+            throw new ResourceNotFoundException("Agent", "id", agentId);
+        }
+        if (!startTime.isBefore(endTime)) {
+            throw new BadRequestException("time range", "startTime", startTime);
+        }
+        List<Double> requested = quantiles == null || quantiles.isEmpty() ? DEFAULT_QUANTILES : quantiles;
+        if (requested.size() > MAX_QUANTILES) {
+            throw new BadRequestException("quantiles", "size", requested.size());
+        }
+        for (Double q : requested) {
+            if (q == null || q < 0 || q > 1) {
+                throw new BadRequestException("quantile", "quantiles", q);
+            }
+        }
+
+        LocalDateTime from = bucketStart(startTime);
+        LocalDateTime to = bucketStart(endTime.minusNanos(1)).plusHours(1);
+
+        PendingRollup merged = new PendingRollup();
+        for (AgentMetricsRollup row : rollupRepository
+                .findByAgentIdAndBucketStartGreaterThanEqualAndBucketStartLessThanOrderByBucketStartAsc(agentId, from, to)) {
+            merged.mergeSketches(row);
+        }
+        pending.forEach((key, rollup) -> {
+            if (key.agentId.equals(agentId) && !key.bucketStart.isBefore(from) && key.bucketStart.isBefore(to)) {
+                synchronized (rollup) {
+                    merged.merge(rollup);
+                }
+            }
+        });
+
+        Map<String, Map<String, Double>> percentiles = new LinkedHashMap<>();
+        percentiles.put(MetricType.CPU.getKey(), quantilesOf(merged.cpu, requested));
+        percentiles.put(MetricType.NETWORK_RX_RATE.getKey(), quantilesOf(merged.networkRxRate, requested));
+        percentiles.put(MetricType.NETWORK_TX_RATE.getKey(), quantilesOf(merged.networkTxRate, requested));
+
+        return PercentileResponse.builder()
+                .agentId(agentId)
+                .startTime(from)
+                .endTime(to)
+                .sampleCount(merged.cpu.getCount())
+                .percentiles(percentiles)
+                .build();
+    }
+
+    @Override
+    @Transactional
+    public void deleteOldRollups(int retentionDays) {
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(retentionDays);
+        int deletedCount = rollupRepository.deleteOlderThan(cutoff);
+        log.info("Deleted {} metrics rollups older than {} days", deletedCount, retentionDays);
+    }
+
+    @Override
+    @Transactional
+    public void deleteRollupsByAgentId(Long agentId) {
+        pending.keySet().removeIf(key -> key.agentId.equals(agentId));
+        int deletedCount = rollupRepository.deleteByAgentId(agentId);
+        log.info("Deleted {} metrics rollups for agent: {}", deletedCount, agentId);
+    }
+
+    private String mergeMountUsage(String existing, Map<String, double[]> pendingMounts) {
+        if (pendingMounts.isEmpty()) {
+            return existing;
+        }
+        Map<String, double[]> merged = new HashMap<>();
+        if (existing != null) {
+            try {
+                merged.putAll(objectMapper.readValue(existing, MOUNT_USAGE_TYPE));
+            } catch (JsonProcessingException e) {
+                log.warn("Discarding unreadable mount usage rollup: {}", e.getMessage());
+            }
+        }
+        pendingMounts.forEach((mountpoint, usage) -> merged.merge(mountpoint,
+                new double[]{usage[0] / usage[1], usage[1]},
+                (previous, current) -> {
+                    double samples = previous[1] + current[1];
+                    return new double[]{(previous[0] * previous[1] + current[0] * current[1]) / samples, samples};
+                }));
+        try {
+            return objectMapper.writeValueAsString(merged);
+        } catch (JsonProcessingException e) {
+            log.warn("Failed to serialize mount usage rollup: {}", e.getMessage());
+            return existing;
+        }
+    }
+
+    private static LocalDateTime bucketStart(LocalDateTime timestamp) {
+        return timestamp.truncatedTo(ChronoUnit.HOURS);
+    }
+
+    private static Map<String, Double> quantilesOf(DDSketch sketch, List<Double> quantiles) {
+        Map<String, Double> values = new LinkedHashMap<>();
+        for (Double q : quantiles) {
+            values.put("p" + formatQuantile(q), sketch.quantile(q));
+        }
+        return values;
+    }
+
+    private static String formatQuantile(double q) {
+        String value = Double.toString(q * 100);
+        return value.endsWith(".0") ? value.substring(0, value.length() - 2) : value;
+    }
+
+    @EqualsAndHashCode
+    @RequiredArgsConstructor
+    private static final class PendingKey {
+        private final Long agentId;
+        private final LocalDateTime bucketStart;
+    }
+
+    private static final class PendingRollup {
+        private final DDSketch cpu = new DDSketch();
+        private final DDSketch networkRxRate = new DDSketch();
+        private final DDSketch networkTxRate = new DDSketch();
+        private final Map<String, double[]> mounts = new HashMap<>();
+        private long samples;
+        private double cpuSum;
+        private double cpuMax = Double.NaN;
+        private long memorySamples;
+        private double memorySum;
+        private double memoryMax = Double.NaN;
+        private long diskSamples;
+        private double diskSum;
+        private long rxSamples;
+        private double rxSum;
+        private long txSamples;
+        private double txSum;
+
+        private synchronized void add(RealtimeMetrics metrics) {
+            samples++;
+            if (metrics.getCpuUsage() != null) {
+                cpu.add(metrics.getCpuUsage());
+                cpuSum += metrics.getCpuUsage();
+                cpuMax = max(cpuMax, metrics.getCpuUsage());
+            }
+            if (metrics.getMemoryUsage() != null) {
+                memorySamples++;
+                memorySum += metrics.getMemoryUsage();
+                memoryMax = max(memoryMax, metrics.getMemoryUsage());
+            }
+            if (metrics.getDiskUsage() != null) {
+                diskSamples++;
+                diskSum += metrics.getDiskUsage();
+            }
+            if (metrics.getNetworkRxRate() != null) {
+                networkRxRate.add(metrics.getNetworkRxRate());
+                rxSamples++;
+                rxSum += metrics.getNetworkRxRate();
+            }
+            if (metrics.getNetworkTxRate() != null) {
+                networkTxRate.add(metrics.getNetworkTxRate());
+                txSamples++;
+                txSum += metrics.getNetworkTxRate();
+            }
+            if (metrics.getDisks() != null) {
+                for (RealtimeMetrics.DiskInfo disk : metrics.getDisks()) {
+                    if (disk.getMountpoint() != null && disk.getUsage() != null) {
+                        double[] usage = mounts.computeIfAbsent(disk.getMountpoint(), m -> new double[2]);
+                        usage[0] += disk.getUsage();
+                        usage[1]++;
+                    }
+                }
+            }
+        }
+
+        private PendingRollup merge(PendingRollup other) {
+            cpu.merge(other.cpu);
+            networkRxRate.merge(other.networkRxRate);
+            networkTxRate.merge(other.networkTxRate);
+            samples += other.samples;
+            cpuSum += other.cpuSum;
+            cpuMax = max(cpuMax, other.cpuMax);
+            memorySamples += other.memorySamples;
+            memorySum += other.memorySum;
+            memoryMax = max(memoryMax, other.memoryMax);
+            diskSamples += other.diskSamples;
+            diskSum += other.diskSum;
+            rxSamples += other.rxSamples;
+            rxSum += other.rxSum;
+            txSamples += other.txSamples;
+            txSum += other.txSum;
+            other.mounts.forEach((mountpoint, usage) -> {
+                double[] target = mounts.computeIfAbsent(mountpoint, m -> new double[2]);
+                target[0] += usage[0];
+                target[1] += usage[1];
+            });
+            return this;
+        }
+
+        private void mergeSketches(AgentMetricsRollup row) {
+            cpu.merge(DDSketch.fromBytes(row.getCpuSketch()));
+            networkRxRate.merge(DDSketch.fromBytes(row.getNetworkRxRateSketch()));
+            networkTxRate.merge(DDSketch.fromBytes(row.getNetworkTxRateSketch()));
+        }
+
+        private void applyTo(AgentMetricsRollup row) {
+            DDSketch rowCpu = DDSketch.fromBytes(row.getCpuSketch());
+            DDSketch rowRx = DDSketch.fromBytes(row.getNetworkRxRateSketch());
+            DDSketch rowTx = DDSketch.fromBytes(row.getNetworkTxRateSketch());
+            long previousCpu = rowCpu.getCount();
+            long previousRx = rowRx.getCount();
+            long previousTx = rowTx.getCount();
+
+            row.setCpuUsageAvg(combineAvg(row.getCpuUsageAvg(), previousCpu, cpuSum, cpu.getCount()));
+            row.setCpuUsageMax(combineMax(row.getCpuUsageMax(), cpuMax));
+            long previousMemory = fieldCount(row.getMemoryUsageAvg(), row.getMemorySampleCount(), row.getSampleCount());
+            long previousDisk = fieldCount(row.getDiskUsageAvg(), row.getDiskSampleCount(), row.getSampleCount());
+            row.setMemoryUsageAvg(combineAvg(row.getMemoryUsageAvg(), previousMemory, memorySum, memorySamples));
+            row.setMemoryUsageMax(combineMax(row.getMemoryUsageMax(), memoryMax));
+            row.setMemorySampleCount(previousMemory + memorySamples);
+            row.setDiskUsageAvg(combineAvg(row.getDiskUsageAvg(), previousDisk, diskSum, diskSamples));
+            row.setDiskSampleCount(previousDisk + diskSamples);
+            row.setNetworkRxRateAvg(combineAvg(row.getNetworkRxRateAvg(), previousRx, rxSum, rxSamples));
+            row.setNetworkTxRateAvg(combineAvg(row.getNetworkTxRateAvg(), previousTx, txSum, txSamples));
+            row.setSampleCount(row.getSampleCount() + samples);
+
+            rowCpu.merge(cpu);
+            rowRx.merge(networkRxRate);
+            rowTx.merge(networkTxRate);
+            row.setCpuSketch(rowCpu.toBytes());
+            row.setNetworkRxRateSketch(rowRx.toBytes());
+            row.setNetworkTxRateSketch(rowTx.toBytes());
+        }
+
+        // Rows written before per-field counts existed only have the overall sample count.
+        private static long fieldCount(Double avg, long fieldCount, long sampleCount) {
+            return fieldCount == 0 && avg != null ? sampleCount : fieldCount;
+        }
+
+        private static Double combineAvg(Double previousAvg, long previousCount, double sum, long count) {
+            if (count == 0) {
+                return previousAvg;
+            }
+            if (previousAvg == null || previousCount == 0) {
+                return sum / count;
+            }
+            return (previousAvg * previousCount + sum) / (previousCount + count);
+        }
+
+        private static Double combineMax(Double previous, double current) {
+            if (Double.isNaN(current)) {
+                return previous;
+            }
+            return previous != null ? Math.max(previous, current) : current;
+        }
+
+        private static double max(double a, double b) {
+            if (Double.isNaN(a)) {
+                return b;
+            }
+            return Double.isNaN(b) ? a : Math.max(a, b);
+        }
+    }
+}
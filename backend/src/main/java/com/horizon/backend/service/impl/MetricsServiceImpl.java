@@ -1,29 +1,71 @@
 package com.horizon.backend.service.impl;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.horizon.backend.common.AfterCommit;
+import com.horizon.backend.common.CursorPage;
+import com.horizon.backend.dto.metrics.DownsampleMode;
+import com.horizon.backend.dto.metrics.EncodedRealtimeMetrics;
+import com.horizon.backend.dto.metrics.ExportFormat;
+import com.horizon.backend.dto.metrics.FleetGroupBy;
+import com.horizon.backend.dto.metrics.FleetGroupStats;
+import com.horizon.backend.dto.metrics.LeaderboardEntry;
+import com.horizon.backend.dto.metrics.AgentLastSeenView;
+import com.horizon.backend.dto.metrics.MetricsBucketView;
+import com.horizon.backend.dto.metrics.MetricsCounterView;
+import com.horizon.backend.dto.metrics.MetricsCursor;
 import com.horizon.backend.dto.metrics.MetricsDto;
+import com.horizon.backend.dto.metrics.MetricsField;
+import com.horizon.backend.dto.metrics.MetricsRangeVersionView;
+import com.horizon.backend.dto.metrics.MetricsOutlier;
 import com.horizon.backend.dto.metrics.MetricsRequest;
+import com.horizon.backend.dto.metrics.MetricType;
+import com.horizon.backend.dto.metrics.MetricsSeriesResponse;
 import com.horizon.backend.dto.metrics.RealtimeMetrics;
 import com.horizon.backend.entity.Agent;
 import com.horizon.backend.entity.AgentMetrics;
+import com.horizon.backend.exception.BadRequestException;
 import com.horizon.backend.exception.ResourceNotFoundException;
 import com.horizon.backend.repository.AgentMetricsRepository;
 import com.horizon.backend.repository.AgentRepository;
+import com.horizon.backend.service.AgentMetadataCache;
+import com.horizon.backend.service.AgentPresenceTracker;
+import com.horizon.backend.service.AlertEngine;
+import com.horizon.backend.service.CounterRateCalculator;
+import com.horizon.backend.service.MetricsDownsampler;
+import com.horizon.backend.service.MetricsLeaderboard;
+import com.horizon.backend.service.MetricsRollupService;
 import com.horizon.backend.service.MetricsService;
+import com.horizon.backend.service.MetricsTileCache;
+import com.horizon.backend.service.RealtimeMetricsStore;
+import com.horizon.backend.service.RealtimeSnapshotIndex;
+import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.data.domain.PageRequest;
-import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
+import java.util.Map;
+import java.util.Set;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Slf4j
 @Service
@@ -32,11 +74,42 @@ public class MetricsServiceImpl implements MetricsService {
 
     private final AgentRepository agentRepository;
     private final AgentMetricsRepository agentMetricsRepository;
-    private final RedisTemplate<String, String> redisTemplate;
     private final ObjectMapper objectMapper;
-
-    private static final String METRICS_KEY_PREFIX = "agent:metrics:";
-    private static final long METRICS_TTL_SECONDS = 60;
+    private final MetricsDownsampler metricsDownsampler;
+    private final EntityManager entityManager;
+    private final MetricsTileCache metricsTileCache;
+    private final RealtimeSnapshotIndex realtimeSnapshotIndex;
+    private final RealtimeMetricsStore realtimeMetricsStore;
+    private final MetricsLeaderboard metricsLeaderboard;
+    private final AlertEngine alertEngine;
+    private final AgentMetadataCache agentMetadataCache;
+    private final CounterRateCalculator counterRateCalculator;
+    private final MetricsRollupService metricsRollupService;
+    private final AgentPresenceTracker agentPresenceTracker;
+
+    private static final int MAX_POINTS_LIMIT = 10000;
+    private static final int LTTB_OVERSAMPLING = 8;
+    private static final long[] STEP_LADDER = {1, 5, 15, 30, 60, 300, 900, 1800, 3600, 10800, 21600, 43200, 86400};
+    private static final int EXPORT_FLUSH_INTERVAL = 1000;
+    private static final int MAX_SERIES_AGENTS = 200;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int MAX_LEADERBOARD_SIZE = 100;
+    private static final int DEFAULT_SERIES_POINTS = 300;
+    private static final String CSV_HEADER = "id,agentId,agentName,cpuUsage,memoryTotal,memoryUsed,memoryUsage," +
+            "diskTotal,diskUsed,diskUsage,networkRxBytes,networkTxBytes,loadAverage1m,loadAverage5m," +
+            "loadAverage15m,processCount,uptimeSeconds,createdAt";
+
+    @Value("${metrics.presence.startup-lookback-minutes:60}")
+    private long presenceLookbackMinutes;
+
+    @Value("${metrics.outliers.group-by:platform}")
+    private String outlierGroupBy;
+
+    @Value("${metrics.outliers.sigma:3.0}")
+    private double outlierSigma;
+
+    @Value("${metrics.outliers.min-group-size:3}")
+    private int outlierMinGroupSize;
 
     @Override
     @Transactional
@@ -100,6 +173,7 @@ public class MetricsServiceImpl implements MetricsService {
 
         RealtimeMetrics realtimeMetrics = RealtimeMetrics.builder()
                 .agentId(agent.getId())
+                .sequence(savedMetrics.getId())
                 .agentName(agent.getName())
                 .hostname(agent.getHostname())
                 .online(true)
@@ -129,7 +203,15 @@ public class MetricsServiceImpl implements MetricsService {
                 .lastHeartbeat(LocalDateTime.now())
                 .build();
 
-        saveToRedis(agent.getId(), realtimeMetrics);
+        Long userId = agent.getUserId();
+        AfterCommit.run(() -> {
+            realtimeMetricsStore.save(realtimeMetrics);
+            realtimeSnapshotIndex.update(realtimeMetrics, userId);
+            metricsLeaderboard.update(realtimeMetrics);
+            metricsRollupService.record(realtimeMetrics);
+            alertEngine.submit(realtimeMetrics, userId);
+            agentPresenceTracker.heartbeat(agent.getId());
+        });
 
         log.debug("Metrics saved for agent: {}", agent.getName());
 
@@ -137,54 +219,116 @@ public class MetricsServiceImpl implements MetricsService {
     }
 
     @Override
-    public RealtimeMetrics getRealtimeMetrics(Long agentId) {
-        String key = METRICS_KEY_PREFIX + agentId;
-        String json = redisTemplate.opsForValue().get(key);
-
-        if (json != null) {
-            try {
-                return objectMapper.readValue(json, RealtimeMetrics.class);
-            } catch (JsonProcessingException e) {
-                log.error("Failed to deserialize metrics from Redis for agent: {}", agentId, e);
-            }
+    public EncodedRealtimeMetrics getRealtimeMetrics(Long agentId) {
+        EncodedRealtimeMetrics snapshot = realtimeMetricsStore.get(agentId);
+        if (snapshot != null) {
+            boolean online = snapshot.isOnline() && !Boolean.FALSE.equals(agentPresenceTracker.isOnline(agentId));
+            return snapshot.withStatus(online, realtimeSnapshotIndex.getOutlierFlags(agentId));
         }
 
         Agent agent = agentRepository.findById(agentId)
                 .orElseThrow(() -> new ResourceNotFoundException("Agent", "id", agentId));
 
-        return RealtimeMetrics.offline(agent.getId(), agent.getName(), agent.getHostname());
+        return realtimeMetricsStore.encode(RealtimeMetrics.offline(agent.getId(), agent.getName(), agent.getHostname()));
     }
 
     @Override
-    public List<RealtimeMetrics> getAllRealtimeMetrics() {
-        List<RealtimeMetrics> allMetrics = new ArrayList<>();
-        List<Agent> agents = agentRepository.findByEnabled(true);
-
-        for (Agent agent : agents) {
-            String key = METRICS_KEY_PREFIX + agent.getId();
-            String json = redisTemplate.opsForValue().get(key);
-
-            if (json != null) {
-                try {
-                    RealtimeMetrics metrics = objectMapper.readValue(json, RealtimeMetrics.class);
-                    LocalDateTime lastHeartbeat = metrics.getLastHeartbeat();
-                    if (lastHeartbeat != null &&
-                        Duration.between(lastHeartbeat, LocalDateTime.now()).getSeconds() > METRICS_TTL_SECONDS) {
-                        metrics.setOnline(false);
-                    }
-                    allMetrics.add(metrics);
-                } catch (JsonProcessingException e) {
-                    log.error("Failed to deserialize metrics from Redis for agent: {}", agent.getId(), e);
-                    allMetrics.add(RealtimeMetrics.offline(agent.getId(), agent.getName(), agent.getHostname()));
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUpRealtimeMetrics() {
+        Map<Long, Long> owners = new HashMap<>();
+        agentMetadataCache.getEnabledAgents().forEach(agent -> owners.put(agent.id(), agent.userId()));
+        try {
+            for (RealtimeMetrics metrics : realtimeMetricsStore.warmUp(new ArrayList<>(owners.keySet()))) {
+                agentPresenceTracker.restore(metrics.getAgentId(), metrics.getLastHeartbeat());
+                if (!Boolean.TRUE.equals(agentPresenceTracker.isOnline(metrics.getAgentId()))) {
+                    metrics.setOnline(false);
+                }
+                realtimeSnapshotIndex.update(metrics, owners.get(metrics.getAgentId()));
+                if (metrics.isOnline()) {
+                    metricsLeaderboard.update(metrics);
                 }
-            } else {
-                allMetrics.add(RealtimeMetrics.offline(agent.getId(), agent.getName(), agent.getHostname()));
             }
+        } catch (Exception e) {
+            log.warn("Failed to warm realtime snapshots from Redis: {}", e.getMessage());
         }
+        seedPresence(owners.keySet());
+    }
 
+    private void seedPresence(Set<Long> enabledAgentIds) {
+        LocalDateTime since = LocalDateTime.now().minusMinutes(presenceLookbackMinutes);
+        int seeded = 0;
+        for (AgentLastSeenView lastSeen : agentMetricsRepository.findLastSeenSince(since)) {
+            if (enabledAgentIds.contains(lastSeen.getAgentId())
+                    && agentPresenceTracker.isOnline(lastSeen.getAgentId()) == null) {
+                agentPresenceTracker.seed(lastSeen.getAgentId(),
+                        LocalDateTime.ofEpochSecond(lastSeen.getEpochSecond(), 0, ZoneOffset.UTC));
+                seeded++;
+            }
+        }
+        log.info("Seeded presence for {} agents seen in the last {} minutes", seeded, presenceLookbackMinutes);
+    }
+
+    @Override
+    public List<EncodedRealtimeMetrics> getAllRealtimeMetrics() {
+        return getAllRealtimeMetrics(true);
+    }
+
+    @Override
+    public List<EncodedRealtimeMetrics> getAllRealtimeMetrics(boolean includeMetadata) {
+        List<AgentMetadataCache.AgentSummary> agents = agentMetadataCache.getEnabledAgents();
+        List<EncodedRealtimeMetrics> snapshots = realtimeMetricsStore.getAll(
+                agents.stream().map(AgentMetadataCache.AgentSummary::id).toList(), includeMetadata);
+
+        List<EncodedRealtimeMetrics> allMetrics = new ArrayList<>(agents.size());
+        LocalDateTime staleBefore = LocalDateTime.now().minusSeconds(RealtimeMetricsStore.TTL_SECONDS);
+        for (int i = 0; i < agents.size(); i++) {
+            AgentMetadataCache.AgentSummary agent = agents.get(i);
+            EncodedRealtimeMetrics snapshot = snapshots.get(i);
+            if (snapshot == null) {
+                allMetrics.add(realtimeMetricsStore.encode(RealtimeMetrics.offline(agent.id(), agent.name(), agent.hostname())));
+                continue;
+            }
+            if (snapshot.getAgentName() == null) {
+                snapshot = realtimeMetricsStore.withNames(snapshot, agent.name(), agent.hostname());
+            }
+            Boolean online = agentPresenceTracker.isOnline(agent.id());
+            LocalDateTime lastHeartbeat = snapshot.getMetrics().getLastHeartbeat();
+            boolean stale = online != null ? !online : lastHeartbeat != null && lastHeartbeat.isBefore(staleBefore);
+            allMetrics.add(snapshot.withStatus(snapshot.isOnline() && !stale, realtimeSnapshotIndex.getOutlierFlags(agent.id())));
+        }
         return allMetrics;
     }
 
+    @Override
+    public List<FleetGroupStats> getFleetAggregates(FleetGroupBy groupBy, Map<MetricType, Double> thresholds) {
+        return realtimeSnapshotIndex.aggregate(groupBy, thresholds);
+    }
+
+    @Override
+    public List<LeaderboardEntry> getTopAgents(MetricType type, int limit) {
+        return metricsLeaderboard.top(type, clampLeaderboardSize(limit));
+    }
+
+    @Override
+    public Map<String, List<LeaderboardEntry>> getTopAgents(int limit) {
+        return metricsLeaderboard.topAll(clampLeaderboardSize(limit));
+    }
+
+    @Override
+    public List<MetricsOutlier> getOutliers(FleetGroupBy groupBy, Double sigma) {
+        double threshold = sigma != null ? sigma : outlierSigma;
+        if (threshold <= 0) {
+            throw new BadRequestException("outlier threshold", "sigma", sigma);
+        }
+        FleetGroupBy group = groupBy != null ? groupBy : FleetGroupBy.from(outlierGroupBy);
+        return realtimeSnapshotIndex.findOutliers(group, threshold, outlierMinGroupSize);
+    }
+
+    @Override
+    public void refreshOutliers() {
+        realtimeSnapshotIndex.refreshOutlierFlags(FleetGroupBy.from(outlierGroupBy), outlierSigma, outlierMinGroupSize);
+    }
+
     @Override
     @Transactional(readOnly = true)
     public List<MetricsDto> getMetricsHistory(Long agentId, int limit) {
@@ -198,6 +342,41 @@ public class MetricsServiceImpl implements MetricsService {
                 .toList();
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPage<MetricsDto> getMetricsHistoryPage(Long agentId, String cursor, int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new BadRequestException("limit", "limit", limit);
+        }
+        if (!agentRepository.existsById(agentId)) {
+            throw new ResourceNotFoundException("Agent", "id", agentId);
+        }
+
+        PageRequest pageRequest = PageRequest.of(0, limit + 1);
+        List<AgentMetrics> rows;
+        if (cursor == null || cursor.isBlank()) {
+            rows = agentMetricsRepository.findFirstPageByAgentId(agentId, pageRequest);
+        } else {
+            MetricsCursor position = MetricsCursor.decode(cursor);
+            rows = agentMetricsRepository.findPageByAgentIdBefore(
+                    agentId, position.getCreatedAt(), position.getId(), pageRequest);
+        }
+
+        boolean hasNext = rows.size() > limit;
+        List<MetricsDto> content = rows.stream()
+                .limit(limit)
+                .map(MetricsDto::from)
+                .toList();
+
+        String nextCursor = null;
+        if (hasNext) {
+            MetricsDto last = content.get(content.size() - 1);
+            nextCursor = new MetricsCursor(last.getCreatedAt(), last.getId()).encode();
+        }
+
+        return CursorPage.of(content, nextCursor);
+    }
+
     @Override
     @Transactional(readOnly = true)
     public List<MetricsDto> getMetricsHistory(Long agentId, LocalDateTime startTime, LocalDateTime endTime) {
@@ -211,11 +390,215 @@ public class MetricsServiceImpl implements MetricsService {
                 .toList();
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public List<MetricsDto> getMetricsHistory(Long agentId, LocalDateTime startTime, LocalDateTime endTime,
+                                              Long stepSeconds, Integer maxPoints, DownsampleMode mode,
+                                              MetricsField reference) {
+        if (stepSeconds == null && maxPoints == null) {
+            long rows = agentMetricsRepository.countByAgentIdAndCreatedAtBetween(agentId, startTime, endTime);
+            if (rows > MAX_POINTS_LIMIT) {
+                throw new BadRequestException("Range holds " + rows + " samples, more than " + MAX_POINTS_LIMIT
+                        + "; pass step or maxPoints to downsample it, or use the export endpoint");
+            }
+            return getMetricsHistory(agentId, startTime, endTime);
+        }
+        if (mode == DownsampleMode.LTTB && maxPoints == null) {
+            throw new BadRequestException("LTTB downsampling requires maxPoints");
+        }
+
+        Agent agent = agentRepository.findById(agentId)
+                .orElseThrow(() -> new ResourceNotFoundException("Agent", "id", agentId));
+
+        int targetPoints = maxPoints != null && mode == DownsampleMode.LTTB ? maxPoints * LTTB_OVERSAMPLING : 0;
+        long step = resolveStep(startTime, endTime, stepSeconds, maxPoints, targetPoints);
+
+        List<MetricsDto> buckets = readBuckets(agent, startTime, endTime, step);
+
+        if (mode == DownsampleMode.LTTB) {
+            return metricsDownsampler.lttb(buckets, maxPoints, point -> {
+                Number value = reference.extract(point);
+                return value != null ? value.doubleValue() : Double.NaN;
+            });
+        }
+        return buckets;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public MetricsSeriesResponse getMetricsSeries(List<Long> agentIds, LocalDateTime startTime, LocalDateTime endTime,
+                                                  Long stepSeconds, Integer maxPoints, List<MetricsField> fields) {
+        if (agentIds == null || agentIds.isEmpty()) {
+            throw new BadRequestException("At least one agentId is required");
+        }
+        List<Long> distinctIds = agentIds.stream().distinct().toList();
+        if (distinctIds.size() > MAX_SERIES_AGENTS) {
+            throw new BadRequestException("At most " + MAX_SERIES_AGENTS + " agents can be requested at once");
+        }
+
+        long step = resolveStep(startTime, endTime, stepSeconds,
+                maxPoints != null ? maxPoints : DEFAULT_SERIES_POINTS, 0);
+
+        Map<Long, Agent> agents = agentRepository.findAllById(distinctIds).stream()
+                .collect(Collectors.toMap(Agent::getId, a -> a));
+        for (Long agentId : distinctIds) {
+            if (!agents.containsKey(agentId)) {
+                throw new ResourceNotFoundException("Agent", "id", agentId);
+            }
+        }
+
+        long firstBucket = Math.floorDiv(startTime.toEpochSecond(ZoneOffset.UTC), step);
+        long lastBucket = Math.floorDiv(endTime.toEpochSecond(ZoneOffset.UTC), step);
+        int gridSize = (int) (lastBucket - firstBucket + 1);
+
+        List<LocalDateTime> timestamps = new ArrayList<>(gridSize);
+        for (long bucket = firstBucket; bucket <= lastBucket; bucket++) {
+            timestamps.add(LocalDateTime.ofEpochSecond(bucket * step, 0, ZoneOffset.UTC));
+        }
+
+        Map<Long, Map<String, Number[]>> valuesByAgent = new LinkedHashMap<>();
+        for (Long agentId : distinctIds) {
+            Map<String, Number[]> values = new LinkedHashMap<>();
+            for (MetricsField field : fields) {
+                values.put(field.getFieldName(), new Number[gridSize]);
+            }
+            valuesByAgent.put(agentId, values);
+        }
+
+        for (MetricsBucketView bucket : agentMetricsRepository.findBucketedByAgentIds(distinctIds, startTime, endTime, step)) {
+            int index = (int) (bucket.getBucket() - firstBucket);
+            if (index < 0 || index >= gridSize) {
+                continue;
+            }
+            MetricsDto point = MetricsDto.from(bucket, null, step);
+            Map<String, Number[]> values = valuesByAgent.get(bucket.getAgentId());
+            for (MetricsField field : fields) {
+                values.get(field.getFieldName())[index] = field.extract(point);
+            }
+        }
+
+        List<MetricsSeriesResponse.AgentSeries> series = distinctIds.stream()
+                .map(agentId -> MetricsSeriesResponse.AgentSeries.builder()
+                        .agentId(agentId)
+                        .agentName(agents.get(agentId).getName())
+                        .values(valuesByAgent.get(agentId))
+                        .build())
+                .toList();
+
+        return MetricsSeriesResponse.builder()
+                .step(step)
+                .timestamps(timestamps)
+                .series(series)
+                .build();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public MetricsSeriesResponse getCounterRates(Long agentId, LocalDateTime startTime, LocalDateTime endTime,
+                                                 Long stepSeconds, Integer maxPoints) {
+        Agent agent = agentRepository.findById(agentId)
+                .orElseThrow(() -> new ResourceNotFoundException("Agent", "id", agentId));
+        long step = resolveStep(startTime, endTime, stepSeconds,
+                maxPoints != null ? maxPoints : DEFAULT_SERIES_POINTS, 0);
+
+        long firstBucket = Math.floorDiv(startTime.toEpochSecond(ZoneOffset.UTC), step);
+        long lastBucket = Math.floorDiv(endTime.toEpochSecond(ZoneOffset.UTC), step);
+        int gridSize = (int) (lastBucket - firstBucket + 1);
+
+        List<MetricsCounterView> samples = agentMetricsRepository.findCountersByAgentId(
+                agentId, LocalDateTime.ofEpochSecond(firstBucket * step, 0, ZoneOffset.UTC).minusSeconds(step), endTime);
+        int size = samples.size();
+        long[] times = new long[size];
+        long[] rx = new long[size];
+        long[] tx = new long[size];
+        long[] uptimes = new long[size];
+        for (int i = 0; i < size; i++) {
+            MetricsCounterView sample = samples.get(i);
+            times[i] = sample.getEpochSecond();
+            rx[i] = counterOrMissing(sample.getNetworkRxBytes());
+            tx[i] = counterOrMissing(sample.getNetworkTxBytes());
+            uptimes[i] = counterOrMissing(sample.getUptimeSeconds());
+        }
+
+        double[] rxRates = counterRateCalculator.rates(times, rx, uptimes, size, firstBucket, gridSize, step);
+        double[] txRates = counterRateCalculator.rates(times, tx, uptimes, size, firstBucket, gridSize, step);
+
+        List<LocalDateTime> timestamps = new ArrayList<>(gridSize);
+        Number[] rxValues = new Number[gridSize];
+        Number[] txValues = new Number[gridSize];
+        for (int i = 0; i < gridSize; i++) {
+            timestamps.add(LocalDateTime.ofEpochSecond((firstBucket + i) * step, 0, ZoneOffset.UTC));
+            rxValues[i] = Double.isNaN(rxRates[i]) ? null : rxRates[i];
+            txValues[i] = Double.isNaN(txRates[i]) ? null : txRates[i];
+        }
+
+        Map<String, Number[]> values = new LinkedHashMap<>();
+        values.put("networkRxRate", rxValues);
+        values.put("networkTxRate", txValues);
+
+        return MetricsSeriesResponse.builder()
+                .step(step)
+                .timestamps(timestamps)
+                .series(List.of(MetricsSeriesResponse.AgentSeries.builder()
+                        .agentId(agentId)
+                        .agentName(agent.getName())
+                        .values(values)
+                        .build()))
+                .build();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public String getHistoryVersion(Long agentId, LocalDateTime startTime, LocalDateTime endTime) {
+        MetricsRangeVersionView version = agentMetricsRepository.findRangeVersion(agentId, startTime, endTime);
+        return version.getSampleCount() + "." + version.getMinId() + "." + version.getMaxId();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void exportMetricsHistory(Long agentId, LocalDateTime startTime, LocalDateTime endTime,
+                                     ExportFormat format, OutputStream outputStream) throws IOException {
+        if (!agentRepository.existsById(agentId)) {
+            throw new ResourceNotFoundException("Agent", "id", agentId);
+        }
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        if (format == ExportFormat.CSV) {
+            writer.write(CSV_HEADER);
+            writer.write('\n');
+        }
+
+        long count = 0;
+        try (Stream<AgentMetrics> rows = agentMetricsRepository.streamByAgentIdAndCreatedAtBetween(agentId, startTime, endTime)) {
+            Iterator<AgentMetrics> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                AgentMetrics row = iterator.next();
+                MetricsDto dto = MetricsDto.from(row);
+                entityManager.detach(row);
+
+                if (format == ExportFormat.CSV) {
+                    writeCsvRow(writer, dto);
+                } else {
+                    writer.write(objectMapper.writeValueAsString(dto));
+                }
+                writer.write('\n');
+
+                if (++count % EXPORT_FLUSH_INTERVAL == 0) {
+                    writer.flush();
+                }
+            }
+        }
+        writer.flush();
+
+        log.debug("Exported {} metrics rows for agent: {} as {}", count, agentId, format);
+    }
+
     @Override
     @Transactional
     public void deleteOldMetrics(int retentionDays) {
         LocalDateTime cutoffDate = LocalDateTime.now().minusDays(retentionDays);
         int deletedCount = agentMetricsRepository.deleteOlderThan(cutoffDate);
+        AfterCommit.run(() -> metricsTileCache.evictBefore(cutoffDate));
         log.info("Deleted {} old metrics records older than {} days", deletedCount, retentionDays);
     }
 
@@ -223,19 +606,95 @@ public class MetricsServiceImpl implements MetricsService {
     @Transactional
     public void deleteMetricsByAgentId(Long agentId) {
         int deletedCount = agentMetricsRepository.deleteByAgentId(agentId);
-        String key = METRICS_KEY_PREFIX + agentId;
-        redisTemplate.delete(key);
+        metricsRollupService.deleteRollupsByAgentId(agentId);
+        AfterCommit.run(() -> {
+            metricsTileCache.evictAgent(agentId);
+            realtimeSnapshotIndex.remove(agentId);
+            metricsLeaderboard.remove(agentId);
+            alertEngine.removeAgent(agentId);
+            realtimeMetricsStore.delete(agentId);
+        });
         log.info("Deleted {} metrics records for agent: {}", deletedCount, agentId);
     }
 
-    private void saveToRedis(Long agentId, RealtimeMetrics metrics) {
-        String key = METRICS_KEY_PREFIX + agentId;
-        try {
-            String json = objectMapper.writeValueAsString(metrics);
-            redisTemplate.opsForValue().set(key, json, METRICS_TTL_SECONDS, TimeUnit.SECONDS);
-        } catch (JsonProcessingException e) {
-            log.error("Failed to serialize metrics to Redis for agent: {}", agentId, e);
+    private List<MetricsDto> readBuckets(Agent agent, LocalDateTime startTime, LocalDateTime endTime, long step) {
+        return metricsTileCache.read(agent.getId(), step, startTime, endTime,
+                        (from, to) -> agentMetricsRepository.findBucketedByAgentId(agent.getId(), from, to, step)
+                                .stream()
+                                .map(bucket -> MetricsDto.from(bucket, null, step))
+                                .toList())
+                .stream()
+                .map(point -> point.toBuilder().agentName(agent.getName()).build())
+                .toList();
+    }
+
+    private void writeCsvRow(Writer writer, MetricsDto dto) throws IOException {
+        Object[] values = {
+                dto.getId(), dto.getAgentId(), dto.getAgentName(), dto.getCpuUsage(), dto.getMemoryTotal(),
+                dto.getMemoryUsed(), dto.getMemoryUsage(), dto.getDiskTotal(), dto.getDiskUsed(), dto.getDiskUsage(),
+                dto.getNetworkRxBytes(), dto.getNetworkTxBytes(), dto.getLoadAverage1m(), dto.getLoadAverage5m(),
+                dto.getLoadAverage15m(), dto.getProcessCount(), dto.getUptimeSeconds(), dto.getCreatedAt()
+        };
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            if (values[i] != null) {
+                writer.write(escapeCsv(values[i].toString()));
+            }
+        }
+    }
+
+    private String escapeCsv(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return value;
         }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private long resolveStep(LocalDateTime startTime, LocalDateTime endTime,
+                             Long stepSeconds, Integer maxPoints, int oversampledPoints) {
+        if (!endTime.isAfter(startTime)) {
+            throw new BadRequestException("startTime must be before endTime");
+        }
+        if (stepSeconds != null && stepSeconds < 1) {
+            throw new BadRequestException("step", "step", stepSeconds);
+        }
+        if (maxPoints != null && (maxPoints < 3 || maxPoints > MAX_POINTS_LIMIT)) {
+            throw new BadRequestException("maxPoints", "maxPoints", maxPoints);
+        }
+
+        long rangeSeconds = Math.max(1, Duration.between(startTime, endTime).getSeconds());
+        long step = stepSeconds != null ? stepSeconds : 1;
+        if (maxPoints != null) {
+            step = Math.max(step, ceilDiv(rangeSeconds, oversampledPoints > 0 ? oversampledPoints : maxPoints));
+        }
+        return snapStep(Math.max(step, ceilDiv(rangeSeconds, oversampledPoints > 0 ? oversampledPoints : MAX_POINTS_LIMIT)));
+    }
+
+    private static long snapStep(long step) {
+        for (long rung : STEP_LADDER) {
+            if (step <= rung) {
+                return rung;
+            }
+        }
+        long day = STEP_LADDER[STEP_LADDER.length - 1];
+        return (step + day - 1) / day * day;
+    }
+
+    private static long counterOrMissing(Long value) {
+        return value != null ? value : CounterRateCalculator.MISSING;
+    }
+
+    private int clampLeaderboardSize(int limit) {
+        if (limit < 1) {
+            throw new BadRequestException("limit", "limit", limit);
+        }
+        return Math.min(limit, MAX_LEADERBOARD_SIZE);
+    }
+
+    private long ceilDiv(long dividend, long divisor) {
+        return (dividend + divisor - 1) / divisor;
     }
 
     private double calculatePercentage(Long used, Long total) {
@@ -1,5 +1,7 @@
 package com.horizon.backend.websocket;
 
+import com.horizon.backend.service.AgentPresenceTracker;
+import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.TextMessage;
@@ -17,8 +19,10 @@ import java.util.concurrent.CopyOnWriteArraySet;
 
 @Slf4j
 @Component
+@RequiredArgsConstructor
 public class AgentWebSocketHandler extends TextWebSocketHandler {
 
+    private final AgentPresenceTracker agentPresenceTracker;
     private final ObjectMapper objectMapper = new ObjectMapper();
     private final ConcurrentHashMap<String, WebSocketSession> agentSessions = new ConcurrentHashMap<>();
     private final ConcurrentHashMap<String, CompletableFuture<CommandResult>> pendingCommands = new ConcurrentHashMap<>();
@@ -29,6 +33,7 @@ public class AgentWebSocketHandler extends TextWebSocketHandler {
         String agentId = extractAgentId(session);
         if (agentId != null) {
             agentSessions.put(agentId, session);
+            recordHeartbeat(agentId);
             log.info("Agent {} connected via WebSocket", agentId);
         }
     }
@@ -37,6 +42,7 @@ public class AgentWebSocketHandler extends TextWebSocketHandler {
     protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
         String agentId = extractAgentId(session);
         String payload = message.getPayload();
+        recordHeartbeat(agentId);
         log.debug("Message from agent {}: {}", agentId, payload);
 
         try {
@@ -185,6 +191,17 @@ public class AgentWebSocketHandler extends TextWebSocketHandler {
         }
     }
 
+    private void recordHeartbeat(String agentId) {
+        if (agentId == null) {
+            return;
+        }
+        try {
+            agentPresenceTracker.heartbeat(Long.valueOf(agentId));
+        } catch (NumberFormatException e) {
+            log.debug("Ignoring heartbeat for non-numeric agent id: {}", agentId);
+        }
+    }
+
     private String extractAgentId(WebSocketSession session) {
         String query = session.getUri().getQuery();
         if (query != null) {
@@ -42,6 +42,7 @@ CREATE TABLE IF NOT EXISTS agents (
     platform VARCHAR(100),
     enabled BOOLEAN NOT NULL DEFAULT TRUE,
     last_seen_at TIMESTAMP,
+    heartbeat_timeout_seconds INTEGER,
     created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
     updated_at TIMESTAMP,
     CONSTRAINT fk_agents_user FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE SET NULL,
@@ -70,6 +71,49 @@ CREATE TABLE IF NOT EXISTS agent_metrics (
     CONSTRAINT fk_agent_metrics_agent FOREIGN KEY (agent_id) REFERENCES agents(id) ON DELETE CASCADE
 );
 
+-- Hourly metrics rollups with mergeable percentile sketches
+CREATE TABLE IF NOT EXISTS agent_metrics_rollups (
+    id BIGSERIAL PRIMARY KEY,
+    agent_id BIGINT NOT NULL,
+    bucket_start TIMESTAMP NOT NULL,
+    sample_count BIGINT NOT NULL,
+    memory_sample_count BIGINT NOT NULL DEFAULT 0,
+    disk_sample_count BIGINT NOT NULL DEFAULT 0,
+    cpu_usage_avg DOUBLE PRECISION,
+    cpu_usage_max DOUBLE PRECISION,
+    memory_usage_avg DOUBLE PRECISION,
+    memory_usage_max DOUBLE PRECISION,
+    disk_usage_avg DOUBLE PRECISION,
+    network_rx_rate_avg DOUBLE PRECISION,
+    network_tx_rate_avg DOUBLE PRECISION,
+    mount_usage TEXT,
+    cpu_sketch BYTEA,
+    network_rx_rate_sketch BYTEA,
+    network_tx_rate_sketch BYTEA,
+    CONSTRAINT uk_agent_metrics_rollups_agent_bucket UNIQUE (agent_id, bucket_start),
+    CONSTRAINT fk_agent_metrics_rollups_agent FOREIGN KEY (agent_id) REFERENCES agents(id) ON DELETE CASCADE
+);
+
+-- Alert rules evaluated against ingested metrics
+CREATE TABLE IF NOT EXISTS alert_rules (
+    id BIGSERIAL PRIMARY KEY,
+    user_id BIGINT NOT NULL,
+    agent_id BIGINT,
+    name VARCHAR(100) NOT NULL,
+    metric VARCHAR(30) NOT NULL,
+    type VARCHAR(20) NOT NULL,
+    operator VARCHAR(10) NOT NULL,
+    threshold DOUBLE PRECISION NOT NULL,
+    for_seconds INTEGER NOT NULL DEFAULT 0,
+    ewma_alpha DOUBLE PRECISION,
+    webhook_url VARCHAR(500),
+    enabled BOOLEAN NOT NULL DEFAULT TRUE,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT fk_alert_rules_user FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE,
+    CONSTRAINT fk_alert_rules_agent FOREIGN KEY (agent_id) REFERENCES agents(id) ON DELETE CASCADE
+);
+
 -- Indexes for better query performance
 CREATE INDEX IF NOT EXISTS idx_users_email ON users(email);
 CREATE INDEX IF NOT EXISTS idx_client_keys_user_id ON client_keys(user_id);
@@ -81,3 +125,6 @@ CREATE INDEX IF NOT EXISTS idx_agents_node_id ON agents(node_id);
 CREATE INDEX IF NOT EXISTS idx_agent_metrics_agent_id ON agent_metrics(agent_id);
 CREATE INDEX IF NOT EXISTS idx_agent_metrics_created_at ON agent_metrics(created_at);
 CREATE INDEX IF NOT EXISTS idx_agent_metrics_agent_created ON agent_metrics(agent_id, created_at DESC);
+CREATE INDEX IF NOT EXISTS idx_agent_metrics_agent_created_id ON agent_metrics(agent_id, created_at DESC, id DESC);
+CREATE INDEX IF NOT EXISTS idx_agent_metrics_rollups_bucket_start ON agent_metrics_rollups(bucket_start);
+CREATE INDEX IF NOT EXISTS idx_alert_rules_user_id ON alert_rules(user_id);
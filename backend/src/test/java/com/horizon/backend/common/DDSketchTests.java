@@ -0,0 +1,98 @@
+package com.horizon.backend.common;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DDSketchTests {
+
+    private static final double RELATIVE_ACCURACY = 0.01;
+
+    @Test
+    void emptySketchHasNoQuantiles() {
+        assertNull(new DDSketch().quantile(0.5));
+    }
+
+    @Test
+    void quantilesStayWithinRelativeAccuracy() {
+        DDSketch sketch = new DDSketch();
+        for (int i = 1; i <= 1000; i++) {
+            sketch.add(i);
+        }
+
+        assertWithinAccuracy(500.5, sketch.quantile(0.5));
+        assertWithinAccuracy(950.05, sketch.quantile(0.95));
+        assertWithinAccuracy(990.01, sketch.quantile(0.99));
+        assertEquals(1.0, sketch.quantile(0.0));
+        assertWithinAccuracy(1000, sketch.quantile(1.0));
+    }
+
+    @Test
+    void zerosAndNaNAreHandled() {
+        DDSketch sketch = new DDSketch();
+        sketch.add(Double.NaN);
+        sketch.add(0);
+        sketch.add(0);
+        sketch.add(0);
+        sketch.add(50);
+
+        assertEquals(4, sketch.getCount());
+        assertEquals(0.0, sketch.quantile(0.5));
+        assertWithinAccuracy(50, sketch.quantile(1.0));
+    }
+
+    @Test
+    void mergeMatchesSingleSketch() {
+        DDSketch low = new DDSketch();
+        DDSketch high = new DDSketch();
+        DDSketch all = new DDSketch();
+        for (int i = 1; i <= 500; i++) {
+            low.add(i * 0.1);
+            all.add(i * 0.1);
+        }
+        for (int i = 1; i <= 500; i++) {
+            high.add(1000 + i);
+            all.add(1000 + i);
+        }
+
+        low.merge(high);
+
+        assertEquals(all.getCount(), low.getCount());
+        for (double q : new double[]{0.01, 0.25, 0.5, 0.75, 0.99}) {
+            assertEquals(all.quantile(q), low.quantile(q));
+        }
+    }
+
+    @Test
+    void mergeIgnoresEmptySketches() {
+        DDSketch sketch = new DDSketch();
+        sketch.add(42);
+        sketch.merge(new DDSketch());
+        sketch.merge(null);
+
+        assertEquals(1, sketch.getCount());
+        assertEquals(42.0, sketch.quantile(0.5));
+    }
+
+    @Test
+    void roundTripsThroughBytes() {
+        DDSketch sketch = new DDSketch();
+        for (int i = 0; i < 200; i++) {
+            sketch.add(Math.pow(1.05, i));
+        }
+
+        DDSketch restored = DDSketch.fromBytes(sketch.toBytes());
+
+        assertEquals(sketch.getCount(), restored.getCount());
+        assertEquals(sketch.quantile(0.5), restored.quantile(0.5));
+        assertEquals(sketch.quantile(0.99), restored.quantile(0.99));
+        assertEquals(0, DDSketch.fromBytes(null).getCount());
+    }
+
+    private static void assertWithinAccuracy(double expected, Double actual) {
+        assertTrue(Math.abs(actual - expected) <= expected * RELATIVE_ACCURACY * 1.5,
+                () -> "expected ~" + expected + " but was " + actual);
+    }
+}
@@ -0,0 +1,187 @@
+package com.horizon.backend.controller;
+
+import com.horizon.backend.dto.metrics.EncodedRealtimeMetrics;
+import com.horizon.backend.dto.metrics.MetricsDto;
+import com.horizon.backend.dto.metrics.RealtimeMetrics;
+import com.horizon.backend.service.MetricsService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.lang.reflect.Proxy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MetricsControllerTests {
+
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0);
+    private static final LocalDateTime END = START.plusHours(1);
+
+    private final List<String> calls = new ArrayList<>();
+    private EncodedRealtimeMetrics realtime = realtime(10L, true);
+    private String historyVersion = "3.100.102";
+    private List<MetricsDto> history = List.of(point(100L, 1.0), point(101L, 2.0));
+
+    private final MetricsController controller = new MetricsController(metricsService(), null, null, null, null, null);
+
+    @Test
+    void realtimeAnswersMatchingETagWith304() {
+        Exchange first = new Exchange(null);
+        ResponseEntity<?> response = controller.getRealtimeMetrics(1L, first.webRequest());
+        String etag = response.getHeaders().getETag();
+        assertNotNull(etag);
+        assertTrue(etag.startsWith("W/\""));
+
+        Exchange second = new Exchange(etag);
+        assertNull(controller.getRealtimeMetrics(1L, second.webRequest()));
+        assertEquals(304, second.status);
+        assertEquals(etag, second.headers.get(HttpHeaders.ETAG));
+    }
+
+    @Test
+    void realtimeETagFollowsSequenceAndPresence() {
+        String initial = controller.getRealtimeMetrics(1L, new Exchange(null).webRequest()).getHeaders().getETag();
+
+        realtime = realtime(11L, true);
+        Exchange afterSample = new Exchange(initial);
+        ResponseEntity<?> response = controller.getRealtimeMetrics(1L, afterSample.webRequest());
+        assertEquals(200, response.getStatusCode().value());
+        String next = response.getHeaders().getETag();
+        assertNotEquals(initial, next);
+
+        realtime = realtime(11L, false);
+        assertNotNull(controller.getRealtimeMetrics(1L, new Exchange(next).webRequest()));
+    }
+
+    @Test
+    void closedRangeRevalidatesWithoutReadingHistory() {
+        ResponseEntity<?> response = range(new Exchange(null));
+        String etag = response.getHeaders().getETag();
+        assertEquals("max-age=60, must-revalidate, private", response.getHeaders().getCacheControl());
+        calls.clear();
+
+        Exchange revalidation = new Exchange(etag);
+        assertNull(range(revalidation));
+        assertEquals(304, revalidation.status);
+        assertEquals(List.of("getHistoryVersion"), calls);
+    }
+
+    @Test
+    void closedRangeETagChangesWithPersistedRows() {
+        String etag = range(new Exchange(null)).getHeaders().getETag();
+
+        historyVersion = "4.100.103";
+        ResponseEntity<?> response = range(new Exchange(etag));
+
+        assertNotNull(response);
+        assertNotEquals(etag, response.getHeaders().getETag());
+    }
+
+    @Test
+    void openRangeHashesTheReturnedPoints() {
+        LocalDateTime end = LocalDateTime.now();
+        String etag = openRange(new Exchange(null), end).getHeaders().getETag();
+        assertEquals("no-cache", openRange(new Exchange(null), end).getHeaders().getCacheControl());
+
+        Exchange unchanged = new Exchange(etag);
+        assertNull(openRange(unchanged, end));
+        assertEquals(304, unchanged.status);
+
+        history = List.of(point(100L, 1.0), point(101L, 2.0), point(102L, 3.0));
+        assertNotNull(openRange(new Exchange(etag), end));
+        assertTrue(calls.contains("getMetricsHistory"));
+        assertTrue(!calls.contains("getHistoryVersion"));
+    }
+
+    private ResponseEntity<?> range(Exchange exchange) {
+        return controller.getMetricsHistoryRange(1L, START, END, 60L, null, null, null, null, null, null,
+                exchange.webRequest());
+    }
+
+    private ResponseEntity<?> openRange(Exchange exchange, LocalDateTime end) {
+        return controller.getMetricsHistoryRange(1L, end.minusHours(1), end, 60L, null, null, null, null, null, null,
+                exchange.webRequest());
+    }
+
+    private MetricsService metricsService() {
+        return (MetricsService) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{MetricsService.class},
+                (proxy, method, args) -> {
+                    calls.add(method.getName());
+                    return switch (method.getName()) {
+                        case "getRealtimeMetrics" -> realtime;
+                        case "getHistoryVersion" -> historyVersion;
+                        case "getMetricsHistory" -> history;
+                        default -> throw new UnsupportedOperationException(method.getName());
+                    };
+                });
+    }
+
+    private static EncodedRealtimeMetrics realtime(Long sequence, boolean online) {
+        RealtimeMetrics metrics = RealtimeMetrics.builder().agentId(1L).sequence(sequence).online(online).build();
+        return EncodedRealtimeMetrics.of(metrics, "{\"agentId\":1}", null, null, null);
+    }
+
+    private static MetricsDto point(Long id, double cpu) {
+        return MetricsDto.builder().id(id).agentId(1L).cpuUsage(cpu).createdAt(START.plusSeconds(id)).build();
+    }
+
+    /** A GET carrying an optional If-None-Match, and the status and headers written back to it. */
+    private static final class Exchange {
+
+        private final String ifNoneMatch;
+        private final Map<String, String> headers = new HashMap<>();
+        private int status = 200;
+
+        private Exchange(String ifNoneMatch) {
+            this.ifNoneMatch = ifNoneMatch;
+        }
+
+        private ServletWebRequest webRequest() {
+            HttpServletRequest request = (HttpServletRequest) Proxy.newProxyInstance(
+                    getClass().getClassLoader(), new Class<?>[]{HttpServletRequest.class}, (proxy, method, args) ->
+                            switch (method.getName()) {
+                                case "getMethod" -> "GET";
+                                case "getHeader" -> header((String) args[0]);
+                                case "getHeaders" -> header((String) args[0]) == null
+                                        ? Collections.emptyEnumeration()
+                                        : Collections.enumeration(List.of(header((String) args[0])));
+                                case "getDateHeader" -> -1L;
+                                default -> null;
+                            });
+            HttpServletResponse response = (HttpServletResponse) Proxy.newProxyInstance(
+                    getClass().getClassLoader(), new Class<?>[]{HttpServletResponse.class}, (proxy, method, args) ->
+                            switch (method.getName()) {
+                                case "getStatus" -> status;
+                                case "setStatus" -> {
+                                    status = (int) args[0];
+                                    yield null;
+                                }
+                                case "setHeader", "addHeader" -> {
+                                    headers.put((String) args[0], (String) args[1]);
+                                    yield null;
+                                }
+                                case "getHeader" -> headers.get((String) args[0]);
+                                case "containsHeader" -> headers.containsKey((String) args[0]);
+                                default -> null;
+                            });
+            return new ServletWebRequest(request, response);
+        }
+
+        private String header(String name) {
+            return HttpHeaders.IF_NONE_MATCH.equalsIgnoreCase(name) ? ifNoneMatch : null;
+        }
+    }
+}
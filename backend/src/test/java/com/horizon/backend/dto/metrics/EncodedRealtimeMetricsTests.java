@@ -0,0 +1,63 @@
+package com.horizon.backend.dto.metrics;
+
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EncodedRealtimeMetricsTests {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final SerializedString IDENTITY =
+            EncodedRealtimeMetrics.identityFragment("{\"agentName\":\"web-1\",\"hostname\":\"web-1.local\"}");
+
+    @Test
+    void splicesIdentityAndStatusIntoTheState() throws Exception {
+        EncodedRealtimeMetrics encoded = encoded(true);
+
+        JsonNode json = MAPPER.readTree(encoded.toBytes());
+
+        assertEquals(3, json.get("agentId").asLong());
+        assertEquals(42.5, json.get("cpuUsage").asDouble());
+        assertEquals("web-1", json.get("agentName").asText());
+        assertEquals("web-1.local", json.get("hostname").asText());
+        assertTrue(json.get("online").asBoolean());
+        assertFalse(json.has("outliers"));
+    }
+
+    @Test
+    void withStatusOverridesOnlineAndOutliersOnly() throws Exception {
+        EncodedRealtimeMetrics encoded = encoded(true);
+
+        JsonNode json = MAPPER.readTree(encoded.withStatus(false, List.of("cpu")).toBytes());
+
+        assertFalse(json.get("online").asBoolean());
+        assertEquals("cpu", json.get("outliers").get(0).asText());
+        assertEquals("web-1", json.get("agentName").asText());
+        assertSame(encoded, encoded.withStatus(true, null));
+    }
+
+    @Test
+    void writesTheSameBytesThroughJacksonAndAsAnArray() throws Exception {
+        EncodedRealtimeMetrics online = encoded(true);
+        EncodedRealtimeMetrics offline = encoded(false);
+
+        JsonNode array = MAPPER.readTree(EncodedRealtimeMetrics.toJsonArray(List.of(online, offline)));
+
+        assertEquals(2, array.size());
+        assertEquals(MAPPER.readTree(online.toBytes()), array.get(0));
+        assertEquals(MAPPER.readTree(MAPPER.writeValueAsString(offline)), array.get(1));
+    }
+
+    private static EncodedRealtimeMetrics encoded(boolean online) {
+        RealtimeMetrics metrics = RealtimeMetrics.builder().agentId(3L).cpuUsage(42.5).online(online).build();
+        return EncodedRealtimeMetrics.of(metrics, "{\"agentId\":3,\"cpuUsage\":42.5}", null, IDENTITY, null);
+    }
+}
@@ -0,0 +1,47 @@
+package com.horizon.backend.dto.metrics;
+
+import com.horizon.backend.exception.BadRequestException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MetricsCursorTests {
+
+    @Test
+    void roundTripsPositionWithSubSecondPrecision() {
+        LocalDateTime createdAt = LocalDateTime.of(2024, 3, 9, 14, 5, 7, 123_456_000);
+        MetricsCursor cursor = new MetricsCursor(createdAt, 987_654_321L);
+
+        MetricsCursor decoded = MetricsCursor.decode(cursor.encode());
+
+        assertEquals(createdAt, decoded.getCreatedAt());
+        assertEquals(987_654_321L, decoded.getId());
+    }
+
+    @Test
+    void encodesAsUnpaddedUrlSafeToken() {
+        for (long id = 1; id < 200; id++) {
+            String token = new MetricsCursor(LocalDateTime.of(2024, 1, 1, 0, 0).plusSeconds(id * 37), id).encode();
+
+            assertFalse(token.contains("=") || token.contains("+") || token.contains("/"));
+        }
+    }
+
+    @Test
+    void rejectsMalformedCursors() {
+        assertThrows(BadRequestException.class, () -> MetricsCursor.decode("not base64!"));
+        assertThrows(BadRequestException.class, () -> MetricsCursor.decode(encodeRaw("2024-01-01T00:00")));
+        assertThrows(BadRequestException.class, () -> MetricsCursor.decode(encodeRaw("yesterday|12")));
+        assertThrows(BadRequestException.class, () -> MetricsCursor.decode(encodeRaw("2024-01-01T00:00|abc")));
+    }
+
+    private static String encodeRaw(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
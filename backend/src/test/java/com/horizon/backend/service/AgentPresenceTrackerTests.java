@@ -0,0 +1,190 @@
+package com.horizon.backend.service;
+
+import com.horizon.backend.dto.agent.AgentPresenceEvent;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AgentPresenceTrackerTests {
+
+    private static final long AGENT_ID = 7L;
+    private static final int TIMEOUT_SECONDS = 5;
+
+    private final AtomicLong clock = new AtomicLong(1_000_000_000_000L);
+    private final List<AgentPresenceEvent> alerted = new ArrayList<>();
+    private final List<AgentPresenceEvent> streamed = new ArrayList<>();
+    private final List<Long> markedOffline = new ArrayList<>();
+    private final List<Long> removedFromLeaderboard = new ArrayList<>();
+
+    private final AgentPresenceTracker tracker = new AgentPresenceTracker(
+            new AgentMetadataCache(null) {
+                @Override
+                public AgentSummary find(Long agentId) {
+                    return new AgentSummary(agentId, 1L, "agent", "host", TIMEOUT_SECONDS);
+                }
+            },
+            new RealtimeSnapshotIndex() {
+                @Override
+                public void markOffline(Long agentId) {
+                    markedOffline.add(agentId);
+                }
+            },
+            new MetricsLeaderboard() {
+                @Override
+                public void remove(Long agentId) {
+                    removedFromLeaderboard.add(agentId);
+                }
+            },
+            new AlertEngine(null, null, null, null, null) {
+                @Override
+                public void onPresenceChange(AgentPresenceEvent presence) {
+                    alerted.add(presence);
+                }
+            },
+            new SseEmitterService(null, null, null, null, null, null, 1, SseEmitterService.SlowConsumerPolicy.DROP_OLDEST, 60, 16, 30) {
+                @Override
+                public void sendPresence(AgentPresenceEvent presence) {
+                    streamed.add(presence);
+                }
+            },
+            new InlineExecutor(),
+            clock::get);
+
+    @Test
+    void unknownAgentHasNoPresence() {
+        assertNull(tracker.isOnline(AGENT_ID));
+    }
+
+    @Test
+    void firstHeartbeatPublishesOnline() {
+        tracker.heartbeat(AGENT_ID);
+        tracker.heartbeat(AGENT_ID);
+
+        assertTrue(tracker.isOnline(AGENT_ID));
+        assertEquals(1, alerted.size());
+        assertTrue(alerted.get(0).isOnline());
+        assertEquals(AGENT_ID, alerted.get(0).getAgentId());
+        assertEquals(1L, alerted.get(0).getUserId());
+        assertEquals(1, streamed.size());
+    }
+
+    @Test
+    void expiresOnlyAfterTheTimeout() {
+        tracker.heartbeat(AGENT_ID);
+
+        tick(TIMEOUT_SECONDS - 1);
+        assertTrue(tracker.isOnline(AGENT_ID));
+
+        tick(1);
+        assertFalse(tracker.isOnline(AGENT_ID));
+        assertEquals(List.of(AGENT_ID), markedOffline);
+        assertEquals(List.of(AGENT_ID), removedFromLeaderboard);
+        assertEquals(2, alerted.size());
+        assertFalse(alerted.get(1).isOnline());
+    }
+
+    @Test
+    void heartbeatPushesTheDeadlineBack() {
+        tracker.heartbeat(AGENT_ID);
+        for (int i = 0; i < 10; i++) {
+            tick(TIMEOUT_SECONDS - 1);
+            tracker.heartbeat(AGENT_ID);
+        }
+
+        assertTrue(tracker.isOnline(AGENT_ID));
+        assertTrue(markedOffline.isEmpty());
+        assertEquals(1, alerted.size());
+    }
+
+    @Test
+    void comesBackOnlineAfterExpiring() {
+        tracker.heartbeat(AGENT_ID);
+        tick(TIMEOUT_SECONDS);
+        tracker.heartbeat(AGENT_ID);
+
+        assertTrue(tracker.isOnline(AGENT_ID));
+        assertEquals(List.of(true, false, true), alerted.stream().map(AgentPresenceEvent::isOnline).toList());
+    }
+
+    @Test
+    void deadlinesBeyondOneRevolutionWaitForTheirTick() {
+        tracker.heartbeat(AGENT_ID);
+        tracker.setTimeout(AGENT_ID, 600);
+
+        tick(513);
+        assertTrue(tracker.isOnline(AGENT_ID));
+
+        tick(87);
+        assertFalse(tracker.isOnline(AGENT_ID));
+    }
+
+    @Test
+    void removedAgentsNeverExpire() {
+        tracker.heartbeat(AGENT_ID);
+        tracker.remove(AGENT_ID);
+
+        tick(TIMEOUT_SECONDS * 2);
+
+        assertNull(tracker.isOnline(AGENT_ID));
+        assertTrue(markedOffline.isEmpty());
+    }
+
+    @Test
+    void seededAgentsGetOneTimeoutOfGrace() {
+        tracker.seed(AGENT_ID, null);
+        assertTrue(tracker.isOnline(AGENT_ID));
+        assertTrue(alerted.isEmpty());
+
+        tick(TIMEOUT_SECONDS);
+
+        assertFalse(tracker.isOnline(AGENT_ID));
+        assertEquals(1, alerted.size());
+        assertFalse(alerted.get(0).isOnline());
+    }
+
+    @Test
+    void relayedHeartbeatDoesNotPublishOnline() {
+        tracker.relayedHeartbeat(AGENT_ID, null);
+
+        assertTrue(tracker.isOnline(AGENT_ID));
+        assertTrue(alerted.isEmpty());
+        assertTrue(streamed.isEmpty());
+    }
+
+    @Test
+    void relayedAgentExpiresQuietly() {
+        tracker.relayedHeartbeat(AGENT_ID, null);
+
+        tick(TIMEOUT_SECONDS);
+
+        assertFalse(tracker.isOnline(AGENT_ID));
+        assertEquals(List.of(AGENT_ID), markedOffline);
+        assertEquals(List.of(AGENT_ID), removedFromLeaderboard);
+        assertTrue(alerted.isEmpty());
+        assertTrue(streamed.isEmpty());
+    }
+
+    private void tick(int seconds) {
+        for (int i = 0; i < seconds; i++) {
+            clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+            tracker.advance();
+        }
+    }
+
+    private static final class InlineExecutor extends ThreadPoolTaskExecutor {
+
+        @Override
+        public void execute(Runnable task) {
+            task.run();
+        }
+    }
+}
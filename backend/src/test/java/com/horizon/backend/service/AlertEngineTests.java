@@ -0,0 +1,228 @@
+package com.horizon.backend.service;
+
+import com.horizon.backend.dto.agent.AgentPresenceEvent;
+import com.horizon.backend.dto.alert.AlertEvent;
+import com.horizon.backend.dto.alert.AlertState;
+import com.horizon.backend.dto.metrics.RealtimeMetrics;
+import com.horizon.backend.entity.AlertOperator;
+import com.horizon.backend.entity.AlertRule;
+import com.horizon.backend.entity.AlertRuleType;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AlertEngineTests {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2024, 1, 1, 0, 0);
+    private static final LocalDateTime UPDATED = LocalDateTime.of(2023, 12, 1, 0, 0);
+
+    private final List<AlertEvent> events = new ArrayList<>();
+    private final AlertEngine engine = new AlertEngine(new InlineExecutor(), new InlineExecutor(),
+            new SseEmitterService(null, null, null, null, null, null, 1, SseEmitterService.SlowConsumerPolicy.DROP_OLDEST, 60, 16, 30) {
+                @Override
+                public void sendAlert(AlertEvent alert) {
+                    events.add(alert);
+                }
+            }, null, new WebhookUrlValidator(List.of()));
+
+    @Test
+    void thresholdFiresAfterTheHoldPeriodAndResolves() {
+        engine.reload(List.of(rule(1L, AlertRuleType.THRESHOLD, AlertOperator.ABOVE, 90, 30)));
+
+        engine.submit(sample(1L, 95.0, 0), 7L);
+        engine.submit(sample(1L, 96.0, 20), 7L);
+        assertTrue(events.isEmpty());
+
+        engine.submit(sample(1L, 97.0, 30), 7L);
+        assertEquals(List.of(AlertState.FIRING), states());
+        assertEquals(97.0, events.get(0).getValue());
+        assertEquals(1, engine.getActiveAlerts(7L).size());
+
+        engine.submit(sample(1L, 98.0, 40), 7L);
+        engine.submit(sample(1L, 50.0, 50), 7L);
+        assertEquals(List.of(AlertState.FIRING, AlertState.RESOLVED), states());
+        assertTrue(engine.getActiveAlerts(7L).isEmpty());
+    }
+
+    @Test
+    void aDipRestartsTheHoldPeriod() {
+        engine.reload(List.of(rule(1L, AlertRuleType.THRESHOLD, AlertOperator.ABOVE, 90, 30)));
+
+        engine.submit(sample(1L, 95.0, 0), 7L);
+        engine.submit(sample(1L, 50.0, 20), 7L);
+        engine.submit(sample(1L, 95.0, 25), 7L);
+        engine.submit(sample(1L, 95.0, 50), 7L);
+        assertTrue(events.isEmpty());
+
+        engine.submit(sample(1L, 95.0, 55), 7L);
+        assertEquals(List.of(AlertState.FIRING), states());
+    }
+
+    @Test
+    void userRulesOnlyApplyToTheirOwnersAgents() {
+        engine.reload(List.of(rule(null, AlertRuleType.THRESHOLD, AlertOperator.ABOVE, 90, 0)));
+
+        engine.submit(sample(1L, 95.0, 0), 8L);
+        assertTrue(events.isEmpty());
+
+        engine.submit(sample(2L, 95.0, 0), 7L);
+        assertEquals(2L, events.get(0).getAgentId());
+        assertEquals(7L, events.get(0).getUserId());
+    }
+
+    @Test
+    void rateOfChangeUsesPerSecondSlope() {
+        engine.reload(List.of(rule(1L, AlertRuleType.RATE_OF_CHANGE, AlertOperator.ABOVE, 2, 0)));
+
+        engine.submit(sample(1L, 10.0, 0), 7L);
+        engine.submit(sample(1L, 20.0, 10), 7L);
+        assertTrue(events.isEmpty());
+
+        engine.submit(sample(1L, 50.0, 20), 7L);
+        assertEquals(List.of(AlertState.FIRING), states());
+        assertEquals(3.0, events.get(0).getValue(), 1e-9);
+
+        engine.submit(sample(1L, 50.0, 30), 7L);
+        assertEquals(List.of(AlertState.FIRING, AlertState.RESOLVED), states());
+    }
+
+    @Test
+    void ewmaDeviationWaitsForWarmupThenFlagsOutliers() {
+        engine.reload(List.of(rule(1L, AlertRuleType.EWMA_DEVIATION, AlertOperator.ABOVE, 3, 0)));
+
+        for (int i = 0; i < 30; i++) {
+            engine.submit(sample(1L, i % 2 == 0 ? 40.0 : 42.0, i), 7L);
+        }
+        assertTrue(events.isEmpty());
+
+        engine.submit(sample(1L, 80.0, 30), 7L);
+        assertEquals(List.of(AlertState.FIRING), states());
+        assertTrue(events.get(0).getValue() > 3);
+    }
+
+    @Test
+    void ewmaDeviationBelowFlagsDrops() {
+        engine.reload(List.of(rule(1L, AlertRuleType.EWMA_DEVIATION, AlertOperator.BELOW, 3, 0)));
+
+        for (int i = 0; i < 30; i++) {
+            engine.submit(sample(1L, i % 2 == 0 ? 40.0 : 42.0, i), 7L);
+        }
+        engine.submit(sample(1L, 80.0, 30), 7L);
+        assertTrue(events.isEmpty());
+
+        engine.submit(sample(1L, 0.0, 31), 7L);
+        assertEquals(List.of(AlertState.FIRING), states());
+    }
+
+    @Test
+    void reloadKeepsStateForUnchangedRulesAndResolvesDroppedOnes() {
+        AlertRule rule = rule(1L, AlertRuleType.THRESHOLD, AlertOperator.ABOVE, 90, 0);
+        engine.reload(List.of(rule));
+        engine.submit(sample(1L, 95.0, 0), 7L);
+
+        engine.reload(List.of(rule));
+        engine.submit(sample(1L, 96.0, 10), 7L);
+        assertEquals(List.of(AlertState.FIRING), states());
+
+        engine.reload(List.of());
+        assertEquals(List.of(AlertState.FIRING, AlertState.RESOLVED), states());
+        assertTrue(engine.getActiveAlerts(7L).isEmpty());
+    }
+
+    @Test
+    void removingAnAgentResolvesItsAlerts() {
+        engine.reload(List.of(rule(1L, AlertRuleType.THRESHOLD, AlertOperator.ABOVE, 90, 0)));
+        engine.submit(sample(1L, 95.0, 0), 7L);
+
+        engine.removeAgent(1L);
+
+        assertEquals(List.of(AlertState.FIRING, AlertState.RESOLVED), states());
+        assertTrue(engine.getActiveAlerts(7L).isEmpty());
+        engine.submit(sample(1L, 95.0, 10), 7L);
+        assertEquals(2, events.size());
+    }
+
+    @Test
+    void agentOfflineFiresOnOfflineAndResolvesOnOnline() {
+        AlertRule offline = rule(1L, AlertRuleType.AGENT_OFFLINE, AlertOperator.BELOW, 1, 0);
+        offline.setMetric("status");
+        engine.reload(List.of(offline));
+
+        engine.onPresenceChange(presence(1L, true, 0));
+        assertTrue(events.isEmpty());
+
+        engine.onPresenceChange(presence(1L, false, 60));
+        engine.onPresenceChange(presence(1L, false, 61));
+        assertEquals(List.of(AlertState.FIRING), states());
+        assertEquals(1, engine.getActiveAlerts(7L).size());
+
+        engine.onPresenceChange(presence(1L, true, 90));
+        assertEquals(List.of(AlertState.FIRING, AlertState.RESOLVED), states());
+        assertTrue(engine.getActiveAlerts(7L).isEmpty());
+    }
+
+    @Test
+    void agentOfflineRulesIgnoreSamples() {
+        AlertRule offline = rule(null, AlertRuleType.AGENT_OFFLINE, AlertOperator.BELOW, 1, 0);
+        offline.setMetric("status");
+        engine.reload(List.of(offline));
+
+        engine.submit(sample(1L, 0.0, 0), 7L);
+        engine.onPresenceChange(presence(2L, false, 10));
+
+        assertEquals(List.of(AlertState.FIRING), states());
+        assertEquals(2L, events.get(0).getAgentId());
+    }
+
+    private List<AlertState> states() {
+        return events.stream().map(AlertEvent::getState).toList();
+    }
+
+    private static AlertRule rule(Long agentId, AlertRuleType type, AlertOperator operator, double threshold,
+                                  int forSeconds) {
+        return AlertRule.builder()
+                .id(1L)
+                .userId(7L)
+                .agentId(agentId)
+                .name("cpu")
+                .metric("cpu")
+                .type(type)
+                .operator(operator)
+                .threshold(threshold)
+                .forSeconds(forSeconds)
+                .updatedAt(UPDATED)
+                .build();
+    }
+
+    private static RealtimeMetrics sample(Long agentId, double cpu, int second) {
+        return RealtimeMetrics.builder()
+                .agentId(agentId)
+                .cpuUsage(cpu)
+                .timestamp(T0.plusSeconds(second))
+                .build();
+    }
+
+    private static AgentPresenceEvent presence(Long agentId, boolean online, int second) {
+        return AgentPresenceEvent.builder()
+                .agentId(agentId)
+                .userId(7L)
+                .agentName("agent-" + agentId)
+                .online(online)
+                .timestamp(T0.plusSeconds(second))
+                .build();
+    }
+
+    /** Runs evaluation and notification on the caller, so each submit is observable immediately. */
+    private static final class InlineExecutor extends ThreadPoolTaskExecutor {
+        @Override
+        public void execute(Runnable task) {
+            task.run();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.horizon.backend.service;
+
+import org.junit.jupiter.api.Test;
+
+import static com.horizon.backend.service.CounterRateCalculator.MISSING;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CounterRateCalculatorTests {
+
+    private final CounterRateCalculator calculator = new CounterRateCalculator();
+
+    @Test
+    void steadyCounterGivesConstantRate() {
+        long[] times = {0, 10, 20, 30, 40};
+        long[] counters = {0, 1000, 2000, 3000, 4000};
+        long[] uptimes = {100, 110, 120, 130, 140};
+
+        double[] rates = calculator.rates(times, counters, uptimes, times.length, 0, 2, 30);
+
+        assertEquals(100.0, rates[0], 1e-9);
+        assertEquals(100.0, rates[1], 1e-9);
+    }
+
+    @Test
+    void counterResetCountsIncreaseSinceBoot() {
+        long[] times = {0, 10, 20};
+        long[] counters = {5000, 6000, 300};
+        long[] uptimes = {1000, 1010, 3};
+
+        double[] rates = calculator.rates(times, counters, uptimes, times.length, 0, 1, 60);
+
+        // 1000 over 10s, then 300 accumulated over the 3s since the restart.
+        assertEquals(1300.0 / 13, rates[0], 1e-9);
+    }
+
+    @Test
+    void counterGoingBackwardsWithoutUptimeIsAReset() {
+        long[] times = {0, 10};
+        long[] counters = {5000, 200};
+        long[] uptimes = {MISSING, MISSING};
+
+        double[] rates = calculator.rates(times, counters, uptimes, times.length, 0, 1, 60);
+
+        assertEquals(20.0, rates[0], 1e-9);
+    }
+
+    @Test
+    void gapsLeaveBucketsEmpty() {
+        long[] times = {0, 10, 20, 30, 100, 110};
+        long[] counters = {0, 100, MISSING, 300, 1000, 1100};
+        long[] uptimes = {MISSING, MISSING, MISSING, MISSING, MISSING, MISSING};
+
+        double[] rates = calculator.rates(times, counters, uptimes, times.length, 0, 4, 30);
+
+        assertEquals(10.0, rates[0], 1e-9);
+        assertTrue(Double.isNaN(rates[1]));
+        assertTrue(Double.isNaN(rates[2]));
+        assertEquals(800.0 / 80, rates[3], 1e-9);
+    }
+}
@@ -0,0 +1,89 @@
+package com.horizon.backend.service;
+
+import com.horizon.backend.dto.metrics.MetricsDto;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MetricsDownsamplerTests {
+
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    private final MetricsDownsampler downsampler = new MetricsDownsampler();
+
+    @Test
+    void returnsInputWhenBelowThreshold() {
+        List<MetricsDto> points = series(new double[]{1, 2, 3, 4});
+
+        assertSame(points, downsampler.lttb(points, 10, MetricsDto::getCpuUsage));
+        assertSame(points, downsampler.lttb(points, 2, MetricsDto::getCpuUsage));
+    }
+
+    @Test
+    void keepsEndpointsAndThreshold() {
+        List<MetricsDto> points = series(wave(1000));
+
+        List<MetricsDto> sampled = downsampler.lttb(points, 100, MetricsDto::getCpuUsage);
+
+        assertEquals(100, sampled.size());
+        assertSame(points.get(0), sampled.get(0));
+        assertSame(points.get(999), sampled.get(99));
+        for (int i = 1; i < sampled.size(); i++) {
+            assertTrue(sampled.get(i).getCreatedAt().isAfter(sampled.get(i - 1).getCreatedAt()));
+        }
+    }
+
+    @Test
+    void preservesIsolatedSpike() {
+        double[] values = new double[1000];
+        values[437] = 100;
+        List<MetricsDto> points = series(values);
+
+        List<MetricsDto> sampled = downsampler.lttb(points, 20, MetricsDto::getCpuUsage);
+
+        assertTrue(sampled.contains(points.get(437)));
+    }
+
+    @Test
+    void gapsCarryThePreviousValue() {
+        double[] values = new double[300];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i >= 100 && i < 200 ? Double.NaN : 10;
+        }
+        values[250] = 90;
+        List<MetricsDto> points = series(values);
+
+        List<MetricsDto> sampled = downsampler.lttb(points, 10,
+                point -> point.getCpuUsage() != null ? point.getCpuUsage() : Double.NaN);
+
+        assertEquals(10, sampled.size());
+        assertTrue(sampled.contains(points.get(250)));
+    }
+
+    private static double[] wave(int size) {
+        double[] values = new double[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = 50 + 40 * Math.sin(i / 25.0);
+        }
+        return values;
+    }
+
+    private static List<MetricsDto> series(double[] values) {
+        List<MetricsDto> points = new ArrayList<>(values.length);
+        for (int i = 0; i < values.length; i++) {
+            points.add(MetricsDto.builder()
+                    .id((long) i)
+                    .agentId(1L)
+                    .cpuUsage(Double.isNaN(values[i]) ? null : values[i])
+                    .createdAt(START.plusSeconds(i * 10L))
+                    .build());
+        }
+        return points;
+    }
+}
@@ -0,0 +1,141 @@
+package com.horizon.backend.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.horizon.backend.dto.metrics.EncodedRealtimeMetrics;
+import com.horizon.backend.dto.metrics.RealtimeMetrics;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MetricsFrameEncoderTests {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    private final RealtimeMetricsStore store = new RealtimeMetricsStore(null, null, objectMapper);
+    private final MetricsFrameEncoder encoder = new MetricsFrameEncoder(objectMapper);
+
+    @Test
+    void deltaCarriesOnlyChangedFields() throws Exception {
+        EncodedRealtimeMetrics from = encode(base().build());
+        EncodedRealtimeMetrics to = encode(base().sequence(2L).cpuUsage(55.0).timestamp(NOW.plusSeconds(1)).build());
+
+        JsonNode delta = read(encoder.delta(from, to, null));
+
+        assertEquals(1L, delta.get("agentId").asLong());
+        assertEquals(55.0, delta.get("cpuUsage").asDouble());
+        assertEquals(2L, delta.get("sequence").asLong());
+        assertTrue(delta.has("timestamp"));
+        assertFalse(delta.has("memoryUsage"));
+        assertFalse(delta.has("agentName"));
+        assertFalse(delta.has("online"));
+    }
+
+    @Test
+    void deltaOfIdenticalSnapshotsIsJustTheAgent() throws Exception {
+        EncodedRealtimeMetrics from = encode(base().build());
+        EncodedRealtimeMetrics to = encode(base().build());
+
+        JsonNode delta = read(encoder.delta(from, to, null));
+
+        assertEquals(1, delta.size());
+        assertEquals(1L, delta.get("agentId").asLong());
+    }
+
+    @Test
+    void deltaIsLimitedToProjectedFields() throws Exception {
+        EncodedRealtimeMetrics from = encode(base().build());
+        EncodedRealtimeMetrics to = encode(base().cpuUsage(90.0).memoryUsage(70.0).build());
+
+        JsonNode delta = read(encoder.delta(from, to, Set.of("memoryUsage")));
+
+        assertEquals(70.0, delta.get("memoryUsage").asDouble());
+        assertFalse(delta.has("cpuUsage"));
+    }
+
+    @Test
+    void clearedFieldsAreSentAsNull() throws Exception {
+        EncodedRealtimeMetrics from = encode(base().temperature(60.0).build());
+        EncodedRealtimeMetrics to = encode(base().build());
+
+        JsonNode delta = read(encoder.delta(from, to, null));
+
+        assertTrue(delta.has("temperature"));
+        assertTrue(delta.get("temperature").isNull());
+    }
+
+    @Test
+    void statusChangesShowUpInDeltas() throws Exception {
+        EncodedRealtimeMetrics from = encode(base().build());
+        EncodedRealtimeMetrics to = from.withStatus(false, List.of("cpuUsage"));
+
+        JsonNode delta = read(encoder.delta(from, to, null));
+
+        assertFalse(delta.get("online").asBoolean());
+        assertEquals("cpuUsage", delta.get("outliers").get(0).asText());
+    }
+
+    @Test
+    void snapshotsWithoutTreesAreParsedBack() throws Exception {
+        EncodedRealtimeMetrics from = EncodedRealtimeMetrics.of(base().build(), "{\"agentId\":1,\"cpuUsage\":20.0}",
+                null, null, null);
+        EncodedRealtimeMetrics to = EncodedRealtimeMetrics.of(base().build(), "{\"agentId\":1,\"cpuUsage\":30.0}",
+                null, null, null);
+
+        JsonNode delta = read(encoder.delta(from, to, null));
+
+        assertEquals(2, delta.size());
+        assertEquals(30.0, delta.get("cpuUsage").asDouble());
+    }
+
+    @Test
+    void deltasAreMemoisedPerProjection() {
+        EncodedRealtimeMetrics from = encode(base().build());
+        EncodedRealtimeMetrics to = encode(base().cpuUsage(12.0).build());
+
+        assertSame(encoder.delta(from, to, null), encoder.delta(from, to, null));
+    }
+
+    @Test
+    void projectionKeepsAgentIdAndRequestedFields() throws Exception {
+        JsonNode projected = read(encoder.project(encode(base().build()), Set.of("cpuUsage", "hostname")));
+
+        assertEquals(3, projected.size());
+        assertEquals(1L, projected.get("agentId").asLong());
+        assertEquals(20.0, projected.get("cpuUsage").asDouble());
+        assertEquals("host-1", projected.get("hostname").asText());
+    }
+
+    private EncodedRealtimeMetrics encode(RealtimeMetrics metrics) {
+        return store.encode(metrics);
+    }
+
+    private JsonNode read(byte[] bytes) throws Exception {
+        return objectMapper.readTree(bytes);
+    }
+
+    private static RealtimeMetrics.RealtimeMetricsBuilder base() {
+        return RealtimeMetrics.builder()
+                .agentId(1L)
+                .sequence(1L)
+                .agentName("agent-1")
+                .hostname("host-1")
+                .online(true)
+                .cpuUsage(20.0)
+                .memoryUsage(40.0)
+                .timestamp(NOW)
+                .lastHeartbeat(NOW);
+    }
+}
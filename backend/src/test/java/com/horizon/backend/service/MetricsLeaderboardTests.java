@@ -0,0 +1,89 @@
+package com.horizon.backend.service;
+
+import com.horizon.backend.dto.metrics.LeaderboardEntry;
+import com.horizon.backend.dto.metrics.MetricType;
+import com.horizon.backend.dto.metrics.RealtimeMetrics;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MetricsLeaderboardTests {
+
+    private final MetricsLeaderboard leaderboard = new MetricsLeaderboard();
+
+    @Test
+    void ranksByValueDescendingThenAgentId() {
+        leaderboard.update(snapshot(3L, 50.0));
+        leaderboard.update(snapshot(1L, 90.0));
+        leaderboard.update(snapshot(2L, 50.0));
+
+        assertEquals(List.of(1L, 2L, 3L), ids(leaderboard.top(MetricType.CPU, 10)));
+        assertEquals(List.of(1L, 2L), ids(leaderboard.top(MetricType.CPU, 2)));
+    }
+
+    @Test
+    void replacesAnAgentsPreviousValue() {
+        leaderboard.update(snapshot(1L, 90.0));
+        leaderboard.update(snapshot(2L, 50.0));
+        leaderboard.update(snapshot(1L, 10.0));
+
+        List<LeaderboardEntry> top = leaderboard.top(MetricType.CPU, 10);
+        assertEquals(List.of(2L, 1L), ids(top));
+        assertEquals(10.0, top.get(1).getValue());
+    }
+
+    @Test
+    void removesAgentsFromEveryBoard() {
+        leaderboard.update(snapshot(1L, 90.0));
+        leaderboard.update(snapshot(2L, 50.0));
+
+        leaderboard.remove(1L);
+
+        assertEquals(List.of(2L), ids(leaderboard.top(MetricType.CPU, 10)));
+        assertEquals(List.of(2L), ids(leaderboard.top(MetricType.MEMORY, 10)));
+    }
+
+    @Test
+    void dropsAnAgentFromABoardWhenItStopsReportingTheMetric() {
+        leaderboard.update(snapshot(1L, 90.0));
+        leaderboard.update(RealtimeMetrics.builder().agentId(1L).memoryUsage(20.0).build());
+
+        assertTrue(leaderboard.top(MetricType.CPU, 10).isEmpty());
+        assertEquals(List.of(1L), ids(leaderboard.topAll(10).get("memory")));
+    }
+
+    @Test
+    void versionAdvancesOnlyWhenThePushedTopChanges() {
+        for (long id = 1; id <= MetricsLeaderboard.TOP_AGENTS_LIMIT + 1; id++) {
+            leaderboard.update(snapshot(id, 100.0 - id));
+        }
+        long version = leaderboard.getVersion();
+
+        leaderboard.update(snapshot(1L, 99.5));
+        leaderboard.update(snapshot(MetricsLeaderboard.TOP_AGENTS_LIMIT + 1L, 0.5));
+        leaderboard.remove(42L);
+        assertEquals(version, leaderboard.getVersion());
+
+        leaderboard.update(snapshot(MetricsLeaderboard.TOP_AGENTS_LIMIT + 1L, 99.9));
+        assertTrue(leaderboard.getVersion() > version);
+
+        version = leaderboard.getVersion();
+        leaderboard.remove(3L);
+        assertTrue(leaderboard.getVersion() > version);
+    }
+
+    private static List<Long> ids(List<LeaderboardEntry> entries) {
+        return entries.stream().map(LeaderboardEntry::getAgentId).toList();
+    }
+
+    private static RealtimeMetrics snapshot(Long agentId, double value) {
+        return RealtimeMetrics.builder()
+                .agentId(agentId)
+                .cpuUsage(value)
+                .memoryUsage(value)
+                .build();
+    }
+}
@@ -0,0 +1,183 @@
+package com.horizon.backend.service;
+
+import com.horizon.backend.dto.metrics.MetricsDto;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MetricsTileCacheTests {
+
+    private static final long STEP = 60;
+    private static final long TILE_SECONDS = MetricsTileCache.TILE_BUCKETS * STEP;
+    private static final LocalDateTime TILE_10 = MetricsTileCache.tileStart(10, STEP);
+
+    private final MetricsTileCache cache = new MetricsTileCache(1_000_000);
+
+    @Test
+    void readsClosedTilesFromTheCacheAfterTheFirstLoad() {
+        RecordingLoader loader = new RecordingLoader();
+        LocalDateTime start = TILE_10;
+        LocalDateTime end = TILE_10.plusSeconds(3 * TILE_SECONDS - 1);
+
+        List<MetricsDto> first = cache.read(1L, STEP, start, end, loader);
+        List<MetricsDto> second = cache.read(1L, STEP, start, end, loader);
+
+        assertEquals(1, loader.calls.size());
+        assertEquals(3 * MetricsTileCache.TILE_BUCKETS, first.size());
+        assertEquals(first, second);
+    }
+
+    @Test
+    void loadsEachRunOfMissingTilesWithOneCall() {
+        RecordingLoader loader = new RecordingLoader();
+        cache.read(1L, STEP, MetricsTileCache.tileStart(11, STEP), MetricsTileCache.tileStart(11, STEP), loader);
+        loader.calls.clear();
+
+        List<MetricsDto> points = cache.read(1L, STEP, TILE_10,
+                MetricsTileCache.tileEnd(13, STEP).minusSeconds(1), loader);
+
+        assertEquals(2, loader.calls.size());
+        assertEquals(TILE_10, loader.calls.get(0)[0]);
+        assertEquals(MetricsTileCache.tileEnd(10, STEP).minusNanos(1000), loader.calls.get(0)[1]);
+        assertEquals(MetricsTileCache.tileStart(12, STEP), loader.calls.get(1)[0]);
+        assertEquals(MetricsTileCache.tileEnd(13, STEP).minusNanos(1000), loader.calls.get(1)[1]);
+        assertEquals(4 * MetricsTileCache.TILE_BUCKETS, points.size());
+        for (int i = 1; i < points.size(); i++) {
+            assertEquals(STEP, seconds(points.get(i)) - seconds(points.get(i - 1)));
+        }
+    }
+
+    @Test
+    void keepsEdgeBucketsThatOverlapTheRange() {
+        LocalDateTime start = TILE_10.plusSeconds(5 * STEP + 30);
+        LocalDateTime end = TILE_10.plusSeconds(9 * STEP + 10);
+
+        List<MetricsDto> points = cache.read(1L, STEP, start, end, new RecordingLoader());
+
+        assertEquals(5, points.size());
+        assertEquals(TILE_10.plusSeconds(5 * STEP), points.get(0).getCreatedAt());
+        assertEquals(TILE_10.plusSeconds(9 * STEP), points.get(4).getCreatedAt());
+    }
+
+    @Test
+    void dropsBucketsThatEndAtTheRangeStart() {
+        LocalDateTime start = TILE_10.plusSeconds(5 * STEP);
+        LocalDateTime end = TILE_10.plusSeconds(7 * STEP - 1);
+
+        List<MetricsDto> points = cache.read(1L, STEP, start, end, new RecordingLoader());
+
+        assertEquals(2, points.size());
+        assertEquals(start, points.get(0).getCreatedAt());
+    }
+
+    @Test
+    void neverCachesTheOpenTile() {
+        RecordingLoader loader = new RecordingLoader();
+        LocalDateTime now = LocalDateTime.now();
+
+        cache.read(1L, STEP, now.minusMinutes(5), now, loader);
+        cache.read(1L, STEP, now.minusMinutes(5), now, loader);
+
+        assertEquals(2, loader.calls.size());
+    }
+
+    @Test
+    void separatesAgentsAndSteps() {
+        RecordingLoader loader = new RecordingLoader();
+        LocalDateTime end = TILE_10.plusSeconds(TILE_SECONDS - 1);
+
+        cache.read(1L, STEP, TILE_10, end, loader);
+        cache.read(2L, STEP, TILE_10, end, loader);
+        cache.read(1L, 2 * STEP, TILE_10, end, loader);
+
+        assertEquals(3, loader.calls.size());
+    }
+
+    @Test
+    void skipsTilesLargerThanASegmentBudget() {
+        MetricsTileCache small = new MetricsTileCache(16 * 10);
+
+        small.put(1L, STEP, 10, buckets(10, 11));
+        small.put(1L, STEP, 11, buckets(11, 10));
+
+        assertNull(small.get(1L, STEP, 10));
+        assertEquals(10, small.get(1L, STEP, 11).size());
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedTilesOverBudget() {
+        MetricsTileCache small = new MetricsTileCache(16 * 10);
+        for (long tile = 0; tile < 64; tile++) {
+            small.put(1L, STEP, tile, buckets(tile, 6));
+        }
+
+        long cached = LongStream.range(0, 64).filter(tile -> small.get(1L, STEP, tile) != null).count();
+        assertTrue(cached <= 16, () -> "cached " + cached + " tiles");
+        assertEquals(6, small.get(1L, STEP, 63).size());
+    }
+
+    @Test
+    void evictsByAgentAndRetentionCutoff() {
+        cache.put(1L, STEP, 10, buckets(10, 1));
+        cache.put(1L, STEP, 12, buckets(12, 1));
+        cache.put(2L, STEP, 10, buckets(10, 1));
+
+        cache.evictAgent(2L);
+        cache.evictBefore(MetricsTileCache.tileStart(11, STEP));
+
+        assertNull(cache.get(2L, STEP, 10));
+        assertNull(cache.get(1L, STEP, 10));
+        assertEquals(1, cache.get(1L, STEP, 12).size());
+    }
+
+    @Test
+    void closesTilesOnlyOnceTheirEndIsPast() {
+        long now = LocalDateTime.now().toEpochSecond(ZoneOffset.UTC);
+        long current = MetricsTileCache.tileIndex(Math.floorDiv(now, STEP));
+
+        assertTrue(cache.isClosed(current - 2, STEP));
+        assertFalse(cache.isClosed(current, STEP));
+    }
+
+    private static long seconds(MetricsDto point) {
+        return point.getCreatedAt().toEpochSecond(ZoneOffset.UTC);
+    }
+
+    private static List<MetricsDto> buckets(long tile, int count) {
+        List<MetricsDto> points = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            points.add(bucket(MetricsTileCache.tileStart(tile, STEP).plusSeconds(i * STEP)));
+        }
+        return points;
+    }
+
+    private static MetricsDto bucket(LocalDateTime start) {
+        return MetricsDto.builder().agentId(1L).cpuUsage(1.0).createdAt(start).build();
+    }
+
+    /** One bucket per step across the requested window, recording each call's bounds. */
+    private static final class RecordingLoader implements BiFunction<LocalDateTime, LocalDateTime, List<MetricsDto>> {
+
+        private final List<LocalDateTime[]> calls = new ArrayList<>();
+
+        @Override
+        public List<MetricsDto> apply(LocalDateTime from, LocalDateTime to) {
+            calls.add(new LocalDateTime[]{from, to});
+            List<MetricsDto> points = new ArrayList<>();
+            for (LocalDateTime time = from; !time.isAfter(to); time = time.plusSeconds(STEP)) {
+                points.add(bucket(time));
+            }
+            return points;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.horizon.backend.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.horizon.backend.dto.metrics.EncodedRealtimeMetrics;
+import com.horizon.backend.dto.metrics.RealtimeMetrics;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RealtimeMetricsStoreTests {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private final RealtimeMetricsStore store = new RealtimeMetricsStore(null, null, objectMapper);
+
+    @Test
+    void encodedViewKeepsInterfaceAddresses() throws Exception {
+        EncodedRealtimeMetrics encoded = store.encode(snapshot());
+
+        JsonNode json = objectMapper.readTree(encoded.toBytes());
+
+        JsonNode eth0 = json.get("interfaces").get(0);
+        assertEquals("eth0", eth0.get("name").asText());
+        assertEquals("10.0.0.5", eth0.get("ips").get(0).asText());
+        assertEquals(512.0, eth0.get("recvRate").asDouble());
+        assertEquals("web-1", json.get("agentName").asText());
+        assertTrue(json.get("online").asBoolean());
+    }
+
+    @Test
+    void identityIsNotRepeatedInTheState() throws Exception {
+        JsonNode state = objectMapper.readTree(store.encode(snapshot()).getState());
+
+        assertFalse(state.has("agentName"));
+        assertFalse(state.has("hostname"));
+        assertFalse(state.has("online"));
+        assertEquals(12.5, state.get("cpuUsage").asDouble());
+    }
+
+    @Test
+    void relayedSnapshotKeepsIdentityAndState() throws Exception {
+        EncodedRealtimeMetrics sent = store.encode(snapshot(5L));
+
+        EncodedRealtimeMetrics received = receiver().saveRelayed(store.metaJson(sent), sent.getState());
+
+        assertNotNull(received);
+        assertEquals(sent.getState(), received.getState());
+        assertEquals(objectMapper.readTree(sent.toBytes()), objectMapper.readTree(received.toBytes()));
+    }
+
+    @Test
+    void olderRelayedSnapshotIsIgnored() {
+        RealtimeMetricsStore receiver = receiver();
+        EncodedRealtimeMetrics newer = store.encode(snapshot(6L));
+        EncodedRealtimeMetrics older = store.encode(snapshot(5L));
+
+        assertNotNull(receiver.saveRelayed(store.metaJson(newer), newer.getState()));
+        assertNull(receiver.saveRelayed(store.metaJson(older), older.getState()));
+    }
+
+    @Test
+    void malformedRelayedSnapshotIsDropped() {
+        EncodedRealtimeMetrics sent = store.encode(snapshot(5L));
+
+        assertNull(receiver().saveRelayed(store.metaJson(sent), "[]"));
+        assertNull(receiver().saveRelayed("{", sent.getState()));
+    }
+
+    private RealtimeMetricsStore receiver() {
+        return new RealtimeMetricsStore(null, null, objectMapper);
+    }
+
+    private static RealtimeMetrics snapshot() {
+        return snapshot(null);
+    }
+
+    private static RealtimeMetrics snapshot(Long sequence) {
+        return RealtimeMetrics.builder()
+                .sequence(sequence)
+                .agentId(3L)
+                .agentName("web-1")
+                .hostname("web-1.local")
+                .online(true)
+                .cpuUsage(12.5)
+                .interfaces(List.of(RealtimeMetrics.NetworkInterfaceInfo.builder()
+                        .name("eth0")
+                        .ips(List.of("10.0.0.5"))
+                        .recvRate(512.0)
+                        .build()))
+                .build();
+    }
+}
@@ -0,0 +1,36 @@
+package com.horizon.backend.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class RealtimeRelayTests {
+
+    private final RealtimeRelay relay = new RealtimeRelay(null, null, null, false, "horizon:realtime");
+
+    @Test
+    void skipsItsOwnMessages() {
+        assertNull(relay.decode(bytes(relay.envelope(RealtimeRelay.ALERT_TYPE, "{}"))));
+    }
+
+    @Test
+    void splitsTypeAndPayloadFromOtherInstances() {
+        RealtimeRelay.RelayMessage message = relay.decode(bytes("other|metrics\n{\"agentId\":3}\n{\"cpuUsage\":1.0}"));
+
+        assertEquals(RealtimeRelay.METRICS_TYPE, message.type());
+        assertEquals("{\"agentId\":3}\n{\"cpuUsage\":1.0}", message.payload());
+    }
+
+    @Test
+    void ignoresMalformedMessages() {
+        assertNull(relay.decode(bytes("no separator")));
+        assertNull(relay.decode(bytes("other\nalert|{}")));
+    }
+
+    private static byte[] bytes(String message) {
+        return message.getBytes(StandardCharsets.UTF_8);
+    }
+}
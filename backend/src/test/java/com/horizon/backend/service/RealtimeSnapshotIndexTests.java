@@ -0,0 +1,228 @@
+package com.horizon.backend.service;
+
+import com.horizon.backend.dto.metrics.FleetGroupBy;
+import com.horizon.backend.dto.metrics.FleetGroupStats;
+import com.horizon.backend.dto.metrics.MetricType;
+import com.horizon.backend.dto.metrics.MetricsOutlier;
+import com.horizon.backend.dto.metrics.RealtimeMetrics;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RealtimeSnapshotIndexTests {
+
+    private final RealtimeSnapshotIndex index = new RealtimeSnapshotIndex();
+
+    @Test
+    void aggregatesMeanAndStddevPerGroup() {
+        index.update(snapshot(1L, "linux", 10.0), 7L);
+        index.update(snapshot(2L, "linux", 30.0), 7L);
+        index.update(snapshot(3L, "windows", 80.0), 8L);
+
+        FleetGroupStats linux = group(index.aggregate(FleetGroupBy.OS, Map.of()), "linux");
+        FleetGroupStats.MetricSummary cpu = linux.getMetrics().get("cpu");
+
+        assertEquals(2, linux.getAgents());
+        assertEquals(2, linux.getOnline());
+        assertEquals(20.0, cpu.getAvg(), 1e-9);
+        assertEquals(10.0, cpu.getStddev(), 1e-9);
+        assertEquals(3, group(index.aggregate(FleetGroupBy.NONE, Map.of()), "all").getAgents());
+        assertEquals(2, index.aggregate(FleetGroupBy.USER, Map.of()).size());
+    }
+
+    @Test
+    void replacesAnAgentsPreviousContribution() {
+        index.update(snapshot(1L, "linux", 10.0), 7L);
+        index.update(snapshot(1L, "linux", 50.0), 7L);
+
+        FleetGroupStats.MetricSummary cpu = group(index.aggregate(FleetGroupBy.NONE, Map.of()), "all")
+                .getMetrics().get("cpu");
+
+        assertEquals(1, cpu.getCount());
+        assertEquals(50.0, cpu.getAvg(), 1e-9);
+        assertEquals(0.0, cpu.getStddev(), 1e-9);
+    }
+
+    @Test
+    void movesAnAgentBetweenGroups() {
+        index.update(snapshot(1L, "linux", 10.0), 7L);
+        index.update(snapshot(1L, "darwin", 10.0), 7L);
+
+        List<FleetGroupStats> byOs = index.aggregate(FleetGroupBy.OS, Map.of());
+
+        assertEquals(1, byOs.size());
+        assertEquals("darwin", byOs.get(0).getGroup());
+    }
+
+    @Test
+    void offlineAgentsCountButStopContributingMetrics() {
+        index.update(snapshot(1L, "linux", 10.0), 7L);
+        index.update(snapshot(2L, "linux", 90.0), 7L);
+
+        index.markOffline(2L);
+        index.markOffline(2L);
+
+        FleetGroupStats all = group(index.aggregate(FleetGroupBy.NONE, Map.of()), "all");
+        assertEquals(2, all.getAgents());
+        assertEquals(1, all.getOnline());
+        assertEquals(10.0, all.getMetrics().get("cpu").getAvg(), 1e-9);
+    }
+
+    @Test
+    void removalDropsEmptyGroups() {
+        index.update(snapshot(1L, "linux", 10.0), 7L);
+        index.update(snapshot(2L, null, 10.0), null);
+
+        index.remove(1L);
+
+        List<FleetGroupStats> byOs = index.aggregate(FleetGroupBy.OS, Map.of());
+        assertEquals(1, byOs.size());
+        assertEquals("unknown", byOs.get(0).getGroup());
+        assertEquals("unknown", index.aggregate(FleetGroupBy.USER, Map.of()).get(0).getGroup());
+    }
+
+    @Test
+    void quantilesAndThresholdsResolveToBins() {
+        for (long id = 1; id <= 100; id++) {
+            index.update(snapshot(id, "linux", (double) id - 1), 7L);
+        }
+
+        FleetGroupStats.MetricSummary cpu = group(
+                index.aggregate(FleetGroupBy.NONE, Map.of(MetricType.CPU, 90.0)), "all").getMetrics().get("cpu");
+
+        assertEquals(49.5, cpu.getP50(), 1e-9);
+        assertEquals(94.5, cpu.getP95(), 1e-9);
+        assertEquals(10L, cpu.getAbove());
+        assertEquals(90.0, cpu.getThreshold());
+        assertNull(group(index.aggregate(FleetGroupBy.NONE, Map.of()), "all").getMetrics().get("cpu").getAbove());
+    }
+
+    @Test
+    void missingMetricsAreLeftOutOfTheSummary() {
+        index.update(snapshot(1L, "linux", 10.0), 7L);
+
+        Map<String, FleetGroupStats.MetricSummary> metrics = group(
+                index.aggregate(FleetGroupBy.NONE, Map.of()), "all").getMetrics();
+
+        assertTrue(metrics.containsKey("cpu"));
+        assertTrue(!metrics.containsKey("temperature"));
+    }
+
+    @Test
+    void rebuildDiscardsAccumulatedRoundingError() {
+        for (int i = 0; i < 100_000 - 3; i++) {
+            index.update(snapshot(1L + (i % 3), "linux", i % 2 == 0 ? 1e6 + 0.1 : 0.3), 7L);
+        }
+        index.update(snapshot(1L, "linux", 1.0), 7L);
+        index.update(snapshot(2L, "linux", 2.0), 7L);
+        index.update(snapshot(3L, "linux", 3.0), 7L);
+
+        FleetGroupStats.MetricSummary cpu = group(index.aggregate(FleetGroupBy.NONE, Map.of()), "all")
+                .getMetrics().get("cpu");
+
+        assertEquals(2.0, cpu.getAvg(), 1e-12);
+        assertEquals(Math.sqrt(2.0 / 3), cpu.getStddev(), 1e-12);
+    }
+
+    @Test
+    void offlineAgentsLeaveTheAggregates() {
+        index.update(snapshot(1L, "linux", 10.0), 7L);
+        index.update(snapshot(2L, "linux", 90.0), 7L);
+
+        index.markOffline(2L);
+
+        FleetGroupStats all = group(index.aggregate(FleetGroupBy.NONE, Map.of()), "all");
+        assertEquals(1, all.getOnline());
+        assertEquals(10.0, all.getMetrics().get("cpu").getAvg(), 1e-9);
+    }
+
+    @Test
+    void flagsAgentsFarFromTheirGroupMedian() {
+        for (long id = 1; id <= 10; id++) {
+            index.update(snapshot(id, "linux", 20.0), 7L);
+        }
+        index.update(snapshot(11L, "linux", 90.0), 7L);
+        double stddev = group(index.aggregate(FleetGroupBy.OS, Map.of()), "linux").getMetrics().get("cpu").getStddev();
+
+        List<MetricsOutlier> outliers = index.findOutliers(FleetGroupBy.OS, 3.0, 5);
+
+        assertEquals(1, outliers.size());
+        MetricsOutlier outlier = outliers.get(0);
+        assertEquals(11L, outlier.getAgentId());
+        assertEquals("cpu", outlier.getMetric());
+        assertEquals("linux", outlier.getGroup());
+        assertEquals(20.5, outlier.getMedian(), 1e-9);
+        assertEquals(stddev, outlier.getStddev(), 1e-9);
+        assertEquals((90.0 - 20.5) / stddev, outlier.getScore(), 1e-9);
+        assertTrue(index.findOutliers(FleetGroupBy.OS, 4.0, 5).isEmpty());
+    }
+
+    @Test
+    void skipsSmallGroupsAndOfflineAgents() {
+        for (long id = 1; id <= 10; id++) {
+            index.update(snapshot(id, "linux", 20.0), 7L);
+        }
+        index.update(snapshot(11L, "linux", 90.0), 7L);
+
+        assertTrue(index.findOutliers(FleetGroupBy.OS, 3.0, 12).isEmpty());
+
+        index.markOffline(11L);
+        assertTrue(index.findOutliers(FleetGroupBy.OS, 3.0, 5).isEmpty());
+    }
+
+    @Test
+    void scoresEachGroupAgainstItsOwnSpreadAndSortsBySeverity() {
+        for (long id = 1; id <= 10; id++) {
+            index.update(snapshot(id, "linux", 20.0), 7L);
+            index.update(snapshot(100 + id, "windows", 80.0), 7L);
+        }
+        index.update(snapshot(11L, "linux", 95.0), 7L);
+        index.update(snapshot(111L, "windows", 10.0), 7L);
+
+        List<MetricsOutlier> outliers = index.findOutliers(FleetGroupBy.OS, 3.0, 5);
+
+        assertEquals(List.of(11L, 111L), outliers.stream().map(MetricsOutlier::getAgentId).sorted().toList());
+        assertTrue(Math.abs(outliers.get(0).getScore()) >= Math.abs(outliers.get(1).getScore()));
+        assertTrue(index.findOutliers(FleetGroupBy.NONE, 3.0, 5).isEmpty());
+    }
+
+    @Test
+    void refreshesPerAgentOutlierFlags() {
+        for (long id = 1; id <= 10; id++) {
+            index.update(snapshot(id, "linux", 20.0), 7L);
+        }
+        index.update(snapshot(11L, "linux", 90.0), 7L);
+
+        index.refreshOutlierFlags(FleetGroupBy.OS, 3.0, 5);
+        assertEquals(List.of("cpu"), index.getOutlierFlags(11L));
+        assertNull(index.getOutlierFlags(1L));
+
+        index.update(snapshot(11L, "linux", 20.0), 7L);
+        index.refreshOutlierFlags(FleetGroupBy.OS, 3.0, 5);
+        assertNull(index.getOutlierFlags(11L));
+    }
+
+    private static FleetGroupStats group(List<FleetGroupStats> stats, String key) {
+        return stats.stream()
+                .filter(group -> group.getGroup().equals(key))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("no group " + key));
+    }
+
+    private static RealtimeMetrics snapshot(Long agentId, String os, Double cpu) {
+        return RealtimeMetrics.builder()
+                .agentId(agentId)
+                .online(true)
+                .os(os)
+                .platform(os)
+                .cpuUsage(cpu)
+                .lastHeartbeat(LocalDateTime.now())
+                .build();
+    }
+}
@@ -0,0 +1,65 @@
+package com.horizon.backend.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReplayBufferTests {
+
+    private static final String INSTANCE = "a1b2c3d4";
+    private static final byte[] DATA = "{}".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void assignsIncreasingIds() {
+        SseEmitterService.ReplayBuffer replay = new SseEmitterService.ReplayBuffer(4, INSTANCE);
+
+        assertEquals(1, replay.append(null, null, null, "top", DATA).id());
+        assertEquals(2, replay.append(null, null, null, "top", DATA).id());
+        assertEquals(2, replay.head());
+    }
+
+    @Test
+    void coversOnlyIdsStillInTheRing() {
+        SseEmitterService.ReplayBuffer replay = new SseEmitterService.ReplayBuffer(4, INSTANCE);
+        for (int i = 0; i < 10; i++) {
+            replay.append(null, null, null, "top", DATA);
+        }
+
+        assertTrue(replay.covers(10));
+        assertTrue(replay.covers(6));
+        assertFalse(replay.covers(5));
+        assertFalse(replay.covers(11));
+    }
+
+    @Test
+    void parsesOnlyIdsFromThisInstance() {
+        SseEmitterService.ReplayBuffer replay = new SseEmitterService.ReplayBuffer(4, INSTANCE);
+
+        assertEquals("a1b2c3d4-7", replay.eventId(7));
+        assertEquals(7L, replay.parse(replay.eventId(7)));
+        assertNull(replay.parse("ffffffff-7"));
+        assertNull(replay.parse("a1b2c3d4-"));
+        assertNull(replay.parse("a1b2c3d4-x"));
+        assertNull(replay.parse("1700000000000"));
+        assertNull(replay.parse(null));
+    }
+
+    @Test
+    void returnsEntriesAfterWrapping() {
+        SseEmitterService.ReplayBuffer replay = new SseEmitterService.ReplayBuffer(4, INSTANCE);
+        for (int i = 0; i < 9; i++) {
+            replay.append(null, null, (long) i, "top", DATA);
+        }
+
+        for (long id = 6; id <= 9; id++) {
+            SseEmitterService.ReplayEntry entry = replay.get(id);
+            assertEquals(id, entry.id());
+            assertEquals(id - 1, entry.agentId());
+        }
+    }
+}
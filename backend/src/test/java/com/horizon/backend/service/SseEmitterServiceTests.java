@@ -0,0 +1,334 @@
+package com.horizon.backend.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.horizon.backend.dto.agent.AgentPresenceEvent;
+import com.horizon.backend.dto.alert.AlertEvent;
+import com.horizon.backend.dto.metrics.EncodedRealtimeMetrics;
+import com.horizon.backend.dto.metrics.FleetGroupBy;
+import com.horizon.backend.dto.metrics.RealtimeMetrics;
+import com.horizon.backend.dto.metrics.StreamSubscription;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SseEmitterServiceTests {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private final List<RecordingEmitter> emitters = new ArrayList<>();
+    private final List<Runnable> pendingDrains = new ArrayList<>();
+    private int created;
+
+    @Test
+    void alertsOnlyReachTheRuleOwner() {
+        SseEmitterService service = service(Runnable::run, 8, 30);
+        service.createEmitter(owner(1L), null);
+        service.createEmitter(owner(2L), null);
+        service.createEmitterForAgent(5L, owner(1L), null);
+
+        service.sendAlert(AlertEvent.builder().userId(1L).agentId(5L).ruleName("cpu").build());
+
+        assertEquals(List.of("alert"), emitters.get(0).events);
+        assertTrue(emitters.get(1).events.isEmpty());
+        assertEquals(List.of("alert"), emitters.get(2).events);
+    }
+
+    @Test
+    void fullQueueDropsTheOldestFrame() {
+        SseEmitterService service = service(pendingDrains::add, 2, 30);
+        service.createEmitter(owner(1L), null);
+
+        service.sendPresence(presence(1L));
+        service.sendPresence(presence(2L));
+        service.sendPresence(presence(3L));
+        pendingDrains.forEach(Runnable::run);
+
+        assertEquals(List.of("presence", "presence"), emitters.get(0).events);
+        assertEquals(1, service.getStats().getDroppedFrames());
+    }
+
+    @Test
+    void conflatedSubscriberGetsTheLatestSnapshotPerAgentInOneBatch() {
+        SseEmitterService service = service(Runnable::run, 8, 30);
+        service.createEmitter(StreamSubscription.builder().userId(1L).maxRate(20.0).build(), null);
+        service.createEmitter(owner(1L), null);
+
+        service.sendToAll(snapshot(1L, 10L));
+        service.sendToAll(snapshot(2L, 20L));
+        service.sendToAll(snapshot(1L, 11L));
+        assertTrue(emitters.get(0).events.isEmpty());
+        assertEquals(List.of("metrics", "metrics", "metrics"), emitters.get(1).events);
+
+        service.flushConflated();
+        service.flushConflated();
+
+        assertEquals(List.of("metrics-batch"), emitters.get(0).events);
+        assertEquals("[{\"agentId\":1,\"sequence\":11,\"online\":true},"
+                + "{\"agentId\":2,\"sequence\":20,\"online\":true}]", emitters.get(0).payloads.get(0));
+    }
+
+    @Test
+    void deltaSubscriberGetsAKeyframeThenChangedFields() {
+        SseEmitterService service = service(Runnable::run, 8, 30);
+        service.createEmitter(StreamSubscription.builder().userId(1L).delta(true).build(), null);
+
+        service.sendToAll(snapshot(1L, 1L));
+        service.sendToAll(snapshot(1L, 2L));
+
+        assertEquals(List.of("metrics", "metrics-delta"), emitters.get(0).events);
+        assertEquals("{\"agentId\":1,\"sequence\":2}", emitters.get(0).payloads.get(1));
+    }
+
+    @Test
+    void evictingAKeyframePurgesTheDeltasBuiltOnIt() {
+        SseEmitterService service = service(pendingDrains::add, 2, 30);
+        service.createEmitter(StreamSubscription.builder().userId(1L).delta(true).build(), null);
+
+        service.sendToAll(snapshot(1L, 1L));
+        service.sendToAll(snapshot(1L, 2L));
+        service.sendToAll(snapshot(1L, 3L));
+        pendingDrains.forEach(Runnable::run);
+
+        assertEquals(List.of("metrics"), emitters.get(0).events);
+        assertEquals("{\"agentId\":1,\"sequence\":3,\"online\":true}", emitters.get(0).payloads.get(0));
+        assertEquals(2, service.getStats().getDroppedFrames());
+    }
+
+    @Test
+    void stalledWriteIsEvictedAndCompletedOnceItReturns() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch writing = new CountDownLatch(1);
+        SseEmitterService service = service(task -> new Thread(task).start(), 8, 0);
+        emitters.add(new RecordingEmitter() {
+            @Override
+            public void send(Set<ResponseBodyEmitter.DataWithMediaType> frame) {
+                writing.countDown();
+                await(release);
+                super.send(frame);
+            }
+        });
+        service.createEmitter(owner(1L), List::of);
+        RecordingEmitter stalled = emitters.get(0);
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+
+        service.sendHeartbeat();
+        assertEquals(0, service.getConnectionCount());
+        assertFalse(stalled.completed);
+
+        release.countDown();
+        for (int i = 0; i < 500 && !stalled.completed; i++) {
+            Thread.sleep(10);
+        }
+        assertTrue(stalled.completed);
+        assertEquals(List.of("init"), stalled.events);
+        assertEquals(1, service.getStats().getSlowConsumerDisconnects());
+    }
+
+    @Test
+    void resumeReplaysOnlyTheMissedEvents() {
+        SseEmitterService service = service(Runnable::run, 8, 30);
+        service.createEmitter(owner(1L), List::of);
+        service.sendToAll(snapshot(1L, 1L));
+        service.sendToAll(snapshot(1L, 2L));
+        service.sendToAll(snapshot(2L, 3L));
+        RecordingEmitter first = emitters.get(0);
+
+        service.createEmitter(resume(1L, first.ids.get(1)), List::of);
+        service.sendToAll(snapshot(1L, 4L));
+
+        RecordingEmitter resumed = emitters.get(1);
+        assertEquals(List.of("metrics", "metrics", "metrics"), resumed.events);
+        assertEquals(List.of(first.ids.get(2), first.ids.get(3)), resumed.ids.subList(0, 2));
+        assertEquals(2, service.getStats().getReplayedFrames());
+        assertEquals(0, service.getStats().getResyncs());
+    }
+
+    @Test
+    void idFromAnotherInstanceResyncsWithInit() {
+        SseEmitterService service = service(Runnable::run, 8, 30);
+        service.createEmitter(owner(1L), List::of);
+        service.sendToAll(snapshot(1L, 1L));
+        String id = emitters.get(0).ids.get(1);
+
+        service.createEmitter(resume(1L, "0000000-" + id.substring(id.indexOf('-') + 1)), List::of);
+        service.createEmitter(resume(1L, "garbage"), List::of);
+
+        // The shared snapshot predates the metrics event, which is replayed on top of it.
+        assertEquals(List.of("init", "metrics"), emitters.get(1).events);
+        assertEquals(List.of("init", "metrics"), emitters.get(2).events);
+        assertEquals(2, service.getStats().getResyncs());
+    }
+
+    @Test
+    void replayedAlertsOnlyReachTheRuleOwner() {
+        SseEmitterService service = service(Runnable::run, 8, 30);
+        service.createEmitter(owner(1L), List::of);
+        String before = emitters.get(0).ids.get(0);
+        service.sendAlert(AlertEvent.builder().userId(1L).agentId(5L).ruleName("cpu").build());
+
+        service.createEmitter(resume(1L, before), null);
+        service.createEmitter(resume(2L, before), null);
+
+        assertEquals(List.of("alert"), emitters.get(1).events);
+        assertTrue(emitters.get(2).events.isEmpty());
+    }
+
+    @Test
+    void agentSetSubscriberOnlyGetsItsAgents() {
+        SseEmitterService service = service(Runnable::run, 8, 30);
+        service.createEmitter(StreamSubscription.builder().userId(1L).agentIds(Set.of(1L)).build(), null);
+
+        service.sendToAll(snapshot(1L, 1L));
+        service.sendToAll(snapshot(2L, 2L));
+        service.sendPresence(presence(1L));
+
+        assertEquals(List.of("metrics"), emitters.get(0).events);
+    }
+
+    @Test
+    void projectedSubscriberGetsOnlyTheRequestedFields() {
+        SseEmitterService service = service(Runnable::run, 8, 30);
+        service.createEmitter(StreamSubscription.builder().userId(1L).fields(Set.of("sequence")).build(), null);
+
+        service.sendToAll(snapshot(1L, 7L));
+
+        assertEquals("{\"agentId\":1,\"sequence\":7}", emitters.get(0).payloads.get(0));
+    }
+
+    @Test
+    void agentLeavingAGroupResyncsItsSubscribers() {
+        SseEmitterService service = service(Runnable::run, 8, 30);
+        Map<Long, EncodedRealtimeMetrics> latest = new LinkedHashMap<>();
+        service.createEmitter(StreamSubscription.builder().userId(1L).groupBy(FleetGroupBy.OS).group("linux").build(),
+                () -> List.copyOf(latest.values()));
+
+        latest.put(1L, snapshot(1L, 1L, "linux"));
+        service.sendToAll(latest.get(1L));
+        latest.put(1L, snapshot(1L, 2L, "windows"));
+        service.sendToAll(latest.get(1L));
+
+        RecordingEmitter emitter = emitters.get(0);
+        assertEquals(List.of("init", "metrics", "init"), emitter.events);
+        assertEquals("[]", emitter.payloads.get(2));
+        assertEquals(1, service.getStats().getResyncs());
+    }
+
+    private SseEmitterService service(TaskExecutor delivery, int queueCapacity, long writeTimeoutSeconds) {
+        return new SseEmitterService(new InlineExecutor(), delivery, objectMapper, new MetricsFrameEncoder(objectMapper),
+                new AgentMetadataCache(null) {
+                    @Override
+                    public AgentSummary find(Long agentId) {
+                        return new AgentSummary(agentId, 1L, "agent-" + agentId, "host-" + agentId, 60);
+                    }
+                },
+                new RealtimeRelay(null, null, null, false, "horizon:realtime"),
+                queueCapacity, SseEmitterService.SlowConsumerPolicy.DROP_OLDEST, 60, 64, writeTimeoutSeconds) {
+            @Override
+            SseEmitter newEmitter() {
+                if (created == emitters.size()) {
+                    emitters.add(new RecordingEmitter());
+                }
+                return emitters.get(created++);
+            }
+        };
+    }
+
+    private static StreamSubscription owner(Long userId) {
+        return StreamSubscription.builder().userId(userId).build();
+    }
+
+    private static StreamSubscription resume(Long userId, String lastEventId) {
+        return StreamSubscription.builder().userId(userId).lastEventId(lastEventId).build();
+    }
+
+    private static EncodedRealtimeMetrics snapshot(Long agentId, Long sequence) {
+        return snapshot(agentId, sequence, null);
+    }
+
+    private static EncodedRealtimeMetrics snapshot(Long agentId, Long sequence, String os) {
+        RealtimeMetrics metrics = RealtimeMetrics.builder().agentId(agentId).sequence(sequence).os(os).online(true).build();
+        String state = "{\"agentId\":" + agentId + ",\"sequence\":" + sequence + "}";
+        return EncodedRealtimeMetrics.of(metrics, state, null, null, null);
+    }
+
+    private static AgentPresenceEvent presence(Long agentId) {
+        return AgentPresenceEvent.builder().agentId(agentId).userId(1L).online(true).build();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Records the event name, id and JSON payload of every frame instead of writing to a response. */
+    private static class RecordingEmitter extends SseEmitter {
+
+        private final List<String> events = new ArrayList<>();
+        private final List<String> ids = new ArrayList<>();
+        private final List<String> payloads = new ArrayList<>();
+        private volatile boolean completed;
+
+        @Override
+        public void send(Set<ResponseBodyEmitter.DataWithMediaType> frame) {
+            for (ResponseBodyEmitter.DataWithMediaType part : frame) {
+                if (part.getData() instanceof String text && text.startsWith("event:")) {
+                    events.add(text.substring("event:".length(), text.indexOf('\n')));
+                    int id = text.indexOf("\nid:");
+                    if (id >= 0) {
+                        ids.add(text.substring(id + "\nid:".length(), text.indexOf('\n', id + 1)));
+                    }
+                } else if (part.getData() instanceof byte[] bytes) {
+                    payloads.add(new String(bytes, StandardCharsets.UTF_8));
+                }
+            }
+        }
+
+        @Override
+        public void complete() {
+            completed = true;
+        }
+    }
+
+    /** Runs dispatch tasks on the calling thread, one at a time and in order, like the single dispatch thread. */
+    private static final class InlineExecutor extends ThreadPoolTaskExecutor {
+
+        private final Deque<Runnable> tasks = new ArrayDeque<>();
+        private boolean running;
+
+        @Override
+        public void execute(Runnable task) {
+            tasks.add(task);
+            if (running) {
+                return;
+            }
+            running = true;
+            try {
+                Runnable next;
+                while ((next = tasks.poll()) != null) {
+                    next.run();
+                }
+            } finally {
+                running = false;
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.horizon.backend.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TrendForecasterTests {
+
+    private static final long FIRST_HOUR = 480_000;
+
+    private final TrendForecaster forecaster = new TrendForecaster();
+
+    @Test
+    void tooFewPointsHaveNoTrend() {
+        assertNull(forecaster.fit(hours(5), new double[5]));
+    }
+
+    @Test
+    void fitsLinearGrowth() {
+        long[] hours = hours(24);
+        double[] values = new double[24];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = 40 + 0.5 * i;
+        }
+
+        TrendForecaster.Trend trend = forecaster.fit(hours, values);
+
+        assertNotNull(trend);
+        assertFalse(trend.isSeasonal());
+        assertEquals(0.5, trend.getSlopePerHour(), 1e-9);
+        assertEquals(51.5, trend.valueAt(hours[23]), 1e-9);
+        assertEquals(97.0, trend.hoursUntil(100, hours[23]), 1e-9);
+    }
+
+    @Test
+    void ignoresOutliers() {
+        long[] hours = hours(48);
+        double[] values = new double[48];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = 20 + 0.25 * i;
+        }
+        values[10] = 95;
+        values[30] = 0;
+
+        TrendForecaster.Trend trend = forecaster.fit(hours, values);
+
+        assertEquals(0.25, trend.getSlopePerHour(), 0.01);
+    }
+
+    @Test
+    void removesDailyCycleBeforeFittingTheSlope() {
+        long[] hours = hours(24 * 7);
+        double[] values = new double[hours.length];
+        for (int i = 0; i < values.length; i++) {
+            double daily = Math.floorMod(hours[i], 24L) == 3 ? 20 : 0;
+            values[i] = 30 + 0.1 * i + daily;
+        }
+
+        TrendForecaster.Trend trend = forecaster.fit(hours, values);
+
+        assertTrue(trend.isSeasonal());
+        assertEquals(0.1, trend.getSlopePerHour(), 0.01);
+        assertEquals(20, trend.getSeasonalPeak(), 1.0);
+    }
+
+    @Test
+    void flatOrShrinkingUsageNeverRunsOut() {
+        long[] hours = hours(12);
+        double[] values = new double[12];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = 80 - i;
+        }
+
+        assertNull(forecaster.fit(hours, values).hoursUntil(100, hours[11]));
+    }
+
+    private static long[] hours(int size) {
+        long[] hours = new long[size];
+        for (int i = 0; i < size; i++) {
+            hours[i] = FIRST_HOUR + i;
+        }
+        return hours;
+    }
+}
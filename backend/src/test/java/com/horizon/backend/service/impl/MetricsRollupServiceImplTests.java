@@ -0,0 +1,152 @@
+package com.horizon.backend.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.horizon.backend.common.DDSketch;
+import com.horizon.backend.dto.metrics.RealtimeMetrics;
+import com.horizon.backend.entity.AgentMetricsRollup;
+import com.horizon.backend.repository.AgentMetricsRollupRepository;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MetricsRollupServiceImplTests {
+
+    private static final LocalDateTime HOUR = LocalDateTime.of(2024, 1, 1, 10, 0);
+
+    private final Map<String, AgentMetricsRollup> rows = new TreeMap<>();
+    private final List<String> calls = new ArrayList<>();
+    private boolean failSave;
+
+    private final MetricsRollupServiceImpl service = new MetricsRollupServiceImpl(repository(), null, new ObjectMapper());
+
+    @Test
+    void createsMissingRowsBeforeLockingThem() {
+        service.record(sample(2L, HOUR.plusMinutes(5), 40.0, 60.0));
+        service.record(sample(1L, HOUR.plusMinutes(5), 20.0, null));
+
+        service.flush();
+
+        assertEquals(List.of("insertIfAbsent:1", "insertIfAbsent:2", "lock:[1, 2]", "saveAllAndFlush:2"), calls);
+        assertEquals(1L, rows.get(key(1L, HOUR)).getSampleCount());
+        assertEquals(40.0, rows.get(key(2L, HOUR)).getCpuUsageAvg());
+    }
+
+    @Test
+    void mergesIntoTheLockedRow() {
+        service.record(sample(1L, HOUR.plusMinutes(1), 10.0, 50.0));
+        service.flush();
+        service.record(sample(1L, HOUR.plusMinutes(2), 30.0, null));
+        service.record(sample(1L, HOUR.plusMinutes(3), 50.0, 70.0));
+        service.flush();
+
+        AgentMetricsRollup row = rows.get(key(1L, HOUR));
+        assertEquals(3L, row.getSampleCount());
+        assertEquals(30.0, row.getCpuUsageAvg(), 1e-9);
+        assertEquals(50.0, row.getCpuUsageMax());
+        assertEquals(2L, row.getMemorySampleCount());
+        assertEquals(60.0, row.getMemoryUsageAvg(), 1e-9);
+        assertEquals(3L, DDSketch.fromBytes(row.getCpuSketch()).getCount());
+    }
+
+    @Test
+    void requeuesPendingRollupsWhenTheFlushFails() {
+        service.record(sample(1L, HOUR, 10.0, null));
+        failSave = true;
+        assertThrows(IllegalStateException.class, service::flush);
+
+        failSave = false;
+        service.record(sample(1L, HOUR.plusMinutes(1), 30.0, null));
+        service.flush();
+
+        AgentMetricsRollup row = rows.get(key(1L, HOUR));
+        assertEquals(2L, row.getSampleCount());
+        assertEquals(20.0, row.getCpuUsageAvg(), 1e-9);
+    }
+
+    @Test
+    void keepsHoursInSeparateRows() {
+        service.record(sample(1L, HOUR.plusMinutes(59), 10.0, null));
+        service.record(sample(1L, HOUR.plusHours(1), 30.0, null));
+
+        service.flush();
+
+        assertEquals(10.0, rows.get(key(1L, HOUR)).getCpuUsageAvg());
+        assertEquals(30.0, rows.get(key(1L, HOUR.plusHours(1))).getCpuUsageAvg());
+    }
+
+    @SuppressWarnings("unchecked")
+    private AgentMetricsRollupRepository repository() {
+        return (AgentMetricsRollupRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{AgentMetricsRollupRepository.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "insertIfAbsent" -> {
+                            calls.add("insertIfAbsent:" + args[0]);
+                            String key = key((Long) args[0], (LocalDateTime) args[1]);
+                            if (rows.containsKey(key)) {
+                                return 0;
+                            }
+                            rows.put(key, AgentMetricsRollup.builder()
+                                    .agentId((Long) args[0])
+                                    .bucketStart((LocalDateTime) args[1])
+                                    .build());
+                            return 1;
+                        }
+                        case "lockByBucketStartAndAgentIdIn" -> {
+                            calls.add("lock:" + args[1]);
+                            List<AgentMetricsRollup> locked = new ArrayList<>();
+                            for (Long agentId : (Collection<Long>) args[1]) {
+                                locked.add(copy(rows.get(key(agentId, (LocalDateTime) args[0]))));
+                            }
+                            return locked;
+                        }
+                        case "saveAllAndFlush" -> {
+                            List<AgentMetricsRollup> saved = new ArrayList<>((Collection<AgentMetricsRollup>) args[0]);
+                            calls.add("saveAllAndFlush:" + saved.size());
+                            if (failSave) {
+                                throw new IllegalStateException("connection lost");
+                            }
+                            saved.forEach(row -> rows.put(key(row.getAgentId(), row.getBucketStart()), row));
+                            return saved;
+                        }
+                        default -> throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    private static AgentMetricsRollup copy(AgentMetricsRollup row) {
+        return AgentMetricsRollup.builder()
+                .agentId(row.getAgentId())
+                .bucketStart(row.getBucketStart())
+                .sampleCount(row.getSampleCount())
+                .cpuUsageAvg(row.getCpuUsageAvg())
+                .cpuUsageMax(row.getCpuUsageMax())
+                .memorySampleCount(row.getMemorySampleCount())
+                .memoryUsageAvg(row.getMemoryUsageAvg())
+                .memoryUsageMax(row.getMemoryUsageMax())
+                .cpuSketch(row.getCpuSketch())
+                .mountUsage(row.getMountUsage())
+                .build();
+    }
+
+    private static String key(Long agentId, LocalDateTime bucketStart) {
+        return agentId + "@" + bucketStart;
+    }
+
+    private static RealtimeMetrics sample(Long agentId, LocalDateTime timestamp, Double cpu, Double memory) {
+        return RealtimeMetrics.builder()
+                .agentId(agentId)
+                .timestamp(timestamp)
+                .cpuUsage(cpu)
+                .memoryUsage(memory)
+                .build();
+    }
+}